@@ -0,0 +1,97 @@
+package study.querydsl.jmh;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.QuerydslApplication;
+import study.querydsl.repository.column.MemberColumnRepository;
+import study.querydsl.repository.column.MemberIdAgeColumns;
+import study.querydsl.repository.support.MemberBulkLoader;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * select(member.id, member.age).fetch() 로 Tuple 을 받는 것과 MemberColumnRepository 로 배열/consumer 에 받는 것 비교.
+ * 할당량은 gc 프로파일러(gc.alloc.rate.norm)로 본다.
+ *
+ * ./gradlew jmh -Djmh.includes=ColumnFetch -Djmh.rows=1000000
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ColumnFetchBenchmark {
+
+    ConfigurableApplicationContext context;
+    JPAQueryFactory queryFactory;
+    TransactionTemplate transactionTemplate;
+    MemberColumnRepository columnRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        long rows = Long.getLong("jmh.rows", 100_000);
+        // application.yml(tcp h2, local 프로필)보다 우선하도록 커맨드라인 인자로 넘긴다
+        context = new SpringApplicationBuilder(QuerydslApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(
+                        "--spring.profiles.active=jmh",
+                        "--spring.datasource.url=jdbc:h2:mem:jmh;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa",
+                        "--spring.jpa.hibernate.ddl-auto=create",
+                        "--spring.jpa.properties.hibernate.format_sql=false",
+                        "--spring.jpa.properties.hibernate.use_sql_comments=false",
+                        "--logging.level.org.hibernate.SQL=warn",
+                        "--logging.level.org.hibernate.type=warn",
+                        "--member.warmup.enabled=false");
+        queryFactory = context.getBean(JPAQueryFactory.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        columnRepository = context.getBean(MemberColumnRepository.class);
+        new MemberBulkLoader(context.getBean(JdbcTemplate.class), transactionTemplate).load(100, rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public long tupleFetch() {
+        // 영속성 컨텍스트가 필요 없는 스칼라 조회지만 EntityManager 는 트랜잭션 안에서 쓴다
+        return transactionTemplate.execute(status -> {
+            List<Tuple> result = queryFactory.select(member.id, member.age).from(member).fetch();
+            long sum = 0;
+            for (Tuple tuple : result) sum += tuple.get(member.id) + tuple.get(member.age);
+            return sum;
+        });
+    }
+
+    @Benchmark
+    public long columnFetch() {
+        MemberIdAgeColumns columns = columnRepository.fetchIdAndAge(null, null);
+        return columns.getIds().sum() + columns.getAges().sum();
+    }
+
+    @Benchmark
+    public void consumerFetch(Blackhole blackhole) {
+        columnRepository.forEachIdAndAge(null, null, (id, age) -> {
+            blackhole.consume(id);
+            blackhole.consume(age);
+        });
+    }
+}
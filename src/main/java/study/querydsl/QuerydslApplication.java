@@ -1,21 +1,51 @@
 package study.querydsl;
 
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.sql.H2Templates;
+import com.querydsl.sql.SQLQueryFactory;
+import com.querydsl.sql.spring.SpringConnectionProvider;
+import com.querydsl.sql.spring.SpringExceptionTranslator;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.Bean;
+import study.querydsl.repository.change.ChangeEventPublisher;
+import study.querydsl.repository.support.InstrumentedJPAQueryFactory;
 
 import javax.persistence.EntityManager;
+import javax.sql.DataSource;
 
 @SpringBootApplication
 public class QuerydslApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(QuerydslApplication.class, args);
+		SpringApplication application = new SpringApplication(QuerydslApplication.class);
+		// 기동 단계별 소요 시간을 모아뒀다가 /actuator/startup 으로 보여준다
+		application.setApplicationStartup(new BufferingApplicationStartup(Integer.getInteger("app.startup.buffer-capacity", 4096)));
+		application.run(args);
 	}
 
 	@Bean
-	JPAQueryFactory jPAQueryFactory(EntityManager em) {
-		return new JPAQueryFactory(em);
+	JPAQueryFactory jPAQueryFactory(EntityManager em, ChangeEventPublisher changeEventPublisher) {
+		return new InstrumentedJPAQueryFactory(em, changeEventPublisher);
+	}
+
+	/* 윈도 함수/CTE 용 네이티브 SQL (repository/sql). JPA 와 같은 트랜잭션 커넥션을 쓰고 예외는 스프링 예외로 바꾼다 */
+	@Bean
+	SQLQueryFactory sqlQueryFactory(DataSource dataSource) {
+		com.querydsl.sql.Configuration configuration = new com.querydsl.sql.Configuration(H2Templates.builder().build());
+		configuration.setExceptionTranslator(new SpringExceptionTranslator());
+		return new SQLQueryFactory(configuration, new SpringConnectionProvider(dataSource));
+	}
+
+	/* CDS 아카이브를 만드는 학습 실행(./gradlew cdsArchive): 기동이 끝나면 바로 종료해서 JVM이 로딩된 클래스를 덤프하게 한다 */
+	@Bean
+	@ConditionalOnProperty("app.startup.exit-after-ready")
+	ApplicationListener<ApplicationReadyEvent> exitAfterReady(ConfigurableApplicationContext context) {
+		return event -> System.exit(SpringApplication.exit(context));
 	}
 }
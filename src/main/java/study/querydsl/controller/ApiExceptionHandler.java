@@ -0,0 +1,55 @@
+package study.querydsl.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import study.querydsl.repository.UnsupportedSortException;
+import study.querydsl.repository.guard.QueryCostExceededException;
+import study.querydsl.repository.support.JdbcBulkheadFullException;
+import study.querydsl.repository.support.QueryDeadlineExceededException;
+import study.querydsl.repository.writebehind.WriteBehindFullException;
+
+import java.util.Map;
+
+@RestControllerAdvice
+@RequiredArgsConstructor
+public class ApiExceptionHandler {
+
+    private final MeterRegistry meterRegistry;
+
+    @ExceptionHandler(UnsupportedSortException.class)
+    public ResponseEntity<Map<String, String>> unsupportedSort(UnsupportedSortException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("message", e.getMessage()));
+    }
+
+    @ExceptionHandler(QueryCostExceededException.class)
+    public ResponseEntity<Map<String, String>> queryCostExceeded(QueryCostExceededException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("message", e.getMessage()));
+    }
+
+    /* 마감 전에 끝나지 못한 요청: 쿼리 전 마감, statement timeout, 취소 모두 여기로 */
+    @ExceptionHandler({
+            QueryDeadlineExceededException.class,
+            org.springframework.dao.QueryTimeoutException.class,
+            javax.persistence.QueryTimeoutException.class
+    })
+    public ResponseEntity<Map<String, String>> deadlineExceeded(RuntimeException e) {
+        meterRegistry.counter("member.request.deadline.timeouts", "exception", e.getClass().getSimpleName()).increment();
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("message", "request deadline exceeded"));
+    }
+
+    /* DB permit 대기 초과 (거절 건수는 member.jdbc.bulkhead.rejected) */
+    @ExceptionHandler(JdbcBulkheadFullException.class)
+    public ResponseEntity<Map<String, String>> bulkheadFull(JdbcBulkheadFullException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("message", e.getMessage()));
+    }
+
+    /* write-behind 버퍼가 backpressure-timeout 안에 비워지지 않음 (거절 건수는 member.write-behind.rejected) */
+    @ExceptionHandler(WriteBehindFullException.class)
+    public ResponseEntity<Map<String, String>> writeBehindFull(WriteBehindFullException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("message", e.getMessage()));
+    }
+}
@@ -0,0 +1,72 @@
+package study.querydsl.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import study.querydsl.repository.support.AdaptiveConcurrencyLimiter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 회원 검색 엔드포인트(/v1~/v4)별 동시 실행 한도. 한도를 넘으면 줄 세우지 않고 바로 429 를 돌려준다.
+ * 한도는 응답 시간과 5xx 를 보고 AdaptiveConcurrencyLimiter 가 조절한다.
+ */
+@Component
+public class ConcurrencyLimitInterceptor implements HandlerInterceptor {
+
+    private static final String STARTED = ConcurrencyLimitInterceptor.class.getName() + ".started";
+    private static final String LIMITER = ConcurrencyLimitInterceptor.class.getName() + ".limiter";
+
+    private final ConcurrentHashMap<String, AdaptiveConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final AdaptiveConcurrencyLimiter.Settings settings;
+    private final boolean enabled;
+
+    public ConcurrencyLimitInterceptor(MeterRegistry meterRegistry,
+                                       @Value("${member.limiter.enabled:true}") boolean enabled,
+                                       @Value("${member.limiter.initial-limit:20}") int initialLimit,
+                                       @Value("${member.limiter.min-limit:4}") int minLimit,
+                                       @Value("${member.limiter.max-limit:200}") int maxLimit,
+                                       @Value("${member.limiter.tolerance:1.5}") double tolerance,
+                                       @Value("${member.limiter.smoothing:0.2}") double smoothing,
+                                       @Value("${member.limiter.backoff:0.9}") double backoff) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.settings = new AdaptiveConcurrencyLimiter.Settings(initialLimit, minLimit, maxLimit, tolerance, smoothing, backoff);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        if (!enabled) return true;
+        // 매핑 패턴(/v1/members ...)을 key로 써서 엔드포인트 수만큼만 limiter를 만든다
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String endpoint = pattern != null ? pattern.toString() : request.getRequestURI();
+        AdaptiveConcurrencyLimiter limiter = limiters.computeIfAbsent(endpoint,
+                name -> new AdaptiveConcurrencyLimiter(name, settings, meterRegistry));
+        if (!limiter.tryAcquire()) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader("Retry-After", "1");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"message\":\"concurrency limit exceeded\"}");
+            return false;
+        }
+        request.setAttribute(LIMITER, limiter);
+        request.setAttribute(STARTED, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        AdaptiveConcurrencyLimiter limiter = (AdaptiveConcurrencyLimiter) request.getAttribute(LIMITER);
+        if (limiter == null) return;
+        long rtt = System.nanoTime() - (Long) request.getAttribute(STARTED);
+        limiter.onComplete(rtt, ex != null || response.getStatus() >= 500);
+    }
+}
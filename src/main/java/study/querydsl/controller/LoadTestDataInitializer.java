@@ -0,0 +1,37 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.repository.support.MemberBulkLoader;
+
+@Slf4j
+@Profile("loadtest") /*부하 테스트 프로필에서만 데이터 생성*/
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE) /*검색 워밍업보다 먼저*/
+@RequiredArgsConstructor
+public class LoadTestDataInitializer implements ApplicationRunner {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${loadtest.seed.teams:100}")
+    private int teams;
+    @Value("${loadtest.seed.members:100000}")
+    private long members;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.nanoTime();
+        new MemberBulkLoader(jdbcTemplate, transactionTemplate).load(teams, members);
+        log.info("seeded {} teams, {} members in {} ms", teams, members, (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -3,14 +3,17 @@ package study.querydsl.controller;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
-import study.querydsl.repository.MemberJpaReposiotory;
+import study.querydsl.repository.CoalescingMemberSearch;
 import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.support.JdbcBulkhead;
 
 import java.util.List;
 
@@ -18,21 +21,35 @@ import java.util.List;
 @RestController
 public class MemberController {
 
-    private final MemberJpaReposiotory memberJpaReposiotory;
+    /* 같은 조건의 동시 요청은 하나의 쿼리로 합쳐서 실행 */
+    private final CoalescingMemberSearch memberSearch;
     private final MemberRepository memberRepository;
+    private final JdbcBulkhead bulkhead;
 
     @GetMapping("/v1/members")
     public List<MemberTeamDto> searchMemberV1(@ModelAttribute MemberSearchCondition condition) {
-        return memberJpaReposiotory.search(condition);
+        return memberSearch.searchJpa(condition);
     }
 
     @GetMapping("/v2/members")
     public Page<MemberTeamDto> searchMemberV2(MemberSearchCondition condition, Pageable pageable) {
-        return memberRepository.searchPageSimple(condition, pageable);
+        return memberSearch.searchPageSimple(condition, pageable);
     }
 
     @GetMapping("/v3/members")
     public Page<MemberTeamDto> searchMemberV3(MemberSearchCondition condition, Pageable pageable) {
-        return memberRepository.searchPageComplex(condition, pageable);
+        return memberSearch.searchPageComplex(condition, pageable);
+    }
+
+    /* sort는 id, username, age 만 가능 */
+    @GetMapping("/v4/members")
+    public Page<MemberTeamDto> searchMemberV4(MemberSearchCondition condition, Pageable pageable) {
+        return memberSearch.searchPageDeferred(condition, pageable);
+    }
+
+    /* 핫 키가 몰리는 단건 조회는 near-cache 로 (없는 id 는 404). 검색처럼 JdbcBulkhead 를 거친다 */
+    @GetMapping("/v1/members/{id}")
+    public ResponseEntity<MemberTeamDto> findMember(@PathVariable Long id) {
+        return ResponseEntity.of(bulkhead.call(() -> memberRepository.findDtoById(id)));
     }
 }
@@ -0,0 +1,79 @@
+package study.querydsl.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import study.querydsl.repository.support.QueryDeadline;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 요청마다 마감시각을 정하고(X-Request-Timeout-Ms 헤더, 없으면 기본값) 리포지토리 쿼리까지 전달한다.
+ * 클라이언트가 포기하는 시각(=마감)이 지나면 실행 중인 statement를 취소해서 커넥션을 바로 돌려받는다.
+ */
+@Component
+public class RequestDeadlineInterceptor implements HandlerInterceptor {
+
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout-Ms";
+    private static final String WATCHDOG = RequestDeadlineInterceptor.class.getName() + ".watchdog";
+
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "request-deadline-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Counter cancellations;
+
+    @Value("${member.request.timeout-ms:3000}")
+    private long defaultTimeoutMillis;
+    @Value("${member.request.max-timeout-ms:30000}")
+    private long maxTimeoutMillis;
+
+    public RequestDeadlineInterceptor(MeterRegistry meterRegistry) {
+        this.cancellations = Counter.builder("member.request.deadline.cancellations")
+                .description("in-flight statements cancelled because the request deadline passed")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        QueryDeadline deadline = QueryDeadline.start(Duration.ofMillis(budgetMillis(request)));
+        ScheduledFuture<?> future = watchdog.schedule(() -> {
+            cancellations.increment();
+            deadline.cancel();
+        }, deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+        request.setAttribute(WATCHDOG, future);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        ScheduledFuture<?> future = (ScheduledFuture<?>) request.getAttribute(WATCHDOG);
+        if (future != null) future.cancel(false);
+        QueryDeadline.clear();
+    }
+
+    private long budgetMillis(HttpServletRequest request) {
+        String header = request.getHeader(TIMEOUT_HEADER);
+        if (header == null) return defaultTimeoutMillis;
+        try {
+            return Math.max(1, Math.min(Long.parseLong(header.trim()), maxTimeoutMillis));
+        } catch (NumberFormatException e) {
+            return defaultTimeoutMillis;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+    }
+}
@@ -0,0 +1,123 @@
+package study.querydsl.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.CoalescingMemberSearch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 배포 직후 첫 요청들이 느린 것(hibernate 쿼리 플랜 캐시, querydsl 직렬화, 커넥션 풀, JIT 가 다 비어 있음)을 줄이려고
+ * 기동 중에 검색 조건 조합 전부 x 자주 쓰는 페이지 크기로 검색을 미리 돌린다.
+ *
+ * ApplicationRunner 는 ApplicationReadyEvent 전에 실행되므로 readiness(/actuator/health/readiness)는 워밍업이 끝난 뒤에 UP 이 된다.
+ * 다른 runner(데이터 생성 등)가 먼저 끝나도록 가장 나중에 실행한다.
+ */
+@Slf4j
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class SearchWarmupRunner implements ApplicationRunner {
+
+    private final CoalescingMemberSearch memberSearch;
+    private final boolean enabled;
+    private final int iterations;
+    private final int threads;
+    private final int[] pageSizes;
+
+    public SearchWarmupRunner(CoalescingMemberSearch memberSearch,
+                              @Value("${member.warmup.enabled:false}") boolean enabled,
+                              @Value("${member.warmup.iterations:20}") int iterations,
+                              @Value("${member.warmup.threads:4}") int threads,
+                              @Value("${member.warmup.page-sizes:10,20,50}") int[] pageSizes) {
+        this.memberSearch = memberSearch;
+        this.enabled = enabled;
+        this.iterations = iterations;
+        this.threads = threads;
+        this.pageSizes = pageSizes;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (!enabled) return;
+        long start = System.nanoTime();
+        List<MemberSearchCondition> shapes = conditionShapes();
+        AtomicLong executed = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+
+        // 여러 스레드로 돌려서 커넥션 풀도 채운다
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < iterations; i++) {
+                        for (MemberSearchCondition condition : shapes) {
+                            executed.addAndGet(searchAllWays(condition, failed));
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) future.get();
+        } finally {
+            executor.shutdown();
+        }
+        log.info("search warm-up: {} shapes, {} searches ({} failed) in {} ms",
+                shapes.size(), executed.get(), failed.get(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private long searchAllWays(MemberSearchCondition condition, AtomicLong failed) {
+        long count = 0;
+        count += attempt(() -> memberSearch.searchJpa(condition), failed);
+        count += attempt(() -> memberSearch.search(condition), failed);
+        for (int size : pageSizes) {
+            PageRequest page = PageRequest.of(0, size);
+            count += attempt(() -> memberSearch.searchPageSimple(condition, page), failed);
+            count += attempt(() -> memberSearch.searchPageComplex(condition, page), failed);
+            count += attempt(() -> memberSearch.searchPageComplex(condition, page.withPage(3)), failed);
+            count += attempt(() -> memberSearch.searchPageDeferred(condition, PageRequest.of(0, size, Sort.by("age"))), failed);
+        }
+        return count;
+    }
+
+    private static long attempt(Runnable search, AtomicLong failed) {
+        try {
+            search.run();
+        } catch (RuntimeException e) {
+            // 워밍업 실패로 기동을 막지는 않는다
+            if (failed.getAndIncrement() == 0) log.warn("search warm-up query failed", e);
+        }
+        return 1;
+    }
+
+    /*
+     * username, teamName, ageGoe, ageLoe 의 있음/없음 조합 전부 (where 절 모양이 달라서 플랜 캐시 key 가 다르다).
+     * username 이 있으면 대소문자 무시 여부도 나눈다.
+     */
+    static List<MemberSearchCondition> conditionShapes() {
+        List<MemberSearchCondition> shapes = new ArrayList<>();
+        for (int mask = 0; mask < 32; mask++) {
+            if ((mask & 16) != 0 && (mask & 1) == 0) continue;
+            MemberSearchCondition condition = new MemberSearchCondition();
+            if ((mask & 1) != 0) condition.setUsername("member1");
+            if ((mask & 16) != 0) condition.setUsernameIgnoreCase(true);
+            if ((mask & 2) != 0) condition.setTeamName("team1");
+            if ((mask & 4) != 0) condition.setAgeGoe(20);
+            if ((mask & 8) != 0) condition.setAgeLoe(40);
+            shapes.add(condition);
+        }
+        return shapes;
+    }
+}
@@ -0,0 +1,40 @@
+package study.querydsl.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * app.execution.virtual-threads=true 이면 톰캣 요청을 스레드 풀 대신 요청마다 가상 스레드에서 처리한다 (JDK 21 이상에서 실행할 때).
+ * JDBC 에서 막혀도 플랫폼 스레드를 붙잡지 않는다. 동시에 DB를 쓰는 수는 JdbcBulkhead 가 커넥션 풀 크기로 제한한다.
+ *
+ * 빌드는 Java 11 소스 그대로 두고 Executors.newVirtualThreadPerTaskExecutor 를 리플렉션으로 호출한다.
+ * 부하 테스트는 ./gradlew loadTest -Ploadtest.jdk=21 로 테스트 JVM 만 JDK 21 로 띄운다 (build.gradle 의 loadTest 참고).
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty("app.execution.virtual-threads")
+public class VirtualThreadConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("app.execution.virtual-threads requires running on JDK 21 or later, current: "
+                    + Runtime.version(), e);
+        }
+    }
+
+    @Bean
+    TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandler(ExecutorService virtualThreadExecutor) {
+        log.info("serving requests on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+    }
+}
@@ -0,0 +1,25 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@RequiredArgsConstructor
+public class WebConfig implements WebMvcConfigurer {
+
+    static final String MEMBER_SEARCH = "/v*/members";
+    /* 단건 조회(/v1/members/{id})도 near-cache 미스는 DB 에 가므로 같은 한도/마감을 건다 */
+    static final String MEMBER_LOOKUP = "/v*/members/*";
+
+    private final ConcurrencyLimitInterceptor concurrencyLimitInterceptor;
+    private final RequestDeadlineInterceptor requestDeadlineInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // 한도 초과로 거절되는 요청은 마감시각/워치독을 만들지 않도록 먼저
+        registry.addInterceptor(concurrencyLimitInterceptor).addPathPatterns(MEMBER_SEARCH, MEMBER_LOOKUP);
+        registry.addInterceptor(requestDeadlineInterceptor).addPathPatterns(MEMBER_SEARCH, MEMBER_LOOKUP);
+    }
+}
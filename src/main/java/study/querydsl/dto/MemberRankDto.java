@@ -0,0 +1,29 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+/* 팀 안에서의 순위와 팀 평균 나이 (윈도 함수 결과) */
+@Data
+public class MemberRankDto {
+
+    private Long memberId;
+    private String username;
+    private int age;
+    private Long teamId;
+    private String teamName;
+    private long rowNumber;
+    private long rank;
+    private double teamAverageAge;
+
+    public MemberRankDto(Long memberId, String username, int age, Long teamId, String teamName,
+                         long rowNumber, long rank, double teamAverageAge) {
+        this.memberId = memberId;
+        this.username = username;
+        this.age = age;
+        this.teamId = teamId;
+        this.teamName = teamName;
+        this.rowNumber = rowNumber;
+        this.rank = rank;
+        this.teamAverageAge = teamAverageAge;
+    }
+}
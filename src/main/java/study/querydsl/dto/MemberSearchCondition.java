@@ -9,4 +9,16 @@ public class MemberSearchCondition {
     private String teamName;
     private Integer ageGoe;
     private Integer ageLoe;
+    // true 면 username 을 대소문자 무시하고 비교 (username_lower 인덱스 사용)
+    private boolean usernameIgnoreCase;
+
+    public MemberSearchCondition copy() {
+        MemberSearchCondition copy = new MemberSearchCondition();
+        copy.setUsername(username);
+        copy.setTeamName(teamName);
+        copy.setAgeGoe(ageGoe);
+        copy.setAgeLoe(ageLoe);
+        copy.setUsernameIgnoreCase(usernameIgnoreCase);
+        return copy;
+    }
 }
@@ -1,8 +1,10 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.Hibernate;
 
 import javax.persistence.*;
+import java.util.Locale;
 
 import static javax.persistence.FetchType.LAZY;
 
@@ -10,20 +12,62 @@ import static javax.persistence.FetchType.LAZY;
 @NoArgsConstructor(access= AccessLevel.PROTECTED)
 @Getter @Setter
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_member_username", columnList = "username"),
+        @Index(name = "idx_member_age", columnList = "age"),
+        @Index(name = "idx_member_username_lower", columnList = "username_lower"),
+        @Index(name = "idx_member_team_name", columnList = "team_name")
+})
 public class Member {
     @Id @GeneratedValue
     @Column(name="member_id")
     private Long id;
     private String username;
+    /* 대소문자 무시 검색용. lower(username) 은 인덱스를 못 타므로 소문자로 바꾼 값을 따로 저장하고 인덱스를 건다 */
+    @Setter(AccessLevel.NONE)
+    @Column(name = "username_lower")
+    private String usernameLower;
     private int age;
 
+    /* team_name 과 반대편 컬렉션을 같이 맞춰야 하므로 setter 없이 changeTeam 으로만 바꾼다 */
+    @Setter(AccessLevel.NONE)
     @JoinColumn(name="team_id")
     @ManyToOne(fetch = LAZY)
     private Team team;
 
+    /* team.name 비정규화: 검색에서 team join 없이 팀 이름으로 거르고 보여주기 위한 복사본. changeTeam 과 Team.changeName 에서 맞춘다 */
+    @Setter(AccessLevel.NONE)
+    @Column(name = "team_name")
+    private String teamName;
+
+    /* 낙관적 락 + near-cache(MemberNearCache) 신선도 확인용. 벌크 update 는 MemberBulkRepository 처럼 VersionedMemberUpdate 를 거치는 것만 값이 바뀐 행을 +1 한다 */
+    @Version
+    @Setter(AccessLevel.NONE)
+    private Long version;
+
+    /* 반대편 Team.members 컬렉션은 이미 로딩된 경우에만 맞춰준다. 컬렉션 로딩(팀 전체 회원 select)은 일으키지 않는다. */
     public void changeTeam(Team team) {
+        if (this.team != null && this.team != team && Hibernate.isInitialized(this.team)) {
+            this.team.removeMember(this);
+        }
         this.team = team;
-        team.getMembers().add(this);
+        this.teamName = team.getName();
+        team.addMember(this);
+    }
+
+    /* 팀 이름이 바뀐 뒤 영속성 컨텍스트에 있는 회원의 복사본을 맞춘다. DB 는 벌크 update 로 맞춘다 (TeamRepository.rename) */
+    public void refreshTeamName() {
+        this.teamName = team == null ? null : team.getName();
+    }
+
+    @PrePersist
+    @PreUpdate
+    void normalizeUsername() {
+        this.usernameLower = normalizeUsername(username);
+    }
+
+    public static String normalizeUsername(String username) {
+        return username == null ? null : username.toLowerCase(Locale.ROOT);
     }
 
     public Member(String username) {
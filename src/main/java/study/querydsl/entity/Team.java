@@ -1,6 +1,9 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.LazyCollection;
+import org.hibernate.annotations.LazyCollectionOption;
 
 import javax.persistence.*;
 import java.util.ArrayList;
@@ -14,12 +17,31 @@ public class Team {
     @Id @GeneratedValue
     @Column(name="member_id")
     private Long id;
+    /* 바꿀 때는 changeName (Member.teamName 복사본도 같이 맞춰야 한다) */
+    @Setter(AccessLevel.NONE)
     private String name;
 
+    /* EXTRA: size(), contains() 등은 컬렉션 전체를 로딩하지 않고 쿼리로 처리 */
+    @LazyCollection(LazyCollectionOption.EXTRA)
     @OneToMany(mappedBy = "team", cascade=CascadeType.ALL)
     private List<Member> members = new ArrayList<>();
 
     public Team(String name) {
         this.name = name;
     }
+
+    /* 팀 이름 변경: 로딩된 팀원 컬렉션의 Member.teamName 만 맞춘다. DB 의 나머지 팀원은 TeamRepository.rename 이 벌크 update 로 맞춘다 */
+    public void changeName(String name) {
+        this.name = name;
+        if (Hibernate.isInitialized(members)) members.forEach(Member::refreshTeamName);
+    }
+
+    /* 연관관계의 주인은 Member.team 이므로 여기서는 메모리상 컬렉션만 맞춘다. 로딩 안 된 컬렉션은 건드리지 않음 */
+    void addMember(Member member) {
+        if (Hibernate.isInitialized(members)) members.add(member);
+    }
+
+    void removeMember(Member member) {
+        if (Hibernate.isInitialized(members)) members.remove(member);
+    }
 }
@@ -0,0 +1,120 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.capture.SearchCaptureLog;
+import study.querydsl.repository.support.JdbcBulkhead;
+import study.querydsl.repository.support.QueryDeadlineExceededException;
+import study.querydsl.repository.support.SingleFlight;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * MemberRepositoryCustom 앞단에서 같은 조건/페이지로 동시에 들어온 검색을 하나의 DB 실행으로 합친다.
+ * 실제 DB 실행(리더)만 JdbcBulkhead 를 거친다. 합쳐진 요청은 permit 없이 결과를 기다린다.
+ * 합친 쿼리는 리더 요청의 마감(QueryDeadline)으로 실행된다. 리더가 자기 마감 때문에 실패하면 기다리던 요청은 그 실패를 받지 않고
+ * 자기 마감으로 다시 합쳐서 실행한다 (예: 1ms 예산의 리더 뒤에 3s 예산 요청이 붙은 경우).
+ * 기본은 꺼져 있다 (member.search.coalesce.enabled). 꺼져 있으면 합치지 않고 bulkhead 만 거쳐서 바로 실행한다.
+ */
+@Component
+public class CoalescingMemberSearch implements MemberRepositoryCustom {
+
+    private final MemberRepository memberRepository;
+    private final MemberJpaReposiotory memberJpaReposiotory;
+    private final JdbcBulkhead bulkhead;
+    private final SearchCaptureLog captureLog;
+    private final SingleFlight<SearchKey, Object> singleFlight;
+    private final boolean enabled;
+
+    public CoalescingMemberSearch(MemberRepository memberRepository,
+                                  MemberJpaReposiotory memberJpaReposiotory,
+                                  JdbcBulkhead bulkhead,
+                                  SearchCaptureLog captureLog,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${member.search.coalesce.enabled:false}") boolean enabled,
+                                  @Value("${member.search.coalesce.max-wait-ms:1000}") long maxWaitMillis) {
+        this.memberRepository = memberRepository;
+        this.memberJpaReposiotory = memberJpaReposiotory;
+        this.bulkhead = bulkhead;
+        this.captureLog = captureLog;
+        this.enabled = enabled;
+        this.singleFlight = new SingleFlight<>("member.search", Duration.ofMillis(maxWaitMillis), meterRegistry,
+                CoalescingMemberSearch::isDeadlineFailure);
+    }
+
+    /* /v1 은 원래대로 MemberJpaReposiotory.search 를 실행한다 (MemberRepository.search 와 결과는 같지만 다른 쿼리 경로) */
+    public List<MemberTeamDto> searchJpa(MemberSearchCondition condition) {
+        return coalesce("searchJpa", condition, null, () -> memberJpaReposiotory.search(condition));
+    }
+
+    @Override
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        return coalesce("search", condition, null, () -> memberRepository.search(condition));
+    }
+
+    @Override
+    public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
+        return coalesce("searchPageSimple", condition, pageable, () -> memberRepository.searchPageSimple(condition, pageable));
+    }
+
+    @Override
+    public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+        return coalesce("searchPageComplex", condition, pageable, () -> memberRepository.searchPageComplex(condition, pageable));
+    }
+
+    @Override
+    public Page<MemberTeamDto> searchPageDeferred(MemberSearchCondition condition, Pageable pageable) {
+        return coalesce("searchPageDeferred", condition, pageable, () -> memberRepository.searchPageDeferred(condition, pageable));
+    }
+
+    @Override
+    public List<MemberTeamDto> searchInterned(MemberSearchCondition condition) {
+        return coalesce("searchInterned", condition, null, () -> memberRepository.searchInterned(condition));
+    }
+
+    /* 샘플링된 요청은 조건/페이지/소요 시간을 캡처 로그에 남긴다 (리플레이용) */
+    private <T> T coalesce(String operation, MemberSearchCondition condition, Pageable pageable, Supplier<T> query) {
+        if (!captureLog.sample()) return execute(operation, condition, pageable, query);
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = execute(operation, condition, pageable, query);
+            failed = false;
+            return result;
+        } finally {
+            captureLog.record(operation, condition, pageable, System.nanoTime() - start, failed);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T execute(String operation, MemberSearchCondition condition, Pageable pageable, Supplier<T> query) {
+        if (!enabled) return bulkhead.call(query);
+        SearchKey key = new SearchKey(operation, condition.copy(), pageable);
+        return (T) singleFlight.execute(key, () -> bulkhead.call(query));
+    }
+
+    /* 마감 초과, statement timeout, 마감 취소 (ApiExceptionHandler.deadlineExceeded 와 같은 묶음) */
+    static boolean isDeadlineFailure(Throwable e) {
+        return e instanceof QueryDeadlineExceededException
+                || e instanceof org.springframework.dao.QueryTimeoutException
+                || e instanceof javax.persistence.QueryTimeoutException;
+    }
+
+    /* condition은 가변 객체라서 key에는 복사본을 담는다 */
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    private static final class SearchKey {
+        private final String operation;
+        private final MemberSearchCondition condition;
+        private final Pageable pageable;
+    }
+}
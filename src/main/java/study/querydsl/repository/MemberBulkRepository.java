@@ -0,0 +1,8 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Predicate;
+
+/* 값이 바뀐 행만 version 을 올리는 Member 벌크 update (VersionedMemberUpdate). 바뀐 행 수를 돌려준다 */
+public interface MemberBulkRepository {
+    long bulkUpdateAge(Predicate where, int age);
+}
@@ -0,0 +1,25 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.transaction.annotation.Transactional;
+
+import static study.querydsl.entity.QMember.member;
+
+public class MemberBulkRepositoryImpl implements MemberBulkRepository {
+
+    private final JPAQueryFactory queryFactory;
+
+    public MemberBulkRepositoryImpl(JPAQueryFactory queryFactory) {
+        this.queryFactory = queryFactory;
+    }
+
+    @Override
+    @Transactional
+    public long bulkUpdateAge(Predicate where, int age) {
+        return new VersionedMemberUpdate(queryFactory)
+                .set(member.age, age)
+                .where(where)
+                .execute();
+    }
+}
@@ -0,0 +1,10 @@
+package study.querydsl.repository;
+
+import study.querydsl.dto.MemberTeamDto;
+
+import java.util.Optional;
+
+/* findById 는 영속 엔티티를 돌려줘야 하므로 그대로 두고, 읽기 전용 조회는 near-cache 를 거친다 (MemberNearCache) */
+public interface MemberCachedRepository {
+    Optional<MemberTeamDto> findDtoById(Long id);
+}
@@ -0,0 +1,20 @@
+package study.querydsl.repository;
+
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.cache.MemberNearCache;
+
+import java.util.Optional;
+
+public class MemberCachedRepositoryImpl implements MemberCachedRepository {
+
+    private final MemberNearCache nearCache;
+
+    public MemberCachedRepositoryImpl(MemberNearCache nearCache) {
+        this.nearCache = nearCache;
+    }
+
+    @Override
+    public Optional<MemberTeamDto> findDtoById(Long id) {
+        return nearCache.findById(id);
+    }
+}
@@ -0,0 +1,13 @@
+package study.querydsl.repository;
+
+/**
+ * Member 엔티티를 돌려주는 검색에서 LAZY 연관관계인 team을 어떻게 가져올지.
+ */
+public enum MemberFetchStrategy {
+    /* team은 프록시로 두고, 처음 접근할 때 hibernate.default_batch_fetch_size 만큼 IN 으로 묶어서 조회 */
+    BATCH,
+    /* member와 team을 fetch join으로 한 번에 조회 */
+    FETCH_JOIN,
+    /* 페이징: member id만 먼저 페이징한 뒤 id IN 으로 fetch join. 페이징이 아니면 FETCH_JOIN과 같다 */
+    ID_PAGE_FETCH_JOIN
+}
@@ -1,18 +1,21 @@
 package study.querydsl.repository;
 
 import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.Expression;
 import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
-import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.StringUtils;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
-import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
 import study.querydsl.entity.QTeam;
+import study.querydsl.repository.cache.MemberNearCache;
+import study.querydsl.repository.filter.UsernameBloomFilter;
+import study.querydsl.repository.support.TeamNameSource;
 
 import javax.persistence.EntityManager;
 import java.util.List;
@@ -27,10 +30,22 @@ import static study.querydsl.entity.QTeam.team;
 public class MemberJpaReposiotory {
     private final EntityManager em;
     private final JPAQueryFactory queryFactory;
-
-    public MemberJpaReposiotory(EntityManager em) {
+    /* team join 또는 member.team_name(비정규화 복사본) */
+    private final TeamNameSource teamNames;
+    /* findByUsername 에서 확실히 없는 username 은 DB 에 가지 않는다 */
+    private final UsernameBloomFilter usernameFilter;
+    /* findDtoById 는 요청을 넘어 캐시된 스냅샷을 돌려준다 */
+    private final MemberNearCache nearCache;
+
+    public MemberJpaReposiotory(EntityManager em, JPAQueryFactory queryFactory,
+                                TeamNameSource teamNames,
+                                UsernameBloomFilter usernameFilter,
+                                MemberNearCache nearCache) {
         this.em = em;
-        this.queryFactory = new JPAQueryFactory(em);
+        this.queryFactory = queryFactory;
+        this.teamNames = teamNames;
+        this.usernameFilter = usernameFilter;
+        this.nearCache = nearCache;
     }
 
     public void save(Member member) {
@@ -42,6 +57,11 @@ public class MemberJpaReposiotory {
         return Optional.ofNullable(findMember);
     }
 
+    /* 엔티티가 필요 없는 읽기 전용 조회: 트랜잭션 밖이면 near-cache 를 거친다 */
+    public Optional<MemberTeamDto> findDtoById(Long id) {
+        return nearCache.findById(id);
+    }
+
     public List<Member> findAll() {
         return em.createQuery("select m from Member m", Member.class).getResultList();
     }
@@ -51,13 +71,18 @@ public class MemberJpaReposiotory {
     }
 
     public List<Member> findByUsername(String username) {
-        return em.createQuery("select m from Member m where m.username = :username", Member.class)
+        return usernameFilter.lookup(username, () -> em.createQuery("select m from Member m where m.username = :username", Member.class)
                 .setParameter("username", username)
-                .getResultList();
+                .getResultList());
     }
     /*Querydsl*/
     public List<Member> findByUsername_Querydsl(String username){
-        return queryFactory.selectFrom(member).where(member.username.eq(username)).fetch();
+        return usernameFilter.lookup(username, () -> queryFactory.selectFrom(member).where(member.username.eq(username)).fetch());
+    }
+
+    /* 대소문자 무시: function('lower', username) 대신 인덱스가 있는 username_lower 와 비교 */
+    public List<Member> findByUsernameIgnoreCase(String username){
+        return queryFactory.selectFrom(member).where(member.usernameLower.eq(Member.normalizeUsername(username))).fetch();
     }
 
     //-------------------------------------------------------------------------------------------------------------
@@ -66,10 +91,10 @@ public class MemberJpaReposiotory {
 
         BooleanBuilder builder = new BooleanBuilder();
         if (hasText(condition.getUsername()))
-            builder.and(member.username.eq(condition.getUsername()));
+            builder.and(usernameEq(condition.getUsername(), condition.isUsernameIgnoreCase()));
 
         if (hasText(condition.getTeamName()))
-            builder.and(team.name.eq(condition.getTeamName()));
+            builder.and(teamNames.teamName().eq(condition.getTeamName()));
 
         if (condition.getAgeGoe() != null)
             builder.and(member.age.goe(condition.getAgeGoe()));
@@ -78,33 +103,15 @@ public class MemberJpaReposiotory {
             builder.and(member.age.loe(condition.getAgeLoe()));
 
 
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        member.id,
-                        member.username,
-                        member.age,
-                        team.id,
-                        team.name
-                ))
-                .from(member)
-                .leftJoin(member.team, team)
+        return selectFromMember(teamNames.memberTeamDto())
                 .where(builder)
                 .fetch();
     }
 
     public List<MemberTeamDto> search(MemberSearchCondition condition){
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        member.id,
-                        member.username,
-                        member.age,
-                        team.id,
-                        team.name
-                ))
-                .from(member)
-                .leftJoin(member.team, team)
+        return selectFromMember(teamNames.memberTeamDto())
                 .where(
-                        usernameEq(condition.getUsername()),
+                        usernameEq(condition.getUsername(), condition.isUsernameIgnoreCase()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
@@ -113,23 +120,34 @@ public class MemberJpaReposiotory {
     }
 
     public List<Member> searchMember(MemberSearchCondition condition){
-        return queryFactory
-                .selectFrom(member)
-                .leftJoin(member.team, team)
+        return searchMember(condition, MemberFetchStrategy.BATCH);
+    }
+
+    public List<Member> searchMember(MemberSearchCondition condition, MemberFetchStrategy fetchStrategy){
+        JPAQuery<Member> query = queryFactory.selectFrom(member);
+        if (fetchStrategy != MemberFetchStrategy.BATCH) query.leftJoin(member.team, team).fetchJoin();
+        else teamNames.join(query);
+
+        return query
                 .where(
-                        usernameEq(condition.getUsername()),
+                        usernameEq(condition.getUsername(), condition.isUsernameIgnoreCase()),
                         teamNameEq(condition.getTeamName()),
                         ageBetween(condition.getAgeLoe(), condition.getAgeGoe())
                 )
                 .fetch();
     }
 
-    private BooleanExpression usernameEq(String username) {
-        return hasText(username) ? member.username.eq(username) : null;
+    private <T> JPAQuery<T> selectFromMember(Expression<T> projection) {
+        return teamNames.join(queryFactory.select(projection).from(member));
+    }
+
+    private BooleanExpression usernameEq(String username, boolean ignoreCase) {
+        if (!hasText(username)) return null;
+        return ignoreCase ? member.usernameLower.eq(Member.normalizeUsername(username)) : member.username.eq(username);
     }
 
     private BooleanExpression teamNameEq(String teamName) {
-        return hasText(teamName) ? team.name.eq(teamName) : null;
+        return teamNames.teamNameEq(teamName);
     }
 
     private BooleanExpression ageGoe(Integer ageGoe) {
@@ -6,6 +6,11 @@ import study.querydsl.entity.Member;
 
 import java.util.List;
 
-public interface MemberRepository extends JpaRepository<Member, Long> , MemberRepositoryCustom, QuerydslPredicateExecutor<Member> {
-    List<Member> findByUsername(String username);
+public interface MemberRepository extends JpaRepository<Member, Long> , MemberRepositoryCustom, MemberUsernameRepository, MemberCachedRepository, MemberBulkRepository, QuerydslPredicateExecutor<Member> {
+    List<Member> findByUsernameLower(String usernameLower);
+
+    /* 파생 쿼리 IgnoreCase 는 upper(username) = upper(?) 라서 인덱스를 못 탄다. username_lower 로 찾는다 */
+    default List<Member> findByUsernameIgnoreCase(String username) {
+        return findByUsernameLower(Member.normalizeUsername(username));
+    }
 }
@@ -12,4 +12,8 @@ public interface MemberRepositoryCustom {
     /* 아래 두개 추가 */
     Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable);
     Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable);
+    /* 인덱스가 있는 정렬 키만 허용, id만 먼저 페이징한 뒤 해당 페이지만 조회 */
+    Page<MemberTeamDto> searchPageDeferred(MemberSearchCondition condition, Pageable pageable);
+    /* search 와 같은 결과, 대량 조회용: 반복되는 username/teamName 문자열을 쿼리 안에서 공유 */
+    List<MemberTeamDto> searchInterned(MemberSearchCondition condition);
 }
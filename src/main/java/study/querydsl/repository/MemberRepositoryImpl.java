@@ -1,48 +1,73 @@
 package study.querydsl.repository;
 
-import com.querydsl.core.QueryResults;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Order;
+import com.querydsl.core.types.OrderSpecifier;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.ComparableExpressionBase;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.support.PageableExecutionUtils;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
-import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
+import study.querydsl.repository.support.InterningProjection;
+import study.querydsl.repository.support.TeamNameSource;
 
-import javax.persistence.EntityManager;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
+import static java.util.stream.Collectors.toMap;
 import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.member;
-import static study.querydsl.entity.QTeam.team;
 
 public class MemberRepositoryImpl implements MemberRepositoryCustom{
 
-    private final JPAQueryFactory queryFactory;
+    /* searchPageDeferred에서 허용하는 정렬 키 (모두 인덱스가 있는 컬럼) */
+    private static final Map<String, ComparableExpressionBase<?>> SORTABLE = Map.of(
+            "id", member.id,
+            "username", member.username,
+            "age", member.age
+    );
 
-    public MemberRepositoryImpl(EntityManager entityManager) {
-        this.queryFactory = new JPAQueryFactory(entityManager);
+    private final JPAQueryFactory queryFactory;
+    /* searchInterned 의 컬럼별 문자열 사전 크기 */
+    private final int internMaxEntries;
+    /* team join 또는 member.team_name(비정규화 복사본) */
+    private final TeamNameSource teamNames;
+
+    public MemberRepositoryImpl(JPAQueryFactory queryFactory,
+                                @Value("${member.search.intern.max-entries:4096}") int internMaxEntries,
+                                TeamNameSource teamNames) {
+        this.queryFactory = queryFactory;
+        this.internMaxEntries = internMaxEntries;
+        this.teamNames = teamNames;
     }
 
 
     @Override
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        member.id,
-                        member.username,
-                        member.age,
-                        team.id,
-                        team.name
-                ))
-                .from(member)
-                .leftJoin(member.team, team)
+        return selectFromMember(teamNames.memberTeamDto())
+                .where(
+                        usernameEq(condition.getUsername(), condition.isUsernameIgnoreCase()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())
+                )
+                .fetch();
+    }
+
+    @Override
+    public List<MemberTeamDto> searchInterned(MemberSearchCondition condition) {
+        return selectFromMember(InterningProjection.of(teamNames.memberTeamDto(), internMaxEntries, member.username, teamNames.teamName()))
                 .where(
-                        usernameEq(condition.getUsername()),
+                        usernameEq(condition.getUsername(), condition.isUsernameIgnoreCase()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
@@ -50,12 +75,17 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom{
                 .fetch();
     }
 
-    private BooleanExpression usernameEq(String username) {
-        return hasText(username) ? member.username.eq(username) : null;
+    private <T> JPAQuery<T> selectFromMember(Expression<T> projection) {
+        return teamNames.join(queryFactory.select(projection).from(member));
+    }
+
+    private BooleanExpression usernameEq(String username, boolean ignoreCase) {
+        if (!hasText(username)) return null;
+        return ignoreCase ? member.usernameLower.eq(Member.normalizeUsername(username)) : member.username.eq(username);
     }
 
     private BooleanExpression teamNameEq(String teamName) {
-        return hasText(teamName) ? team.name.eq(teamName) : null;
+        return teamNames.teamNameEq(teamName);
     }
 
     private BooleanExpression ageGoe(Integer ageGoe) {
@@ -68,46 +98,27 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom{
 
     @Override
     public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
-        QueryResults<MemberTeamDto> results = queryFactory
-                .select(new QMemberTeamDto(
-                        member.id,
-                        member.username,
-                        member.age,
-                        team.id,
-                        team.name
-                ))
-                .from(member)
-                .leftJoin(member.team, team)
+        List<MemberTeamDto> content = selectFromMember(teamNames.memberTeamDto())
                 .where(
-                        usernameEq(condition.getUsername()),
+                        usernameEq(condition.getUsername(), condition.isUsernameIgnoreCase()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
                 )
                 .offset(pageable.getOffset())
                 .limit(pageable.getPageSize())
-                .fetchResults();
-
-        List<MemberTeamDto> content = results.getResults();
-        long total = results.getTotal();
+                .fetch();
 
-        return new PageImpl<>(content, pageable, total);
+        /* fetchResults()는 deprecated: count 쿼리를 따로 만들고, 필요할 때만 실행 */
+        JPAQuery<Long> countQuery = countQuery(condition);
+        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchOne);
     }
 
     @Override
     public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
-        List<MemberTeamDto> contents = queryFactory
-                .select(new QMemberTeamDto(
-                        member.id,
-                        member.username,
-                        member.age,
-                        team.id,
-                        team.name
-                ))
-                .from(member)
-                .leftJoin(member.team, team)
+        List<MemberTeamDto> contents = selectFromMember(teamNames.memberTeamDto())
                 .where(
-                        usernameEq(condition.getUsername()),
+                        usernameEq(condition.getUsername(), condition.isUsernameIgnoreCase()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
@@ -117,15 +128,69 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom{
                 .fetch();
 
         /* .fetchCount를 없애고 JpaQuery로 남겨둠 */
-        JPAQuery<Member> countQuery = queryFactory.selectFrom(member)
-                .leftJoin(member.team, team)
+        JPAQuery<Long> countQuery = countQuery(condition);
+
+        return PageableExecutionUtils.getPage(contents, pageable, countQuery::fetchOne);
+    }
+
+    @Override
+    public Page<MemberTeamDto> searchPageDeferred(MemberSearchCondition condition, Pageable pageable) {
+        OrderSpecifier<?>[] orders = indexedOrders(pageable.getSort());
+
+        // 1) 인덱스만으로 처리되는 좁은 id 페이징
+        List<Long> ids = teamNames.joinIfFiltered(queryFactory.select(member.id).from(member), condition.getTeamName())
                 .where(
-                        usernameEq(condition.getUsername()),
+                        usernameEq(condition.getUsername(), condition.isUsernameIgnoreCase()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
-                );
+                )
+                .orderBy(orders)
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
+
+        // 2) 해당 페이지의 id만 team과 join 해서 DTO 생성, 순서는 1)을 따른다
+        List<MemberTeamDto> content = new ArrayList<>();
+        if (!ids.isEmpty()) {
+            Map<Long, MemberTeamDto> byId = selectFromMember(teamNames.memberTeamDto())
+                    .where(member.id.in(ids))
+                    .fetch().stream()
+                    .collect(toMap(MemberTeamDto::getMemberId, Function.identity()));
+            for (Long id : ids) content.add(byId.get(id));
+        }
+
+        JPAQuery<Long> countQuery = countQuery(condition);
+        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchOne);
+    }
+
+    /* 인덱스가 있는 컬럼만 정렬 허용. 마지막에 id를 붙여서 페이지 경계가 흔들리지 않게 한다 */
+    private OrderSpecifier<?>[] indexedOrders(Sort sort) {
+        List<OrderSpecifier<?>> orders = new ArrayList<>();
+        Order lastDirection = Order.ASC;
+        boolean hasId = false;
+        for (Sort.Order order : sort) {
+            ComparableExpressionBase<?> path = SORTABLE.get(order.getProperty());
+            if (path == null) throw new UnsupportedSortException(order.getProperty(), SORTABLE.keySet());
+            lastDirection = order.isAscending() ? Order.ASC : Order.DESC;
+            orders.add(order.isAscending() ? path.asc() : path.desc());
+            hasId |= path == member.id;
+        }
+        if (!hasId) orders.add(lastDirection == Order.ASC ? member.id.asc() : member.id.desc());
+        return orders.toArray(new OrderSpecifier[0]);
+    }
 
-        return PageableExecutionUtils.getPage(contents, pageable, () -> countQuery.fetchCount());
+    /*
+     * count 쿼리: select count(member)로 직접 세고, join은 조건이 필요로 할 때만 붙인다.
+     * team을 쓰는 조건은 teamName 뿐이고, team.name = ? 조건이 있으면 team 없는 회원은 어차피 빠지므로 inner join으로 충분하다.
+     * 비정규화(member.team_name)를 쓰면 join 자체가 필요 없다.
+     */
+    private JPAQuery<Long> countQuery(MemberSearchCondition condition) {
+        return teamNames.joinIfFiltered(queryFactory.select(member.count()).from(member), condition.getTeamName()).where(
+                usernameEq(condition.getUsername(), condition.isUsernameIgnoreCase()),
+                teamNameEq(condition.getTeamName()),
+                ageGoe(condition.getAgeGoe()),
+                ageLoe(condition.getAgeLoe())
+        );
     }
 }
@@ -0,0 +1,18 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.StringExpression;
+import study.querydsl.entity.Member;
+
+import java.util.List;
+
+/* 파생 쿼리 대신 구현: username 블룸 필터로 확실히 없는 username 은 DB 에 가지 않는다 */
+public interface MemberUsernameRepository {
+    List<Member> findByUsername(String username);
+
+    /* username 벌크 변경. @PreUpdate 를 타지 않으므로 username_lower 와 username 블룸 필터를 같이 맞춘다. 바뀐 행 수를 돌려준다 */
+    long bulkUpdateUsername(Predicate where, String username);
+
+    /* 식으로 바꾸는 경우 (예: username.concat("-x")). username_lower 는 lower(식) */
+    long bulkUpdateUsername(Predicate where, StringExpression username);
+}
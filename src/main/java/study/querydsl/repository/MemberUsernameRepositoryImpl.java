@@ -0,0 +1,54 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.StringExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.filter.UsernameBloomFilter;
+
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+
+public class MemberUsernameRepositoryImpl implements MemberUsernameRepository {
+
+    private final JPAQueryFactory queryFactory;
+    private final UsernameBloomFilter usernameFilter;
+
+    public MemberUsernameRepositoryImpl(JPAQueryFactory queryFactory, UsernameBloomFilter usernameFilter) {
+        this.queryFactory = queryFactory;
+        this.usernameFilter = usernameFilter;
+    }
+
+    @Override
+    public List<Member> findByUsername(String username) {
+        // 파생 쿼리처럼 null 이면 username is null
+        return usernameFilter.lookup(username, () -> queryFactory.selectFrom(member)
+                .where(username == null ? member.username.isNull() : member.username.eq(username))
+                .fetch());
+    }
+
+    @Override
+    @Transactional
+    public long bulkUpdateUsername(Predicate where, String username) {
+        usernameFilter.put(username);
+        return new VersionedMemberUpdate(queryFactory)
+                .set(member.username, username)
+                .set(member.usernameLower, Member.normalizeUsername(username))
+                .where(where)
+                .execute();
+    }
+
+    @Override
+    @Transactional
+    public long bulkUpdateUsername(Predicate where, StringExpression username) {
+        // 어떤 값이 될지 모르므로 커밋 후 다시 만들 때까지 필터를 쓰지 않는다
+        usernameFilter.invalidate();
+        return new VersionedMemberUpdate(queryFactory)
+                .set(member.username, username)
+                .set(member.usernameLower, username.lower())
+                .where(where)
+                .execute();
+    }
+}
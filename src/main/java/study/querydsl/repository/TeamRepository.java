@@ -0,0 +1,78 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.QTeam;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/* 팀 이름 변경과 Member.teamName(비정규화 복사본) 유지 */
+@Repository
+@Transactional
+public class TeamRepository {
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+
+    public TeamRepository(EntityManager em, JPAQueryFactory queryFactory) {
+        this.em = em;
+        this.queryFactory = queryFactory;
+    }
+
+    /* 팀 이름을 바꾸고 팀원들의 team_name 을 벌크 update 한 번으로 맞춘다. 바뀐 회원 수를 돌려준다 */
+    public long rename(Long teamId, String name) {
+        Team findTeam = em.find(Team.class, teamId);
+        if (findTeam == null) throw new IllegalArgumentException("team not found: " + teamId);
+        findTeam.changeName(name);
+
+        long updated = queryFactory
+                .update(member)
+                .set(member.teamName, name)
+                .where(member.team.id.eq(teamId))
+                .execute();
+
+        // 벌크 update 는 영속성 컨텍스트를 거치지 않는다. 이미 로딩된 회원을 안 맞추면 다음 flush 때 예전 이름으로 덮어쓰거나
+        // 예전 version 으로 update 하다 OptimisticLockException 이 난다. 변경분은 벌크 update 전에 자동 flush 됐으므로 refresh 한다
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        List<Member> stale = new ArrayList<>();
+        for (Map.Entry<Object, EntityEntry> entry : session.getPersistenceContext().reentrantSafeEntityEntries()) {
+            if (!(entry.getKey() instanceof Member)) continue;
+            Member managed = (Member) entry.getKey();
+            if (managed.getTeam() != null && teamId.equals(managed.getTeam().getId())) stale.add(managed);
+        }
+        stale.forEach(em::refresh);
+        return updated;
+    }
+
+    /* 회원들을 벌크 update 로 다른 팀에 옮긴다. team_name 은 그 팀에서 subquery 로 읽고, 값이 바뀐 행만 version 을 올린다 */
+    public long moveMembers(Predicate where, Expression<Team> newTeam) {
+        QTeam target = new QTeam("targetTeam");
+        return new VersionedMemberUpdate(queryFactory)
+                .set(member.team, newTeam)
+                .set(member.teamName, JPAExpressions.select(target.name).from(target).where(target.eq(newTeam)))
+                .where(where)
+                .execute();
+    }
+
+    /* team_name 컬럼이 생기기 전 데이터(혹은 JDBC 로 넣은 데이터)를 team.name 으로 채운다 */
+    public long backfillMemberTeamNames() {
+        return queryFactory
+                .update(member)
+                .set(member.teamName, JPAExpressions.select(team.name).from(team).where(team.eq(member.team)))
+                .where(member.team.isNotNull())
+                .execute();
+    }
+}
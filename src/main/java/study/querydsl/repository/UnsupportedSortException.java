@@ -0,0 +1,10 @@
+package study.querydsl.repository;
+
+import java.util.Set;
+
+public class UnsupportedSortException extends RuntimeException {
+
+    public UnsupportedSortException(String property, Set<String> allowed) {
+        super("sort by '" + property + "' is not supported, allowed: " + allowed);
+    }
+}
@@ -0,0 +1,66 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.CaseBuilder;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * Member 벌크 update 에 version 을 같이 올린다. 값이 실제로 바뀌는 행만 +1 한다 (같은 값을 다시 set 한 행의 near-cache 가 버려지지 않게).
+ * 공용 JPAQueryFactory 의 update 는 version 을 건드리지 않으므로, near-cache(MemberNearCache)가 version 으로 알아채야 하는 벌크 변경은 이걸 거친다.
+ * 이미 로딩된 회원은 예전 version 을 들고 있으므로 벌크 update 뒤에 고치려면 em.clear/refresh 가 필요하다.
+ */
+final class VersionedMemberUpdate {
+
+    private final JPAUpdateClause update;
+    /* 이 중 하나라도 참인 행은 값이 바뀌는 행이다 */
+    private final List<Predicate> differences = new ArrayList<>();
+
+    VersionedMemberUpdate(JPAQueryFactory queryFactory) {
+        this.update = queryFactory.update(member);
+    }
+
+    <T> VersionedMemberUpdate set(Path<T> path, T value) {
+        update.set(path, value);
+        differences.add(Expressions.booleanOperation(Ops.OR,
+                Expressions.booleanOperation(Ops.NE, path, Expressions.constant(value)),
+                Expressions.booleanOperation(Ops.IS_NULL, path)));
+        return this;
+    }
+
+    <T> VersionedMemberUpdate set(Path<T> path, Expression<? extends T> expression) {
+        update.set(path, expression);
+        // null 이 섞이면 같은지 알 수 없으므로 바뀐 것으로 본다
+        differences.add(Expressions.booleanOperation(Ops.OR,
+                Expressions.booleanOperation(Ops.NE, path, expression),
+                Expressions.booleanOperation(Ops.OR,
+                        Expressions.booleanOperation(Ops.IS_NULL, path),
+                        Expressions.booleanOperation(Ops.IS_NULL, expression))));
+        return this;
+    }
+
+    VersionedMemberUpdate where(Predicate... where) {
+        update.where(where);
+        return this;
+    }
+
+    /* case 의 비교는 set 전 값으로 한다 (표준 SQL 의 update 의미) */
+    long execute() {
+        if (!differences.isEmpty()) {
+            update.set(member.version, new CaseBuilder()
+                    .when(ExpressionUtils.anyOf(differences)).then(member.version.add(1L))
+                    .otherwise(member.version));
+        }
+        return update.execute();
+    }
+}
@@ -0,0 +1,318 @@
+package study.querydsl.repository.batch;
+
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.hibernate.HibernateQueryFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.change.ChangeEventPublisher;
+import study.querydsl.repository.change.ChangeRecord;
+import study.querydsl.repository.filter.UsernameBloomFilter;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 전체 회원을 훑으면서 일부를 고치는 배치 작업용.
+ *
+ * 읽기는 StatelessSession 의 forward-only 커서(id 순)로 한 건씩 흘려보내고, 영속성 컨텍스트가 없으니 flush/clear 도 필요 없다.
+ * callback 이 true 를 돌려준 회원만 모아서 chunk-size 건마다 JDBC batch update 로 쓰고 커밋한다.
+ * 커밋할 때마다 마지막 id 를 checkpoint 로 넘기므로, 중간에 죽으면 그 id 부터 다시 시작하면 된다.
+ *
+ * 메모리에는 chunk-size 건과 JDBC fetch-size 건만 남는다. team 은 fetch join 으로 같이 읽는다 (stateless 라 lazy 로딩 불가).
+ *
+ * 커서로 읽은 뒤 쓰기까지 사이에 다른 곳에서 고친 회원을 덮어쓰지 않도록 version 이 읽은 그대로일 때만 쓴다 (낙관적 락).
+ * 0 건이면 최신 행을 다시 읽어 callback 을 다시 적용하고 max-retries 번까지 다시 쓴다. 그래도 안 되면 conflicts 로 센다.
+ * 그래서 callback 은 같은 회원에 대해 여러 번 불릴 수 있다 (고친 값만 돌려주는 순수 함수여야 한다).
+ */
+@Slf4j
+@Component
+public class MemberBatchProcessor {
+
+    static final String UPDATE_MEMBER = "update member set username = ?, username_lower = ?, age = ?, team_id = ?, team_name = ?, version = version + 1 where member_id = ? and version = ?";
+
+    private final SessionFactory sessionFactory;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ChangeEventPublisher changeEventPublisher;
+    private final UsernameBloomFilter usernameFilter;
+    private final int chunkSize;
+    private final int fetchSize;
+    private final int maxRetries;
+    private final Counter processedCounter;
+    private final Counter updatedCounter;
+    private final Counter retriedCounter;
+    private final Counter conflictCounter;
+
+    public MemberBatchProcessor(EntityManagerFactory entityManagerFactory,
+                                JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                ChangeEventPublisher changeEventPublisher,
+                                UsernameBloomFilter usernameFilter,
+                                MeterRegistry meterRegistry,
+                                @Value("${member.batch.chunk-size:1000}") int chunkSize,
+                                @Value("${member.batch.fetch-size:1000}") int fetchSize,
+                                @Value("${member.batch.max-retries:3}") int maxRetries) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.changeEventPublisher = changeEventPublisher;
+        this.usernameFilter = usernameFilter;
+        this.chunkSize = chunkSize;
+        this.fetchSize = fetchSize;
+        this.maxRetries = maxRetries;
+        this.processedCounter = meterRegistry.counter("member.batch.processed");
+        this.updatedCounter = meterRegistry.counter("member.batch.updated");
+        this.retriedCounter = meterRegistry.counter("member.batch.retried");
+        this.conflictCounter = meterRegistry.counter("member.batch.conflicts");
+    }
+
+    /* 처음부터 */
+    public BatchResult process(MemberCallback callback, Checkpoint checkpoint) {
+        return process(0L, callback, checkpoint);
+    }
+
+    /* afterId 보다 큰 id 부터 (재시작할 때는 마지막 checkpoint id) */
+    public BatchResult process(long afterId, MemberCallback callback, Checkpoint checkpoint) {
+        return process(afterId, null, callback, checkpoint);
+    }
+
+    /* where 에 맞는 회원만 훑는다 (null 이면 전부) */
+    public BatchResult process(long afterId, @Nullable Predicate where, MemberCallback callback, Checkpoint checkpoint) {
+        long processed = 0;
+        long updated = 0;
+        long conflicts = 0;
+        long lastId = afterId;
+        List<Change> changed = new ArrayList<>(chunkSize);
+
+        StatelessSession session = sessionFactory.openStatelessSession();
+        try {
+            session.beginTransaction();
+            ScrollableResults cursor = new HibernateQueryFactory(session)
+                    .selectFrom(member)
+                    .leftJoin(member.team, team).fetchJoin()
+                    .where(member.id.gt(afterId), where)
+                    .orderBy(member.id.asc())
+                    .setFetchSize(fetchSize)
+                    .setReadOnly(true)
+                    .scroll(ScrollMode.FORWARD_ONLY);
+            try {
+                long inChunk = 0;
+                while (cursor.next()) {
+                    Member m = (Member) cursor.get(0);
+                    Change change = new Change(m);
+                    if (callback.process(m)) changed.add(change);
+                    lastId = m.getId();
+                    processed++;
+                    if (++inChunk == chunkSize) {
+                        ChunkResult chunk = commit(changed, callback, inChunk, lastId, processed, updated, checkpoint);
+                        updated += chunk.written;
+                        conflicts += chunk.conflicts;
+                        inChunk = 0;
+                    }
+                }
+                if (inChunk > 0) {
+                    ChunkResult chunk = commit(changed, callback, inChunk, lastId, processed, updated, checkpoint);
+                    updated += chunk.written;
+                    conflicts += chunk.conflicts;
+                }
+            } finally {
+                cursor.close();
+            }
+            session.getTransaction().commit();
+        } finally {
+            session.close();
+        }
+        log.info("member batch done: {} processed, {} updated, {} conflicts, last id {}", processed, updated, conflicts, lastId);
+        return new BatchResult(processed, updated, conflicts, lastId);
+    }
+
+    private ChunkResult commit(List<Change> changed, MemberCallback callback, long chunkProcessed, long lastId,
+                               long processed, long updatedSoFar, Checkpoint checkpoint) {
+        processedCounter.increment(chunkProcessed);
+        ChunkResult result = changed.isEmpty() ? ChunkResult.EMPTY : transactionTemplate.execute(status -> write(changed, callback));
+        changed.clear();
+        updatedCounter.increment(result.written);
+        conflictCounter.increment(result.conflicts);
+        checkpoint.committed(lastId, processed, updatedSoFar + result.written);
+        return result;
+    }
+
+    /* chunk 트랜잭션 안: version 이 맞는 행만 쓰고, 어긋난 행은 다시 읽어서 재시도 */
+    private ChunkResult write(List<Change> changes, MemberCallback callback) {
+        List<Change> written = new ArrayList<>(changes.size());
+        List<Change> attempt = changes;
+        for (int retry = 0; !attempt.isEmpty(); retry++) {
+            if (retry > 0) retriedCounter.increment(attempt.size());
+            List<Object[]> args = new ArrayList<>(attempt.size());
+            for (Change change : attempt) {
+                Member m = change.member;
+                args.add(new Object[]{
+                        m.getUsername(),
+                        Member.normalizeUsername(m.getUsername()),
+                        m.getAge(),
+                        m.getTeam() == null ? null : m.getTeam().getId(),
+                        m.getTeam() == null ? null : m.getTeam().getName(),
+                        m.getId(),
+                        change.version
+                });
+            }
+            int[] counts = jdbcTemplate.batchUpdate(UPDATE_MEMBER, args);
+            List<Change> stale = new ArrayList<>();
+            for (int i = 0; i < counts.length; i++) {
+                // SUCCESS_NO_INFO(-2) 를 돌려주는 드라이버에서는 충돌을 알 수 없으므로 쓴 것으로 본다
+                if (counts[i] == 0) stale.add(attempt.get(i));
+                else written.add(attempt.get(i));
+            }
+            if (stale.isEmpty() || retry == maxRetries) {
+                if (!stale.isEmpty()) {
+                    log.warn("member batch gave up on {} members changed concurrently: {}", stale.size(),
+                            stale.stream().map(c -> c.member.getId()).collect(Collectors.toList()));
+                }
+                publish(written);
+                return new ChunkResult(written.size(), stale.size());
+            }
+            attempt = reload(stale, callback);
+        }
+        publish(written);
+        return new ChunkResult(written.size(), 0);
+    }
+
+    /* 충돌한 회원을 같은 트랜잭션(커넥션)에서 다시 읽어 callback 을 다시 적용한다. 그 사이 지워졌거나 고칠 게 없어지면 뺀다 */
+    private List<Change> reload(List<Change> stale, MemberCallback callback) {
+        List<Long> ids = stale.stream().map(c -> c.member.getId()).collect(Collectors.toList());
+        DataSource dataSource = Objects.requireNonNull(jdbcTemplate.getDataSource());
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        StatelessSession session = sessionFactory.withStatelessOptions().connection(connection).openStatelessSession();
+        try {
+            List<Change> retry = new ArrayList<>(ids.size());
+            for (Member fresh : new HibernateQueryFactory(session)
+                    .selectFrom(member)
+                    .leftJoin(member.team, team).fetchJoin()
+                    .where(member.id.in(ids))
+                    .orderBy(member.id.asc())
+                    .fetch()) {
+                Change change = new Change(fresh);
+                if (callback.process(fresh)) retry.add(change);
+            }
+            return retry;
+        } finally {
+            session.close();
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    /*
+     * 새 username 은 커밋 전에 필터에 넣고 예전 username 은 커밋 후에 뺀다.
+     * 변경 레코드에는 쓴 회원 id 와 실제로 바뀐 프로퍼티만 담는다 (받는 쪽이 그 회원만 무효화하게).
+     */
+    private void publish(List<Change> written) {
+        if (written.isEmpty()) return;
+        Set<String> properties = new LinkedHashSet<>();
+        properties.add("version");
+        List<Long> ids = new ArrayList<>(written.size());
+        for (Change change : written) {
+            Member m = change.member;
+            ids.add(m.getId());
+            if (!Objects.equals(change.username, m.getUsername())) {
+                usernameFilter.put(m.getUsername());
+                usernameFilter.removeAfterCommit(change.username);
+                properties.add("username");
+                properties.add("usernameLower");
+            }
+            if (change.age != m.getAge()) properties.add("age");
+            if (!Objects.equals(change.teamId, teamId(m))) {
+                properties.add("team");
+                properties.add("teamName");
+            }
+        }
+        changeEventPublisher.publishAfterCommit(ChangeRecord.bulk("Member", ChangeRecord.Operation.BULK_UPDATE, written.size(),
+                properties.toArray(new String[0]), ids));
+    }
+
+    private static Long teamId(Member m) {
+        return m.getTeam() == null ? null : m.getTeam().getId();
+    }
+
+    /* callback 이 고치기 전 값 (무엇이 바뀌었는지와 낙관적 락 version) */
+    private static final class Change {
+        final Member member;
+        final String username;
+        final int age;
+        final Long teamId;
+        final Long version;
+
+        Change(Member member) {
+            this.member = member;
+            this.username = member.getUsername();
+            this.age = member.getAge();
+            this.teamId = teamId(member);
+            this.version = member.getVersion();
+        }
+    }
+
+    private static final class ChunkResult {
+        static final ChunkResult EMPTY = new ChunkResult(0, 0);
+
+        final long written;
+        final long conflicts;
+
+        ChunkResult(long written, long conflicts) {
+            this.written = written;
+            this.conflicts = conflicts;
+        }
+    }
+
+    @FunctionalInterface
+    public interface MemberCallback {
+        /* 회원을 고쳤으면 true (true 인 회원만 다시 쓴다) */
+        boolean process(Member member);
+    }
+
+    @FunctionalInterface
+    public interface Checkpoint {
+        Checkpoint NONE = (lastId, processed, updated) -> { };
+
+        /* lastId 까지 커밋됨 */
+        void committed(long lastId, long processed, long updated);
+    }
+
+    public static final class BatchResult {
+        public final long processed;
+        public final long updated;
+        /* 재시도해도 동시 변경과 겹쳐서 쓰지 못한 회원 수 */
+        public final long conflicts;
+        public final long lastId;
+
+        BatchResult(long processed, long updated, long conflicts, long lastId) {
+            this.processed = processed;
+            this.updated = updated;
+            this.conflicts = conflicts;
+            this.lastId = lastId;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package study.querydsl.repository.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.change.ChangeEventPublisher;
+import study.querydsl.repository.change.ChangeListener;
+import study.querydsl.repository.change.ChangeRecord;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 요청을 넘어 재사용하는 id -> 회원 스냅샷 near-cache. 영속성 컨텍스트(요청 단위)와 달리 핫 키는 DB 에 가지 않는다.
+ *
+ * - Caffeine(W-TinyLFU): 자주 조회되는 id 가 남고 한 번 스친 id 는 먼저 밀려난다. 크기는 건수가 아니라 추정 바이트(max-bytes)로 제한한다.
+ * - 없는 id 도 negative-ttl 동안 캐시한다.
+ * - 무효화: 커밋 후 변경 레코드(ChangeEventPublisher)로 id 단위로 지운다. 벌크 변경도 where 가 id 조건이면 레코드에 id 가 실려 온다.
+ *   id 를 모르는 벌크 delete 와 version 을 올리는 벌크 update(MemberBulkRepository)는 전부 지우지 않고 세대(bulkEpoch)만 올린다.
+ *   이전 세대에 읽은 항목은 다음 적중 때 version 을 PK 로 확인해서 같으면 새 세대로 다시 표시하고, 다르면(지워졌거나 값이 바뀐 행) 다시 읽는다.
+ *   version 을 안 올리는 벌크 update(공용 JPAQueryFactory 를 그대로 쓴 것)와 팀 이름 변경은 전부 지운다.
+ *   변경 레코드는 비동기라 커밋 직후 잠깐은 예전 값이 보일 수 있고, 버퍼가 넘쳐 레코드가 빠지면 ttl 까지 남는다.
+ * - validate-version: 캐시에서 꺼낼 때마다 version 을 확인한다. 엔티티 변경과 version 을 올리는 벌크 update 는 위 틈 없이 바로 보인다.
+ *
+ * 트랜잭션 안에서는 캐시를 쓰지 않는다 (자기 트랜잭션의 커밋 전 변경이 보여야 하고, 롤백될 값을 캐시에 넣으면 안 된다).
+ * 캐시 값은 불변 스냅샷이고 돌려줄 때마다 새 MemberTeamDto 를 만든다.
+ */
+@Component
+public class MemberNearCache implements ChangeListener {
+
+    /* Caffeine 노드 + Long 키 + 스냅샷 객체 대략치 */
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final JPAQueryFactory queryFactory;
+    private final ChangeEventPublisher changeEventPublisher;
+    private final boolean enabled;
+    private final boolean validateVersion;
+    private final Cache<Long, Snapshot> cache;
+    private final AtomicLong bulkEpoch = new AtomicLong();
+
+    private final Counter negativeHits;
+    private final Counter staleHits;
+    private final Counter bypassed;
+
+    public MemberNearCache(JPAQueryFactory queryFactory,
+                           ChangeEventPublisher changeEventPublisher,
+                           MeterRegistry meterRegistry,
+                           @Value("${member.near-cache.enabled:false}") boolean enabled,
+                           @Value("${member.near-cache.max-bytes:67108864}") long maxBytes,
+                           @Value("${member.near-cache.ttl:5m}") Duration ttl,
+                           @Value("${member.near-cache.negative-ttl:30s}") Duration negativeTtl,
+                           @Value("${member.near-cache.validate-version:false}") boolean validateVersion) {
+        this.queryFactory = queryFactory;
+        this.changeEventPublisher = changeEventPublisher;
+        this.enabled = enabled;
+        this.validateVersion = validateVersion;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Long id, Snapshot snapshot) -> snapshot.weight())
+                .expireAfter(new SnapshotExpiry(ttl.toNanos(), negativeTtl.toNanos()))
+                .recordStats()
+                .build();
+
+        // cache.gets{cache=member.near-cache, result=hit|miss}, cache.evictions, cache.size 등
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "member.near-cache");
+        this.negativeHits = meterRegistry.counter("member.near-cache.lookups", "result", "negative-hit");
+        this.staleHits = meterRegistry.counter("member.near-cache.lookups", "result", "stale");
+        this.bypassed = meterRegistry.counter("member.near-cache.lookups", "result", "bypass");
+        Gauge.builder("member.near-cache.weight", cache,
+                        c -> c.policy().eviction().map(e -> e.weightedSize().orElse(0L)).orElse(0L))
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        if (enabled) changeEventPublisher.subscribe(this);
+    }
+
+    public Optional<MemberTeamDto> findById(Long id) {
+        if (!enabled || id == null || TransactionSynchronizationManager.isActualTransactionActive()) {
+            bypassed.increment();
+            return load(id).toDto();
+        }
+        // 읽는 도중 같은 id 가 무효화되면 읽기가 끝난 뒤에 지워진다 (Caffeine 의 compute 는 키 단위로 잠근다)
+        // 세대는 읽기 전에 잡는다: 읽는 도중 벌크 변경이 커밋되면 이전 세대로 남아 다음 적중 때 확인된다
+        boolean[] loaded = new boolean[1];
+        Snapshot snapshot = cache.get(id, key -> {
+            loaded[0] = true;
+            return load(key, bulkEpoch.get());
+        });
+        if (!loaded[0] && (validateVersion || snapshot.epoch != bulkEpoch.get())) {
+            long epoch = bulkEpoch.get();
+            if (Objects.equals(snapshot.version, currentVersion(id))) {
+                if (snapshot.epoch != epoch) cache.asMap().replace(id, snapshot, snapshot.withEpoch(epoch));
+            } else {
+                staleHits.increment();
+                cache.asMap().remove(id, snapshot);
+                snapshot = cache.get(id, key -> load(key, epoch));
+                loaded[0] = true;
+            }
+        }
+        if (!loaded[0] && snapshot.isMissing()) negativeHits.increment();
+        return snapshot.toDto();
+    }
+
+    public void invalidate(Long id) {
+        cache.invalidate(id);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long estimatedSize() {
+        return cache.estimatedSize();
+    }
+
+    @Override
+    public void onChanges(List<ChangeRecord> changes) {
+        for (ChangeRecord change : changes) {
+            if ("Member".equals(change.getEntityName())) {
+                if (!change.isBulk()) invalidate((Long) change.getId());
+                else if (change.hasIds()) change.getIds().forEach(id -> invalidate(((Number) id).longValue()));
+                else if (versionDetects(change)) bulkEpoch.incrementAndGet();
+                else invalidateAll();
+            } else if ("Team".equals(change.getEntityName()) && changesTeamName(change)) {
+                // 팀 이름은 회원 version 을 올리지 않을 수도 있다 (Team 만 update 한 경우)
+                invalidateAll();
+            }
+        }
+    }
+
+    /* 지워진 행은 version 이 없고, version 을 올린 update 는 바뀐 행의 version 이 다르다. 그 밖의 update 는 version 으로 알 수 없다 */
+    private static boolean versionDetects(ChangeRecord change) {
+        return change.getOperation() == ChangeRecord.Operation.BULK_DELETE || change.touches("version");
+    }
+
+    private static boolean changesTeamName(ChangeRecord change) {
+        return change.getOperation() != ChangeRecord.Operation.INSERT && change.touches("name");
+    }
+
+    private Snapshot load(Long id) {
+        return load(id, bulkEpoch.get());
+    }
+
+    private Snapshot load(Long id, long epoch) {
+        if (id == null) return Snapshot.missing(epoch);
+        Tuple row = queryFactory
+                .select(member.id, member.username, member.age, team.id, team.name, member.version)
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(member.id.eq(id))
+                .fetchOne();
+        if (row == null) return Snapshot.missing(epoch);
+        return new Snapshot(row.get(member.id), row.get(member.username), row.get(member.age),
+                row.get(team.id), row.get(team.name), row.get(member.version), epoch);
+    }
+
+    /* PK 로 version 컬럼만 읽는다. 없는 회원이면 null (negative 캐시와 같으면 최신) */
+    private Long currentVersion(Long id) {
+        return queryFactory
+                .select(member.version)
+                .from(member)
+                .where(member.id.eq(id))
+                .fetchOne();
+    }
+
+    /* 캐시에 두는 불변 스냅샷. id 가 null 이면 없는 id. epoch 는 읽을 때의 벌크 세대 */
+    static final class Snapshot {
+        final Long id;
+        final String username;
+        final int age;
+        final Long teamId;
+        final String teamName;
+        final Long version;
+        final long epoch;
+
+        Snapshot(Long id, String username, int age, Long teamId, String teamName, Long version, long epoch) {
+            this.id = id;
+            this.username = username;
+            this.age = age;
+            this.teamId = teamId;
+            this.teamName = teamName;
+            this.version = version;
+            this.epoch = epoch;
+        }
+
+        static Snapshot missing(long epoch) {
+            return new Snapshot(null, null, 0, null, null, null, epoch);
+        }
+
+        Snapshot withEpoch(long epoch) {
+            return new Snapshot(id, username, age, teamId, teamName, version, epoch);
+        }
+
+        boolean isMissing() {
+            return id == null;
+        }
+
+        Optional<MemberTeamDto> toDto() {
+            if (isMissing()) return Optional.empty();
+            return Optional.of(new MemberTeamDto(id, username, age, teamId, teamName));
+        }
+
+        /* 문자열은 UTF-16 기준으로 넉넉하게 잡는다 */
+        int weight() {
+            return ENTRY_OVERHEAD + stringBytes(username) + stringBytes(teamName);
+        }
+
+        private static int stringBytes(String value) {
+            return value == null ? 0 : 40 + value.length() * 2;
+        }
+    }
+
+    /* 있는 회원은 ttl, 없는 id 는 negative-ttl. 읽어도 만료 시각은 그대로 */
+    private static final class SnapshotExpiry implements Expiry<Long, Snapshot> {
+        private final long ttlNanos;
+        private final long negativeTtlNanos;
+
+        SnapshotExpiry(long ttlNanos, long negativeTtlNanos) {
+            this.ttlNanos = ttlNanos;
+            this.negativeTtlNanos = negativeTtlNanos;
+        }
+
+        @Override
+        public long expireAfterCreate(Long id, Snapshot snapshot, long currentTime) {
+            return snapshot.isMissing() ? negativeTtlNanos : ttlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(Long id, Snapshot snapshot, long currentTime, long currentDuration) {
+            return expireAfterCreate(id, snapshot, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Long id, Snapshot snapshot, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package study.querydsl.repository.capture;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import org.springframework.data.domain.Pageable;
+import study.querydsl.dto.MemberSearchCondition;
+
+import java.util.StringJoiner;
+
+/**
+ * 캡처된 검색 한 건: 언제, 어떤 메서드를 어떤 조건/페이지로 호출했고 얼마나 걸렸는지.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class CapturedSearch {
+
+    private final long timestampMillis;
+    /* CoalescingMemberSearch 메서드 이름 (search, searchPageSimple, ...) */
+    private final String operation;
+    private final MemberSearchCondition condition;
+    /* search 는 Pageable.unpaged() */
+    private final Pageable pageable;
+    private final long durationMicros;
+    private final boolean failed;
+
+    /* 리플레이 결과를 묶는 단위: 메서드 + 채워진 조건 필드 + 페이지 크기 + 정렬 (값은 빼고 쿼리 모양만) */
+    public String shape() {
+        StringJoiner fields = new StringJoiner(",", "[", "]");
+        if (condition.getUsername() != null) fields.add(condition.isUsernameIgnoreCase() ? "usernameIgnoreCase" : "username");
+        if (condition.getTeamName() != null) fields.add("teamName");
+        if (condition.getAgeGoe() != null) fields.add("ageGoe");
+        if (condition.getAgeLoe() != null) fields.add("ageLoe");
+        String page = pageable.isPaged() ? " size=" + pageable.getPageSize() : "";
+        String sort = pageable.getSort().isSorted() ? " sort=" + pageable.getSort() : "";
+        return operation + fields + page + sort;
+    }
+}
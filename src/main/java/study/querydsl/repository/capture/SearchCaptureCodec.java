@@ -0,0 +1,145 @@
+package study.querydsl.repository.capture;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import study.querydsl.dto.MemberSearchCondition;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 캡처 파일 형식. 파일 맨 앞에 MAGIC(int) + VERSION(short), 그 뒤로 레코드가 이어 붙는다 (append-only).
+ *
+ * 레코드: timestamp(long) operation(byte) flags(byte) [username(str)] [teamName(str)] [ageGoe(int)] [ageLoe(int)]
+ *        page(int, unpaged 면 -1) size(int) sortCount(byte) {property(str) descending(boolean)} durationMicros(int) failed(boolean)
+ *
+ * flags 비트가 조건 필드의 유무(와 usernameIgnoreCase).
+ * 문자열(str)은 VERSION 2 부터 byte 길이(int) + UTF-8. VERSION 1 은 DataOutput.writeUTF 라 64KB 를 넘는 문자열을 못 썼다 (읽기는 둘 다 된다).
+ */
+public final class SearchCaptureCodec {
+
+    public static final int MAGIC = 0x4D534350; // "MSCP"
+    public static final short VERSION = 2;
+
+    /* 손상된 파일에서 길이를 잘못 읽어 거대한 배열을 만들지 않게 */
+    private static final int MAX_STRING_BYTES = 16 * 1024 * 1024;
+
+    /* 순서가 파일에 기록되는 코드이므로 새 메서드는 뒤에 붙인다 */
+    private static final String[] OPERATIONS = {"search", "searchPageSimple", "searchPageComplex", "searchPageDeferred", "searchInterned", "searchJpa"};
+
+    private static final int USERNAME = 1;
+    private static final int TEAM_NAME = 1 << 1;
+    private static final int AGE_GOE = 1 << 2;
+    private static final int AGE_LOE = 1 << 3;
+    private static final int USERNAME_IGNORE_CASE = 1 << 4;
+
+    private SearchCaptureCodec() {
+    }
+
+    public static void writeHeader(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+    }
+
+    /* 파일 형식 버전을 돌려준다. read(in, version) 에 넘긴다 */
+    public static short readHeader(DataInput in) throws IOException {
+        int magic = in.readInt();
+        short version = in.readShort();
+        if (magic != MAGIC || version < 1 || version > VERSION) {
+            throw new IOException("not a search capture file (magic=" + Integer.toHexString(magic) + ", version=" + version + ")");
+        }
+        return version;
+    }
+
+    public static void write(DataOutput out, CapturedSearch search) throws IOException {
+        MemberSearchCondition condition = search.getCondition();
+        out.writeLong(search.getTimestampMillis());
+        out.writeByte(operationCode(search.getOperation()));
+        int flags = (condition.getUsername() != null ? USERNAME : 0)
+                | (condition.getTeamName() != null ? TEAM_NAME : 0)
+                | (condition.getAgeGoe() != null ? AGE_GOE : 0)
+                | (condition.getAgeLoe() != null ? AGE_LOE : 0)
+                | (condition.isUsernameIgnoreCase() ? USERNAME_IGNORE_CASE : 0);
+        out.writeByte(flags);
+        if (condition.getUsername() != null) writeString(out, condition.getUsername());
+        if (condition.getTeamName() != null) writeString(out, condition.getTeamName());
+        if (condition.getAgeGoe() != null) out.writeInt(condition.getAgeGoe());
+        if (condition.getAgeLoe() != null) out.writeInt(condition.getAgeLoe());
+
+        Pageable pageable = search.getPageable();
+        out.writeInt(pageable.isPaged() ? pageable.getPageNumber() : -1);
+        out.writeInt(pageable.isPaged() ? pageable.getPageSize() : 0);
+        List<Sort.Order> orders = pageable.getSort().toList();
+        out.writeByte(orders.size());
+        for (Sort.Order order : orders) {
+            writeString(out, order.getProperty());
+            out.writeBoolean(order.isDescending());
+        }
+        out.writeInt((int) Math.min(Integer.MAX_VALUE, search.getDurationMicros()));
+        out.writeBoolean(search.isFailed());
+    }
+
+    /* 현재 VERSION 레코드를 읽는다. 파일 끝이면 null */
+    public static CapturedSearch read(DataInput in) throws IOException {
+        return read(in, VERSION);
+    }
+
+    /* 파일 끝이면 null */
+    public static CapturedSearch read(DataInput in, short version) throws IOException {
+        long timestamp;
+        try {
+            timestamp = in.readLong();
+        } catch (EOFException e) {
+            return null;
+        }
+        String operation = OPERATIONS[in.readByte()];
+        int flags = in.readByte();
+        MemberSearchCondition condition = new MemberSearchCondition();
+        if ((flags & USERNAME) != 0) condition.setUsername(readString(in, version));
+        if ((flags & TEAM_NAME) != 0) condition.setTeamName(readString(in, version));
+        if ((flags & AGE_GOE) != 0) condition.setAgeGoe(in.readInt());
+        if ((flags & AGE_LOE) != 0) condition.setAgeLoe(in.readInt());
+        condition.setUsernameIgnoreCase((flags & USERNAME_IGNORE_CASE) != 0);
+
+        int page = in.readInt();
+        int size = in.readInt();
+        int sortCount = in.readByte();
+        List<Sort.Order> orders = new ArrayList<>(sortCount);
+        for (int i = 0; i < sortCount; i++) {
+            String property = readString(in, version);
+            orders.add(in.readBoolean() ? Sort.Order.desc(property) : Sort.Order.asc(property));
+        }
+        Pageable pageable = page < 0 ? Pageable.unpaged() : PageRequest.of(page, size, Sort.by(orders));
+        long durationMicros = in.readInt();
+        boolean failed = in.readBoolean();
+        return new CapturedSearch(timestamp, operation, condition, pageable, durationMicros, failed);
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in, short version) throws IOException {
+        if (version == 1) return in.readUTF();
+        int length = in.readInt();
+        if (length < 0 || length > MAX_STRING_BYTES) throw new IOException("corrupt capture record, string of " + length + " bytes");
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int operationCode(String operation) {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            if (OPERATIONS[i].equals(operation)) return i;
+        }
+        throw new IllegalArgumentException("unknown search operation: " + operation);
+    }
+}
@@ -0,0 +1,190 @@
+package study.querydsl.repository.capture;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.support.RingBuffer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 검색 요청을 sample-rate 비율로 골라서 파일에 이어 쓴다 (SearchCaptureCodec 형식).
+ *
+ * 요청 스레드는 링 버퍼에 넣기만 하고(가득 차면 버리고 dropped 로 센다) 파일 쓰기는 writer 스레드 하나가 한다.
+ * 레코드는 메모리에서 먼저 인코딩해서 통째로 쓴다. 인코딩에 실패한 레코드는 건너뛰고 failed 로 센다 (writer 는 계속 돈다).
+ * 파일이 max-bytes 를 넘으면 더 쓰지 않는다. 기존 파일이 예전 형식 버전이면 <file>.v<버전> 으로 옮기고 새로 쓴다.
+ *
+ * 개인정보: username 은 기본(usernames=hash)으로 SHA-256(username-salt + username) 앞 16자리로 바꿔서 쓴다.
+ * 이렇게 캡처한 파일을 리플레이하면 username 조건은 없는 회원 조회가 된다 (쿼리 모양과 값 분포는 남는다).
+ * usernames=raw 는 원래 값을 그대로 쓰므로 파일이 개인정보가 된다. 테스트 데이터에서만 쓰고 파일 접근을 제한한다.
+ * 팀 이름과 나이는 그대로 쓴다.
+ */
+@Slf4j
+@Component
+public class SearchCaptureLog {
+
+    private final boolean enabled;
+    private final double sampleRate;
+    private final File file;
+    private final long maxBytes;
+    private final RingBuffer<CapturedSearch> buffer;
+    private final Counter captured;
+    private final Counter dropped;
+    private final Counter failed;
+    private final boolean hashUsernames;
+    private final String usernameSalt;
+
+    private volatile boolean running = true;
+    private Thread writer;
+
+    public SearchCaptureLog(MeterRegistry meterRegistry,
+                            @Value("${member.capture.enabled:false}") boolean enabled,
+                            @Value("${member.capture.sample-rate:0.01}") double sampleRate,
+                            @Value("${member.capture.file:capture/member-search.bin}") String file,
+                            @Value("${member.capture.max-bytes:1073741824}") long maxBytes,
+                            @Value("${member.capture.buffer-size:8192}") int bufferSize,
+                            @Value("${member.capture.usernames:hash}") String usernames,
+                            @Value("${member.capture.username-salt:}") String usernameSalt) {
+        if (!usernames.equals("hash") && !usernames.equals("raw")) {
+            throw new IllegalArgumentException("member.capture.usernames must be hash or raw: " + usernames);
+        }
+        this.enabled = enabled;
+        this.sampleRate = sampleRate;
+        this.file = new File(file);
+        this.maxBytes = maxBytes;
+        this.buffer = new RingBuffer<>(bufferSize);
+        this.captured = meterRegistry.counter("member.capture.captured");
+        this.dropped = meterRegistry.counter("member.capture.dropped");
+        this.failed = meterRegistry.counter("member.capture.failed");
+        this.hashUsernames = usernames.equals("hash");
+        this.usernameSalt = usernameSalt;
+    }
+
+    /* 캡처 대상이면 true. 호출한 쪽은 true 일 때만 시간을 재서 record 를 부른다 */
+    public boolean sample() {
+        return enabled && ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    public void record(String operation, MemberSearchCondition condition, Pageable pageable, long durationNanos, boolean failed) {
+        long startedMillis = System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(durationNanos);
+        CapturedSearch search = new CapturedSearch(startedMillis, operation, condition.copy(),
+                pageable == null ? Pageable.unpaged() : pageable, TimeUnit.NANOSECONDS.toMicros(durationNanos), failed);
+        if (buffer.offer(search)) captured.increment();
+        else dropped.increment();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+        writer = new Thread(this::write, "search-capture-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("capturing {}% of member searches to {}", sampleRate * 100, file.getAbsolutePath());
+    }
+
+    private void write() {
+        if (file.getParentFile() != null) file.getParentFile().mkdirs();
+        if (!moveAsideOldVersion()) return;
+        boolean newFile = !file.exists() || file.length() == 0;
+        long written = file.length();
+        ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+        DataOutputStream recordOut = new DataOutputStream(record);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true), 64 * 1024))) {
+            if (newFile) SearchCaptureCodec.writeHeader(out);
+            List<CapturedSearch> batch = new ArrayList<>();
+            while (running || buffer.size() > 0) {
+                if (buffer.drainTo(batch, 1024) == 0) {
+                    out.flush();
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+                    continue;
+                }
+                for (CapturedSearch search : batch) {
+                    record.reset();
+                    try {
+                        SearchCaptureCodec.write(recordOut, protect(search));
+                    } catch (IOException | RuntimeException e) {
+                        if (failed.count() == 0) log.warn("cannot encode captured search, skipping it: {}", search, e);
+                        failed.increment();
+                        continue;
+                    }
+                    if (written + out.size() + record.size() >= maxBytes) {
+                        dropped.increment();
+                        continue;
+                    }
+                    record.writeTo(out);
+                }
+                batch.clear();
+            }
+        } catch (IOException e) {
+            log.error("search capture stopped, cannot write {}", file.getAbsolutePath(), e);
+        }
+    }
+
+    /* 개인정보를 파일에 남기지 않도록 username 을 해시로 바꾼다 */
+    private CapturedSearch protect(CapturedSearch search) {
+        MemberSearchCondition condition = search.getCondition();
+        if (!hashUsernames || condition.getUsername() == null) return search;
+        MemberSearchCondition hashed = condition.copy();
+        hashed.setUsername(hashUsername(condition.getUsername()));
+        return new CapturedSearch(search.getTimestampMillis(), search.getOperation(), hashed, search.getPageable(),
+                search.getDurationMicros(), search.isFailed());
+    }
+
+    String hashUsername(String username) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((usernameSalt + username).getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder("sha256:");
+            for (int i = 0; i < 8; i++) hex.append(String.format("%02x", hash[i]));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /* 다른 형식 버전의 레코드를 이어 쓰면 파일을 못 읽게 된다. 옮기지 못하면 false (캡처하지 않는다) */
+    private boolean moveAsideOldVersion() {
+        if (!file.exists() || file.length() == 0) return true;
+        short version;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            version = SearchCaptureCodec.readHeader(in);
+        } catch (IOException e) {
+            version = 0;
+        }
+        if (version == SearchCaptureCodec.VERSION) return true;
+        File aside = new File(file.getPath() + ".v" + version);
+        if (!file.renameTo(aside)) {
+            log.error("search capture stopped, cannot move aside capture file of format version {}: {}", version, file.getAbsolutePath());
+            return false;
+        }
+        log.info("moved capture file of format version {} to {}", version, aside.getAbsolutePath());
+        return true;
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (writer != null) writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+}
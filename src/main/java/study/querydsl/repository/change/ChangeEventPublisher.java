@@ -0,0 +1,121 @@
+package study.querydsl.repository.change;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.repository.support.RingBuffer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 변경 레코드를 링 버퍼에 넣고, 소비자 스레드 하나가 batch-size 만큼씩 꺼내서 ChangeListener들에게 넘긴다.
+ *
+ * 전달 보장: 커밋된 변경만(롤백된 건 전달 안 됨), 최대 한 번. 버퍼가 가득 차면 버리고 dropped로 센다.
+ * 한 스레드가 넣은 레코드는 넣은 순서대로 전달된다.
+ *
+ * 소비자는 버퍼가 비면 잠들고 publish 가 깨운다 (idle 일 때 CPU 를 쓰지 않는다). 깨우는 신호를 놓쳐도 idle-park 뒤에는 다시 본다.
+ */
+@Slf4j
+@Component
+public class ChangeEventPublisher {
+
+    private final RingBuffer<ChangeRecord> buffer;
+    private final int batchSize;
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final Counter published;
+    private final Counter dropped;
+    private final long idleParkNanos;
+
+    private volatile boolean running = true;
+    /* 소비자가 잠들었거나 잠들려는 중 (publish 가 unpark 할지 정한다) */
+    private volatile boolean idle;
+    private volatile Thread consumer;
+
+    public ChangeEventPublisher(MeterRegistry meterRegistry,
+                                @Value("${member.change.buffer-size:65536}") int bufferSize,
+                                @Value("${member.change.batch-size:256}") int batchSize,
+                                @Value("${member.change.idle-park:100ms}") Duration idlePark) {
+        this.buffer = new RingBuffer<>(bufferSize);
+        this.batchSize = batchSize;
+        this.idleParkNanos = idlePark.toNanos();
+        this.published = meterRegistry.counter("member.change.published");
+        this.dropped = meterRegistry.counter("member.change.dropped");
+        Gauge.builder("member.change.backlog", buffer, RingBuffer::size).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        consumer = new Thread(this::consume, "change-event-consumer");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    public void subscribe(ChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /* 이미 커밋된 변경 */
+    public void publish(ChangeRecord record) {
+        if (buffer.offer(record)) {
+            published.increment();
+            // offer 뒤에 idle 을 보므로, 소비자가 idle 을 세운 뒤 버퍼를 다시 확인하는 것과 엇갈려도 둘 중 하나는 본다
+            if (idle) LockSupport.unpark(consumer);
+        } else {
+            dropped.increment();
+        }
+    }
+
+    /* 트랜잭션 안이면 커밋 후에, 아니면 바로 */
+    public void publishAfterCommit(ChangeRecord record) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(record);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publish(record);
+            }
+        });
+    }
+
+    private void consume() {
+        List<ChangeRecord> batch = new ArrayList<>(batchSize);
+        while (running || buffer.size() > 0) {
+            if (buffer.drainTo(batch, batchSize) == 0) {
+                idle = true;
+                if (running && buffer.size() == 0) LockSupport.parkNanos(this, idleParkNanos);
+                idle = false;
+                continue;
+            }
+            List<ChangeRecord> changes = List.copyOf(batch);
+            batch.clear();
+            for (ChangeListener listener : listeners) {
+                try {
+                    listener.onChanges(changes);
+                } catch (RuntimeException e) {
+                    log.warn("change listener {} failed", listener, e);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(consumer);
+        consumer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+}
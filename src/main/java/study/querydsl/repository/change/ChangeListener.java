@@ -0,0 +1,11 @@
+package study.querydsl.repository.change;
+
+import java.util.List;
+
+/**
+ * 커밋된 변경을 배치 단위로 받는다. 소비자 스레드 하나에서 순서대로 호출되므로 오래 걸리는 작업은 하지 않는다.
+ */
+public interface ChangeListener {
+
+    void onChanges(List<ChangeRecord> changes);
+}
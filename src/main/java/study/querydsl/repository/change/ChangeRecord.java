@@ -0,0 +1,64 @@
+package study.querydsl.repository.change;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Member/Team 변경 한 건. 값 자체는 담지 않고 어떤 엔티티의 어떤 행이 어떻게 바뀌었는지만 담는다.
+ * BULK_* 는 update/delete 쿼리 한 번이며 id 대신 영향받은 행 수를 담는다.
+ * 벌크 update 도 set 한 프로퍼티 이름은 담고, 영향받은 id 를 알면(where 가 id 조건이거나 호출한 쪽이 넘긴 경우) ids 에 담는다.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class ChangeRecord {
+
+    public enum Operation { INSERT, UPDATE, DELETE, BULK_UPDATE, BULK_DELETE }
+
+    private static final String[] NONE = new String[0];
+
+    private final String entityName;
+    private final Operation operation;
+    /* BULK_* 면 null */
+    private final Object id;
+    /* UPDATE, BULK_UPDATE 에서 바뀐 프로퍼티 이름 */
+    private final String[] changedProperties;
+    private final long affectedRows;
+    /* BULK_* 에서 영향받았을 수 있는 행의 id (실제 바뀐 행보다 많을 수는 있어도 빠지지는 않는다). 모르면 null */
+    private final List<Object> ids;
+    private final long timestamp;
+
+    public static ChangeRecord row(String entityName, Operation operation, Object id, String[] changedProperties) {
+        return new ChangeRecord(entityName, operation, id, changedProperties == null ? NONE : changedProperties, 1, null, System.currentTimeMillis());
+    }
+
+    /* 어떤 행이 바뀌었는지 모르는 벌크 변경 */
+    public static ChangeRecord bulk(String entityName, Operation operation, long affectedRows) {
+        return bulk(entityName, operation, affectedRows, null, null);
+    }
+
+    public static ChangeRecord bulk(String entityName, Operation operation, long affectedRows,
+                                    String[] changedProperties, Collection<?> ids) {
+        return new ChangeRecord(entityName, operation, null, changedProperties == null ? NONE : changedProperties, affectedRows,
+                ids == null ? null : List.<Object>copyOf(ids), System.currentTimeMillis());
+    }
+
+    public boolean isBulk() {
+        return operation == Operation.BULK_UPDATE || operation == Operation.BULK_DELETE;
+    }
+
+    public boolean hasIds() {
+        return ids != null;
+    }
+
+    /* 이 변경으로 property 값이 달라졌을 수 있는지. insert/delete 는 모든 프로퍼티가 해당된다 */
+    public boolean touches(String property) {
+        if (operation != Operation.UPDATE && operation != Operation.BULK_UPDATE) return true;
+        return Arrays.asList(changedProperties).contains(property);
+    }
+}
@@ -0,0 +1,94 @@
+package study.querydsl.repository.change;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.Set;
+
+/**
+ * em.persist, 변경 감지 update, remove를 hibernate의 커밋 후 이벤트로 받아서 ChangeRecord로 발행한다.
+ * faststart 프로필(lazy-initialization)에서도 기동 시 등록돼야 하므로 @Lazy(false).
+ */
+@Lazy(false)
+@Component
+@RequiredArgsConstructor
+public class HibernateChangeEventListener implements PostCommitInsertEventListener, PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    private static final Set<Class<?>> TRACKED = Set.of(Member.class, Team.class);
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final ChangeEventPublisher publisher;
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (!tracked(event.getPersister())) return;
+        publisher.publish(ChangeRecord.row(entityName(event.getPersister()), ChangeRecord.Operation.INSERT, event.getId(), null));
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (!tracked(event.getPersister())) return;
+        String[] names = event.getPersister().getPropertyNames();
+        int[] dirty = event.getDirtyProperties();
+        String[] changed = new String[dirty == null ? 0 : dirty.length];
+        for (int i = 0; i < changed.length; i++) changed[i] = names[dirty[i]];
+        publisher.publish(ChangeRecord.row(entityName(event.getPersister()), ChangeRecord.Operation.UPDATE, event.getId(), changed));
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (!tracked(event.getPersister())) return;
+        publisher.publish(ChangeRecord.row(entityName(event.getPersister()), ChangeRecord.Operation.DELETE, event.getId(), null));
+    }
+
+    /* 커밋 실패 시에는 아무것도 발행하지 않는다 */
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return tracked(persister);
+    }
+
+    private static boolean tracked(EntityPersister persister) {
+        return TRACKED.contains(persister.getMappedClass());
+    }
+
+    private static String entityName(EntityPersister persister) {
+        return persister.getMappedClass().getSimpleName();
+    }
+}
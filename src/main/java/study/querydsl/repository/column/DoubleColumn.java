@@ -0,0 +1,47 @@
+package study.querydsl.repository.column;
+
+import java.util.Arrays;
+
+/**
+ * 늘어나는 double[] 버퍼. 값을 박싱하지 않고 행 수만큼 배열에 바로 쌓는다.
+ */
+public final class DoubleColumn extends PrimitiveColumn {
+
+    private double[] values;
+
+    public DoubleColumn() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public DoubleColumn(int initialCapacity) {
+        this.values = new double[initialCapacity(initialCapacity)];
+    }
+
+    public void add(double value) {
+        values[append()] = value;
+    }
+
+    public double get(int index) {
+        return values[checkedIndex(index)];
+    }
+
+    public double sum() {
+        double sum = 0;
+        for (int i = 0; i < size(); i++) sum += values[i];
+        return sum;
+    }
+
+    public double[] toArray() {
+        return Arrays.copyOf(values, size());
+    }
+
+    @Override
+    int capacity() {
+        return values.length;
+    }
+
+    @Override
+    void resize(int capacity) {
+        values = Arrays.copyOf(values, capacity);
+    }
+}
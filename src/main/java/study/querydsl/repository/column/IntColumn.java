@@ -0,0 +1,47 @@
+package study.querydsl.repository.column;
+
+import java.util.Arrays;
+
+/**
+ * 늘어나는 int[] 버퍼. 값을 박싱하지 않고 행 수만큼 배열에 바로 쌓는다.
+ */
+public final class IntColumn extends PrimitiveColumn {
+
+    private int[] values;
+
+    public IntColumn() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public IntColumn(int initialCapacity) {
+        this.values = new int[initialCapacity(initialCapacity)];
+    }
+
+    public void add(int value) {
+        values[append()] = value;
+    }
+
+    public int get(int index) {
+        return values[checkedIndex(index)];
+    }
+
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < size(); i++) sum += values[i];
+        return sum;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(values, size());
+    }
+
+    @Override
+    int capacity() {
+        return values.length;
+    }
+
+    @Override
+    void resize(int capacity) {
+        values = Arrays.copyOf(values, capacity);
+    }
+}
@@ -0,0 +1,47 @@
+package study.querydsl.repository.column;
+
+import java.util.Arrays;
+
+/**
+ * 늘어나는 long[] 버퍼. 값을 박싱하지 않고 행 수만큼 배열에 바로 쌓는다.
+ */
+public final class LongColumn extends PrimitiveColumn {
+
+    private long[] values;
+
+    public LongColumn() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongColumn(int initialCapacity) {
+        this.values = new long[initialCapacity(initialCapacity)];
+    }
+
+    public void add(long value) {
+        values[append()] = value;
+    }
+
+    public long get(int index) {
+        return values[checkedIndex(index)];
+    }
+
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < size(); i++) sum += values[i];
+        return sum;
+    }
+
+    public long[] toArray() {
+        return Arrays.copyOf(values, size());
+    }
+
+    @Override
+    int capacity() {
+        return values.length;
+    }
+
+    @Override
+    void resize(int capacity) {
+        values = Arrays.copyOf(values, capacity);
+    }
+}
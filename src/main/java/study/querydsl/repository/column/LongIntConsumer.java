@@ -0,0 +1,7 @@
+package study.querydsl.repository.column;
+
+/* (long, int) 행을 박싱 없이 받는다 */
+@FunctionalInterface
+public interface LongIntConsumer {
+    void accept(long first, int second);
+}
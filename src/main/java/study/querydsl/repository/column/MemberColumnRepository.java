@@ -0,0 +1,59 @@
+package study.querydsl.repository.column;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 수백만 행 집계/분석용 조회. select(member.id, member.age).fetch() 는 행마다 Tuple 과 Long/Integer 를 만들지만,
+ * 여기서는 ResultSet 에서 getLong/getInt 로 꺼내 배열 버퍼나 호출한 쪽 consumer 로 바로 넘긴다 (행마다 객체 생성 없음).
+ *
+ * 엔티티를 거치지 않는 읽기 전용 SQL 이므로 영속성 컨텍스트와 무관하다.
+ */
+@Repository
+public class MemberColumnRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public MemberColumnRepository(DataSource dataSource, @Value("${member.column.fetch-size:5000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    /* ageGoe, ageLoe 는 null 이면 조건 없음 */
+    public MemberIdAgeColumns fetchIdAndAge(Integer ageGoe, Integer ageLoe) {
+        MemberIdAgeColumns columns = new MemberIdAgeColumns();
+        forEachIdAndAge(ageGoe, ageLoe, columns::add);
+        return columns;
+    }
+
+    public void forEachIdAndAge(Integer ageGoe, Integer ageLoe, LongIntConsumer consumer) {
+        StringBuilder sql = new StringBuilder("select m.member_id, m.age from member m where 1 = 1");
+        List<Object> args = new ArrayList<>(2);
+        if (ageGoe != null) {
+            sql.append(" and m.age >= ?");
+            args.add(ageGoe);
+        }
+        if (ageLoe != null) {
+            sql.append(" and m.age <= ?");
+            args.add(ageLoe);
+        }
+        jdbcTemplate.query(sql.toString(), rs -> {
+            consumer.accept(rs.getLong(1), rs.getInt(2));
+        }, args.toArray());
+    }
+
+    /* groupBy(team.name) 의 count, avg(age) */
+    public TeamAgeStats averageAgeByTeam() {
+        TeamAgeStats stats = new TeamAgeStats();
+        jdbcTemplate.query("select t.name, count(m.member_id), avg(cast(m.age as double)) from member m" +
+                " join team t on m.team_id = t.member_id group by t.name order by t.name", rs -> {
+            stats.add(rs.getString(1), rs.getLong(2), rs.getDouble(3));
+        });
+        return stats;
+    }
+}
@@ -0,0 +1,20 @@
+package study.querydsl.repository.column;
+
+import lombok.Getter;
+
+/* select member.id, member.age 결과를 컬럼별 배열로 */
+@Getter
+public class MemberIdAgeColumns {
+
+    private final LongColumn ids = new LongColumn();
+    private final IntColumn ages = new IntColumn();
+
+    void add(long id, int age) {
+        ids.add(id);
+        ages.add(age);
+    }
+
+    public int size() {
+        return ids.size();
+    }
+}
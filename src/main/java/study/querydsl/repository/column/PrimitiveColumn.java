@@ -0,0 +1,42 @@
+package study.querydsl.repository.column;
+
+import java.util.Objects;
+
+/**
+ * LongColumn, IntColumn, DoubleColumn 이 같이 쓰는 크기/용량 관리. 꽉 차면 용량을 두 배로 늘린다.
+ * 하위 클래스는 자기 primitive 배열과 그 배열의 용량 변경만 가진다.
+ */
+public abstract class PrimitiveColumn {
+
+    static final int DEFAULT_CAPACITY = 1024;
+    private static final int MIN_CAPACITY = 16;
+
+    private int size;
+
+    PrimitiveColumn() {
+    }
+
+    static int initialCapacity(int requested) {
+        return Math.max(MIN_CAPACITY, requested);
+    }
+
+    /* 배열 길이 */
+    abstract int capacity();
+
+    /* 배열을 capacity 길이로 복사해 바꾼다 */
+    abstract void resize(int capacity);
+
+    /* 다음 값을 쓸 자리. 필요하면 늘린다 */
+    final int append() {
+        if (size == capacity()) resize(capacity() * 2);
+        return size++;
+    }
+
+    final int checkedIndex(int index) {
+        return Objects.checkIndex(index, size);
+    }
+
+    public final int size() {
+        return size;
+    }
+}
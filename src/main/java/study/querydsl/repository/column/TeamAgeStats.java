@@ -0,0 +1,25 @@
+package study.querydsl.repository.column;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/* 팀별 회원 수/평균 나이. 팀 이름은 팀 수만큼만 있으므로 List 로 둔다 */
+@Getter
+public class TeamAgeStats {
+
+    private final List<String> teamNames = new ArrayList<>();
+    private final LongColumn memberCounts = new LongColumn(64);
+    private final DoubleColumn averageAges = new DoubleColumn(64);
+
+    void add(String teamName, long memberCount, double averageAge) {
+        teamNames.add(teamName);
+        memberCounts.add(memberCount);
+        averageAges.add(averageAge);
+    }
+
+    public int size() {
+        return teamNames.size();
+    }
+}
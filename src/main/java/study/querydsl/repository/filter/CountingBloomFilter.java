@@ -0,0 +1,128 @@
+package study.querydsl.repository.filter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 삭제를 지원하는 (counting) 블룸 필터. 칸마다 4bit 카운터를 두고 long 하나에 16칸씩 담는다.
+ * mightContain 이 false 면 확실히 없음, true 면 있을 수도 있음.
+ *
+ * 락 없이 CAS 로 갱신하므로 여러 스레드가 동시에 add/remove/mightContain 해도 된다.
+ * 카운터가 15 에 닿으면 그 칸은 고정(더 올리지도 내리지도 않음)해서 remove 때문에 없는 걸로 잘못 판단하는 일이 없게 한다.
+ */
+public class CountingBloomFilter {
+
+    private static final int MAX_COUNT = 15;
+
+    private final AtomicLongArray counters;
+    private final long size;
+    private final int hashCount;
+    private final AtomicLong entries = new AtomicLong();
+
+    /* expectedInsertions 건을 넣었을 때 오탐률이 fpp 가 되도록 칸 수와 해시 개수를 정한다 */
+    public CountingBloomFilter(long expectedInsertions, double fpp) {
+        if (expectedInsertions <= 0) throw new IllegalArgumentException("expectedInsertions must be positive: " + expectedInsertions);
+        if (fpp <= 0 || fpp >= 1) throw new IllegalArgumentException("fpp must be between 0 and 1: " + fpp);
+        long cells = (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        long words = Math.max(1, (cells + 15) / 16);
+        if (words > Integer.MAX_VALUE) throw new IllegalArgumentException("filter too large: " + cells + " cells");
+        this.counters = new AtomicLongArray((int) words);
+        this.size = words * 16;
+        this.hashCount = Math.max(1, (int) Math.round((double) size / expectedInsertions * Math.log(2)));
+    }
+
+    public void add(String key) {
+        long h1 = hash(key);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L);
+        for (int i = 0; i < hashCount; i++) increment(index(h1, h2, i));
+        entries.incrementAndGet();
+    }
+
+    /* add 한 적 있는 key 만 remove 해야 한다 (없는 key 를 빼면 다른 key 가 없는 걸로 보일 수 있다) */
+    public void remove(String key) {
+        long h1 = hash(key);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L);
+        for (int i = 0; i < hashCount; i++) decrement(index(h1, h2, i));
+        entries.decrementAndGet();
+    }
+
+    public boolean mightContain(String key) {
+        long h1 = hash(key);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L);
+        for (int i = 0; i < hashCount; i++) {
+            if (count(index(h1, h2, i)) == 0) return false;
+        }
+        return true;
+    }
+
+    /* 지금 들어있는 건수 기준 이론상 오탐률 */
+    public double expectedFpp() {
+        double fill = 1 - Math.exp(-(double) hashCount * Math.max(0, entries.get()) / size);
+        return Math.pow(fill, hashCount);
+    }
+
+    public long entries() {
+        return entries.get();
+    }
+
+    public int hashCount() {
+        return hashCount;
+    }
+
+    public long memoryBytes() {
+        return (long) counters.length() * Long.BYTES;
+    }
+
+    private long index(long h1, long h2, int i) {
+        return Math.floorMod(h1 + i * h2, size);
+    }
+
+    private int count(long index) {
+        return (int) (counters.get((int) (index >>> 4)) >>> shift(index)) & MAX_COUNT;
+    }
+
+    private void increment(long index) {
+        int word = (int) (index >>> 4);
+        int shift = shift(index);
+        while (true) {
+            long current = counters.get(word);
+            long count = (current >>> shift) & MAX_COUNT;
+            if (count == MAX_COUNT) return;
+            if (counters.compareAndSet(word, current, current + (1L << shift))) return;
+        }
+    }
+
+    private void decrement(long index) {
+        int word = (int) (index >>> 4);
+        int shift = shift(index);
+        while (true) {
+            long current = counters.get(word);
+            long count = (current >>> shift) & MAX_COUNT;
+            if (count == 0 || count == MAX_COUNT) return;
+            if (counters.compareAndSet(word, current, current - (1L << shift))) return;
+        }
+    }
+
+    private static int shift(long index) {
+        return (int) (index & 15) << 2;
+    }
+
+    /* FNV-1a 64 후 murmur3 fmix64 로 비트를 섞는다 */
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
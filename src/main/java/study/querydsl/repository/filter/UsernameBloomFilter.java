@@ -0,0 +1,331 @@
+package study.querydsl.repository.filter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.repository.change.ChangeEventPublisher;
+import study.querydsl.repository.change.ChangeListener;
+import study.querydsl.repository.change.ChangeRecord;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * findByUsername 류 조회 앞에 두는 username 블룸 필터. 필터에 없으면 DB 에 가지 않고 빈 결과를 돌려준다.
+ *
+ * 기동 시(LoadTestDataInitializer 다음) member 테이블을 스트리밍으로 훑어서 만들고, 이후 변경은 이렇게 맞춘다.
+ * - 새 username: 커밋 전에 넣는다. 롤백되면 남는데 오탐일 뿐이다.
+ *   em.persist 는 persist 시점(flush 전)에, 변경 감지 rename 은 flush 시점에, bulkUpdateUsername 값과 배치 update 는 실행할 때 넣는다.
+ *   setter 로 바꾸고 아직 flush 안 된 username 은 보이지 않으므로, 같은 트랜잭션에서 바로 찾으려면 먼저 flush 한다.
+ * - 사라진 username (delete, rename 전 이름): 커밋 후에 뺀다. 그 사이 필터를 다시 만들었으면 빼지 않는다.
+ * - 값을 모르는 벌크 update(bulkUpdateUsername(식)): 트랜잭션이 끝나 다시 만들 때까지 필터를 쓰지 않는다.
+ *   username 을 바꾸는 벌크 update 는 MemberRepository.bulkUpdateUsername 으로 한다. 공용 JPAQueryFactory 로 직접 바꾸면 다음 재생성 전까지 못 찾는다.
+ * - username 을 바꾼 Member 벌크 update, 벌크 delete 변경 레코드: 빠지지 않은 예전 이름(오탐)을 치우려고 백그라운드에서 다시 만든다.
+ *   오탐은 틀린 답이 아니라 DB 조회일 뿐이므로 서둘지 않는다: 여러 건을 합치고 cleanup-interval 에 한 번까지만 만든다.
+ *   age 처럼 username 과 상관없는 벌크 update(write-behind flush 등)는 무시한다.
+ *
+ * 다시 만드는 동안 들어오는 새 username 과 아직 커밋 안 된 새 username(pending)도 새 필터에 넣어서 빠지는 게 없게 한다.
+ * 트랜잭션마다 그 안에서 넣은 username 을 트랜잭션 리소스(Set)로 들고 있다가 끝나면 pending 에서 한꺼번에 뺀다.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1) /*LoadTestDataInitializer 가 데이터를 채운 다음*/
+public class UsernameBloomFilter implements ApplicationRunner, ChangeListener {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ChangeEventPublisher changeEventPublisher;
+    private final boolean enabled;
+    private final long expectedInsertions;
+    private final double fpp;
+
+    private volatile CountingBloomFilter current;
+    private volatile CountingBloomFilter building;
+    /* 처음 만들기 전, 값을 모르는 벌크 update 뒤에는 false (모든 조회가 DB 로 간다) */
+    private volatile boolean trusted;
+    private long generation;
+    private final AtomicLong invalidations = new AtomicLong();
+    /* 커밋 전인 새 username 과 그걸 쓴 트랜잭션 수 (트랜잭션이 끝나면 빠진다) */
+    private final Map<String, Integer> pending = new ConcurrentHashMap<>();
+    /* 커밋 후 remove 와 필터 교체가 겹치지 않게 */
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private final AtomicBoolean rebuildQueued = new AtomicBoolean();
+    private final AtomicBoolean cleanupQueued = new AtomicBoolean();
+    private final long cleanupIntervalNanos;
+    private volatile long lastRebuildNanos;
+    private final ScheduledExecutorService rebuildExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "username-filter-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Counter definiteMisses;
+    private final Counter hits;
+    private final Counter falsePositives;
+    private final Counter bypassed;
+    private final Timer rebuildTimer;
+
+    public UsernameBloomFilter(DataSource dataSource,
+                               ChangeEventPublisher changeEventPublisher,
+                               MeterRegistry meterRegistry,
+                               @Value("${member.username-filter.enabled:false}") boolean enabled,
+                               @Value("${member.username-filter.expected-insertions:1000000}") long expectedInsertions,
+                               @Value("${member.username-filter.fpp:0.01}") double fpp,
+                               @Value("${member.username-filter.fetch-size:5000}") int fetchSize,
+                               @Value("${member.username-filter.cleanup-interval:5m}") Duration cleanupInterval) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.changeEventPublisher = changeEventPublisher;
+        this.enabled = enabled;
+        this.expectedInsertions = expectedInsertions;
+        this.fpp = fpp;
+        this.current = new CountingBloomFilter(expectedInsertions, fpp);
+        this.cleanupIntervalNanos = cleanupInterval.toNanos();
+        this.lastRebuildNanos = System.nanoTime() - cleanupIntervalNanos;
+
+        this.definiteMisses = meterRegistry.counter("member.username-filter.lookups", "result", "definite-miss");
+        this.hits = meterRegistry.counter("member.username-filter.lookups", "result", "hit");
+        this.falsePositives = meterRegistry.counter("member.username-filter.lookups", "result", "false-positive");
+        this.bypassed = meterRegistry.counter("member.username-filter.lookups", "result", "bypass");
+        this.rebuildTimer = meterRegistry.timer("member.username-filter.rebuild");
+        Gauge.builder("member.username-filter.entries", this, f -> f.current.entries()).register(meterRegistry);
+        Gauge.builder("member.username-filter.memory", this, f -> f.current.memoryBytes()).baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("member.username-filter.expected-fpp", this, f -> f.current.expectedFpp()).register(meterRegistry);
+        Gauge.builder("member.username-filter.observed-fpp", this, UsernameBloomFilter::observedFpp).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        if (enabled) changeEventPublisher.subscribe(this);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (enabled) rebuild();
+    }
+
+    /* 필터에 확실히 없으면 query 를 실행하지 않고 빈 결과 */
+    public <T> List<T> lookup(String username, Supplier<List<T>> query) {
+        if (!enabled || !trusted || username == null) {
+            bypassed.increment();
+            return query.get();
+        }
+        if (!current.mightContain(username) && !writtenInTransaction(username)) {
+            definiteMisses.increment();
+            return Collections.emptyList();
+        }
+        List<T> result = query.get();
+        if (result.isEmpty()) falsePositives.increment();
+        else hits.increment();
+        return result;
+    }
+
+    /* 이 트랜잭션에서 넣은 username. 필터를 바꿔 끼우는 중이어도 자기 트랜잭션의 쓰기는 보이게 한다 */
+    private boolean writtenInTransaction(String username) {
+        Set<String> written = transactionUsernames(false);
+        return written != null && written.contains(username);
+    }
+
+    /* 새로 쓰이는 username. 커밋 전에 호출한다 */
+    public void put(String username) {
+        if (!enabled || username == null) return;
+        if (TransactionSynchronizationManager.isSynchronizationActive() && transactionUsernames(true).add(username)) {
+            pending.merge(username, 1, Integer::sum);
+        }
+        // building 을 먼저 본다: 교체 직후라 building 이 null 이면 current 가 이미 새 필터다
+        CountingBloomFilter target = building;
+        if (target != null) target.add(username);
+        current.add(username);
+    }
+
+    /* 트랜잭션에 묶인 username Set. 처음 만들 때 트랜잭션이 끝나면 pending 에서 빼는 synchronization 을 한 번만 건다 */
+    @SuppressWarnings("unchecked")
+    private Set<String> transactionUsernames(boolean create) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return null;
+        Set<String> written = (Set<String>) TransactionSynchronizationManager.getResource(this);
+        if (written != null || !create) return written;
+        Set<String> created = new HashSet<>();
+        TransactionSynchronizationManager.bindResource(this, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(UsernameBloomFilter.this);
+                created.forEach(username -> pending.computeIfPresent(username, (key, count) -> count == 1 ? null : count - 1));
+            }
+        });
+        return created;
+    }
+
+    /* 사라지는 username. 커밋 전에 호출하면 커밋된 뒤에 뺀다 (롤백되면 그대로) */
+    public void removeAfterCommit(String username) {
+        if (!enabled || username == null || !TransactionSynchronizationManager.isSynchronizationActive()) return;
+        long capturedGeneration = generation();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                swapLock.readLock().lock();
+                try {
+                    // 그 사이 새로 만든 필터는 이 삭제를 반영했을 수도 있으므로 건드리지 않는다 (남으면 오탐일 뿐)
+                    if (generation == capturedGeneration) current.remove(username);
+                } finally {
+                    swapLock.readLock().unlock();
+                }
+            }
+        });
+    }
+
+    /* 어떤 username 이 쓰였는지 모르는 변경: 트랜잭션이 끝나고 다시 만들 때까지 필터를 쓰지 않는다 */
+    public void invalidate() {
+        if (!enabled) return;
+        invalidations.incrementAndGet();
+        trusted = false;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            scheduleRebuild();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                scheduleRebuild();
+            }
+        });
+    }
+
+    /* JDBC 로 직접 넣은 데이터(MemberBulkLoader 등)를 반영할 때도 호출한다 */
+    public synchronized void rebuild() {
+        long invalidationsAtStart = invalidations.get();
+        long start = System.nanoTime();
+        Long rows = jdbcTemplate.queryForObject("select count(*) from member", Long.class);
+        CountingBloomFilter next = new CountingBloomFilter(Math.max(expectedInsertions, rows == null ? 0 : rows * 2), fpp);
+        building = next;
+        try {
+            pending.keySet().forEach(next::add);
+            jdbcTemplate.query("select m.username from member m", rs -> {
+                String username = rs.getString(1);
+                if (username != null) next.add(username);
+            });
+        } catch (RuntimeException e) {
+            building = null;
+            throw e;
+        }
+
+        swapLock.writeLock().lock();
+        try {
+            current = next;
+            building = null;
+            generation++;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+        if (invalidations.get() == invalidationsAtStart) trusted = true;
+        lastRebuildNanos = System.nanoTime();
+        long elapsed = lastRebuildNanos - start;
+        rebuildTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        log.info("username filter rebuilt: {} entries, {} KB, k={}, expected fpp {} in {} ms",
+                next.entries(), next.memoryBytes() / 1024, next.hashCount(), String.format("%.4f", next.expectedFpp()), elapsed / 1_000_000);
+    }
+
+    /* username 을 바꿨거나 지운 Member 벌크 변경이 커밋되면 남은 오탐을 치우려고 (늦게, 합쳐서) 다시 만든다 */
+    @Override
+    public void onChanges(List<ChangeRecord> changes) {
+        for (ChangeRecord change : changes) {
+            if (change.isBulk() && "Member".equals(change.getEntityName()) && change.touches("username")) {
+                scheduleCleanup();
+                return;
+            }
+        }
+    }
+
+    public boolean isTrusted() {
+        return enabled && trusted;
+    }
+
+    public boolean mightContain(String username) {
+        return !isTrusted() || current.mightContain(username);
+    }
+
+    /* 없는 username 조회 중 필터를 통과해 DB 까지 간 비율 */
+    public double observedFpp() {
+        double misses = definiteMisses.count() + falsePositives.count();
+        return misses == 0 ? 0 : falsePositives.count() / misses;
+    }
+
+    public long definiteMisses() {
+        return (long) definiteMisses.count();
+    }
+
+    public long falsePositives() {
+        return (long) falsePositives.count();
+    }
+
+    public CountingBloomFilter snapshot() {
+        return current;
+    }
+
+    /* 필터를 믿을 수 없을 때: 바로 다시 만든다 */
+    private void scheduleRebuild() {
+        if (!rebuildQueued.compareAndSet(false, true)) return;
+        rebuildExecutor.execute(() -> {
+            rebuildQueued.set(false);
+            rebuildQuietly();
+        });
+    }
+
+    /* 오탐 정리: 마지막으로 만든 뒤 cleanup-interval 이 지나서, 그 사이 요청은 한 번으로 합친다 */
+    private void scheduleCleanup() {
+        if (!cleanupQueued.compareAndSet(false, true)) return;
+        long delay = Math.max(0, lastRebuildNanos + cleanupIntervalNanos - System.nanoTime());
+        rebuildExecutor.schedule(() -> {
+            cleanupQueued.set(false);
+            rebuildQuietly();
+        }, delay, TimeUnit.NANOSECONDS);
+    }
+
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.warn("username filter rebuild failed, lookups go to the database until the next rebuild", e);
+        }
+    }
+
+    private long generation() {
+        swapLock.readLock().lock();
+        try {
+            return generation;
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+}
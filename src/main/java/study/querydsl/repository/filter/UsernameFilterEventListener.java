@@ -0,0 +1,94 @@
+package study.querydsl.repository.filter;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PersistEvent;
+import org.hibernate.event.spi.PersistEventListener;
+import org.hibernate.event.spi.PreDeleteEvent;
+import org.hibernate.event.spi.PreDeleteEventListener;
+import org.hibernate.event.spi.PreInsertEvent;
+import org.hibernate.event.spi.PreInsertEventListener;
+import org.hibernate.event.spi.PreUpdateEvent;
+import org.hibernate.event.spi.PreUpdateEventListener;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Member;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * em.persist, 변경 감지 update, remove 로 바뀌는 Member.username 을 UsernameBloomFilter 에 반영한다.
+ * 새 이름은 persist 시점(insert 는 flush 때라 같은 트랜잭션의 조회가 flush 없이 보려면 이때 넣어야 한다)과 변경 감지 flush 시점에 넣고,
+ * 없어지는 이름은 커밋 후에 빼도록 넘긴다.
+ * faststart 프로필(lazy-initialization)에서도 기동 시 등록돼야 하므로 @Lazy(false).
+ */
+@Lazy(false)
+@Component
+@RequiredArgsConstructor
+public class UsernameFilterEventListener implements PersistEventListener, PreInsertEventListener, PreUpdateEventListener, PreDeleteEventListener {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final UsernameBloomFilter usernameFilter;
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.PERSIST, this);
+        registry.appendListeners(EventType.PRE_INSERT, this);
+        registry.appendListeners(EventType.PRE_UPDATE, this);
+        registry.appendListeners(EventType.PRE_DELETE, this);
+    }
+
+    @Override
+    public void onPersist(PersistEvent event) {
+        if (event.getObject() instanceof Member) usernameFilter.put(((Member) event.getObject()).getUsername());
+    }
+
+    /* cascade persist */
+    @Override
+    public void onPersist(PersistEvent event, Map createdAlready) {
+        onPersist(event);
+    }
+
+    @Override
+    public boolean onPreInsert(PreInsertEvent event) {
+        if (isMember(event.getPersister())) usernameFilter.put(username(event.getPersister(), event.getState()));
+        return false;
+    }
+
+    @Override
+    public boolean onPreUpdate(PreUpdateEvent event) {
+        if (!isMember(event.getPersister())) return false;
+        String newUsername = username(event.getPersister(), event.getState());
+        String oldUsername = event.getOldState() == null ? null : username(event.getPersister(), event.getOldState());
+        if (!Objects.equals(newUsername, oldUsername)) {
+            usernameFilter.put(newUsername);
+            usernameFilter.removeAfterCommit(oldUsername);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean onPreDelete(PreDeleteEvent event) {
+        if (isMember(event.getPersister()) && event.getDeletedState() != null) {
+            usernameFilter.removeAfterCommit(username(event.getPersister(), event.getDeletedState()));
+        }
+        return false;
+    }
+
+    private static boolean isMember(EntityPersister persister) {
+        return persister.getMappedClass() == Member.class;
+    }
+
+    private static String username(EntityPersister persister, Object[] state) {
+        return (String) state[persister.getEntityMetamodel().getPropertyIndex("username")];
+    }
+}
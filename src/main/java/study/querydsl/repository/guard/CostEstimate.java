@@ -0,0 +1,24 @@
+package study.querydsl.repository.guard;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.util.Set;
+
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class CostEstimate {
+    /* 예상 스캔 건수 */
+    private final long estimatedRows;
+    private final long tableRows;
+    private final int maxInListSize;
+    private final boolean leadingWildcard;
+    /* 인덱스 없이 조건에 쓰인 경로 */
+    private final Set<String> unindexedPaths;
+
+    public boolean isFullScan() {
+        return estimatedRows >= tableRows;
+    }
+}
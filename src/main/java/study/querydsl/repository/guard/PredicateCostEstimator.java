@@ -0,0 +1,209 @@
+package study.querydsl.repository.guard;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Operator;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.PathMetadata;
+import com.querydsl.core.types.Predicate;
+import org.springframework.lang.Nullable;
+
+import javax.persistence.Column;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.Table;
+import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Querydsl 조건식 트리를 훑어서 스캔 건수를 대략 추정한다.
+ * 인덱스가 있는 경로의 =, IN, 범위, 접두 LIKE 는 선택도만큼, 나머지(인덱스 없는 경로, 앞에 % 가 붙은 LIKE, 함수로 감싼 컬럼)는 전체 스캔으로 본다.
+ * = 는 유일 인덱스(@Id, unique)면 1건, 경로별 서로 다른 값 수(distinctValues)를 알면 건수/값 수, 모르면 EQ_SELECTIVITY.
+ * AND는 가장 좁은 쪽, OR는 양쪽의 합.
+ */
+public class PredicateCostEstimator {
+
+    static final double EQ_SELECTIVITY = 0.01;
+    static final double PREFIX_SELECTIVITY = 0.1;
+    static final double RANGE_SELECTIVITY = 0.3;
+
+    private static final Set<Ops> RANGE_OPS = EnumSet.of(Ops.GT, Ops.GOE, Ops.LT, Ops.LOE, Ops.BETWEEN);
+    private static final Set<Ops> LEADING_WILDCARD_OPS = EnumSet.of(
+            Ops.STRING_CONTAINS, Ops.STRING_CONTAINS_IC, Ops.ENDS_WITH, Ops.ENDS_WITH_IC, Ops.LIKE_IC, Ops.LIKE_ESCAPE_IC);
+
+    private final Set<String> indexedPaths;
+    private final Set<String> uniquePaths;
+
+    public PredicateCostEstimator(Set<String> indexedPaths) {
+        this(indexedPaths, Set.of());
+    }
+
+    public PredicateCostEstimator(Set<String> indexedPaths, Set<String> uniquePaths) {
+        this.indexedPaths = Set.copyOf(indexedPaths);
+        this.uniquePaths = Set.copyOf(uniquePaths);
+    }
+
+    /* @Id, @JoinColumn(FK), @Table(indexes)의 첫 번째 컬럼을 인덱스 경로로 본다. @Id, unique 컬럼/단일 컬럼 unique 인덱스는 유일 경로 */
+    public static PredicateCostEstimator forEntity(Class<?> entityClass) {
+        Set<String> indexed = new HashSet<>();
+        Set<String> unique = new HashSet<>();
+        Map<String, String> columnToPath = new HashMap<>();
+        for (Field field : entityClass.getDeclaredFields()) {
+            String name = field.getName();
+            if (field.isAnnotationPresent(Id.class)) {
+                indexed.add(name);
+                unique.add(name);
+            }
+            JoinColumn joinColumn = field.getAnnotation(JoinColumn.class);
+            if (joinColumn != null) {
+                indexed.add(name);
+                indexed.add(name + ".id");
+                continue;
+            }
+            Column column = field.getAnnotation(Column.class);
+            if (column != null && column.unique()) {
+                indexed.add(name);
+                unique.add(name);
+            }
+            String columnName = column != null && !column.name().isEmpty() ? column.name() : snakeCase(name);
+            columnToPath.put(columnName.toLowerCase(), name);
+        }
+        Table table = entityClass.getAnnotation(Table.class);
+        if (table != null) {
+            for (Index index : table.indexes()) {
+                String[] columns = index.columnList().split(",");
+                String leading = columns[0].trim().split(" ")[0].toLowerCase();
+                String path = columnToPath.get(leading);
+                if (path == null) continue;
+                indexed.add(path);
+                if (index.unique() && columns.length == 1) unique.add(path);
+            }
+        }
+        return new PredicateCostEstimator(indexed, unique);
+    }
+
+    /* 통계를 얻을 인덱스 경로 (유일 경로는 1건으로 보므로 뺀다) */
+    public Set<String> getNonUniqueIndexedPaths() {
+        Set<String> paths = new TreeSet<>(indexedPaths);
+        paths.removeAll(uniquePaths);
+        return paths;
+    }
+
+    public CostEstimate estimate(@Nullable Predicate predicate, long tableRows) {
+        return estimate(predicate, tableRows, Map.of());
+    }
+
+    /**
+     * @param distinctValues 인덱스 경로별 서로 다른 값 수. 없는 경로는 EQ_SELECTIVITY 로 추정한다
+     */
+    public CostEstimate estimate(@Nullable Predicate predicate, long tableRows, Map<String, Long> distinctValues) {
+        Findings findings = new Findings(distinctValues);
+        double rows = predicate == null ? tableRows : rows(predicate, tableRows, findings);
+        long estimated = (long) Math.min(tableRows, Math.ceil(rows));
+        return new CostEstimate(estimated, tableRows, findings.maxInListSize, findings.leadingWildcard, findings.unindexedPaths);
+    }
+
+    private double rows(Expression<?> expr, long tableRows, Findings findings) {
+        if (expr instanceof BooleanBuilder) {
+            Predicate value = ((BooleanBuilder) expr).getValue();
+            return value == null ? tableRows : rows(value, tableRows, findings);
+        }
+        if (!(expr instanceof Operation)) return tableRows;
+
+        Operation<?> operation = (Operation<?>) expr;
+        Operator operator = operation.getOperator();
+        if (operator == Ops.AND) {
+            return Math.min(rows(operation.getArg(0), tableRows, findings), rows(operation.getArg(1), tableRows, findings));
+        }
+        if (operator == Ops.OR) {
+            return Math.min(tableRows, rows(operation.getArg(0), tableRows, findings) + rows(operation.getArg(1), tableRows, findings));
+        }
+        if (operator == Ops.NOT) {
+            rows(operation.getArg(0), tableRows, findings);
+            return tableRows;
+        }
+        if (operation.getArgs().isEmpty()) return tableRows;
+
+        Expression<?> target = operation.getArg(0);
+        String path = target instanceof Path ? relativePath((Path<?>) target) : null;
+        if ("".equals(path)) path = "id"; // 엔티티 자체 비교는 id 비교
+        boolean indexed = path != null && indexedPaths.contains(path);
+        if (path != null && !indexed) findings.unindexedPaths.add(path);
+
+        if (operator == Ops.IN) {
+            int size = collectionSize(operation.getArg(1));
+            findings.maxInListSize = Math.max(findings.maxInListSize, size);
+            return indexed && size >= 0 ? size * eqRows(path, tableRows, findings) : tableRows;
+        }
+        if (LEADING_WILDCARD_OPS.contains(operator) || isLikeWithLeadingWildcard(operation)) {
+            findings.leadingWildcard = true;
+            return tableRows;
+        }
+        if (!indexed) return tableRows;
+        if (operator == Ops.EQ || operator == Ops.IS_NULL) return eqRows(path, tableRows, findings);
+        if (RANGE_OPS.contains(operator)) return tableRows * RANGE_SELECTIVITY;
+        if (operator == Ops.STARTS_WITH || operator == Ops.LIKE || operator == Ops.LIKE_ESCAPE) return tableRows * PREFIX_SELECTIVITY;
+        return tableRows;
+    }
+
+    private double eqRows(String path, long tableRows, Findings findings) {
+        if (uniquePaths.contains(path)) return 1;
+        Long distinct = findings.distinctValues.get(path);
+        if (distinct != null && distinct > 0) return Math.max(1, Math.ceil((double) tableRows / distinct));
+        return Math.max(1, tableRows * EQ_SELECTIVITY);
+    }
+
+    private static boolean isLikeWithLeadingWildcard(Operation<?> operation) {
+        Operator operator = operation.getOperator();
+        if (operator != Ops.LIKE && operator != Ops.LIKE_ESCAPE) return false;
+        Expression<?> pattern = operation.getArg(1);
+        if (!(pattern instanceof Constant)) return true;
+        String value = String.valueOf(((Constant<?>) pattern).getConstant());
+        return value.startsWith("%") || value.startsWith("_");
+    }
+
+    private static int collectionSize(Expression<?> expr) {
+        if (expr instanceof Constant && ((Constant<?>) expr).getConstant() instanceof Collection) {
+            return ((Collection<?>) ((Constant<?>) expr).getConstant()).size();
+        }
+        return -1;
+    }
+
+    /* member1.team.id -> "team.id" */
+    static String relativePath(Path<?> path) {
+        Deque<String> names = new ArrayDeque<>();
+        PathMetadata metadata = path.getMetadata();
+        while (metadata.getParent() != null) {
+            names.addFirst(metadata.getName());
+            metadata = metadata.getParent().getMetadata();
+        }
+        return String.join(".", names);
+    }
+
+    private static String snakeCase(String name) {
+        return name.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toLowerCase();
+    }
+
+    private static class Findings {
+        final Map<String, Long> distinctValues;
+        int maxInListSize;
+        boolean leadingWildcard;
+        Set<String> unindexedPaths = new TreeSet<>();
+
+        Findings(Map<String, Long> distinctValues) {
+            this.distinctValues = distinctValues;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package study.querydsl.repository.guard;
+
+public class QueryCostExceededException extends RuntimeException {
+
+    public QueryCostExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,162 @@
+package study.querydsl.repository.guard;
+
+import com.querydsl.core.types.Predicate;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Member;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QuerydslPredicateExecutor로 들어오는 조건을 실행 전에 평가해서 허용/제한/거부 한다.
+ *
+ * - 거부: IN 목록이 너무 길 때, 예상 스캔 건수가 reject-scan-rows 를 넘을 때 (큰 테이블의 앞 % LIKE, 인덱스 없는 조건 등),
+ *   페이징 없는 findAll 의 예상 결과가 max-unpaged-rows 를 넘을 때. 결과를 잘라서 돌려주지 않는다 (호출한 쪽이 일부만 받은 줄 모른다).
+ * - 제한(DOWNGRADE): 페이지 크기가 max-page-size 를 넘으면 max-page-size 로 줄인다. 돌려주는 Page 의 size 에 드러나고 로그를 남긴다.
+ *
+ * 추정에 쓰는 테이블 건수와 인덱스 경로별 서로 다른 값 수는 백그라운드 스레드가 stats-refresh-ms 마다 count 쿼리로 갱신하고,
+ * 요청은 volatile 스냅샷만 읽는다 (요청 스레드에서 count 를 돌리지 않는다). 첫 갱신이 끝나기 전에는 0건으로 보고 건수 기준 거부를 하지 않는다.
+ */
+@Slf4j
+@Component
+public class QueryCostGuard {
+
+    public enum Decision { ALLOW, DOWNGRADE, REJECT }
+
+    private final PredicateCostEstimator estimator = PredicateCostEstimator.forEntity(Member.class);
+    private final EntityManager em;
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary estimatedRows;
+
+    private final int maxInList;
+    private final long rejectScanRows;
+    @Getter private final int maxUnpagedRows;
+    private final int maxPageSize;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile Stats stats = Stats.EMPTY;
+
+    public QueryCostGuard(EntityManager em,
+                          MeterRegistry meterRegistry,
+                          @Value("${member.query-guard.max-in-list:1000}") int maxInList,
+                          @Value("${member.query-guard.reject-scan-rows:100000}") long rejectScanRows,
+                          @Value("${member.query-guard.max-unpaged-rows:1000}") int maxUnpagedRows,
+                          @Value("${member.query-guard.max-page-size:1000}") int maxPageSize,
+                          @Value("${member.query-guard.stats-refresh-ms:60000}") long statsRefreshMillis) {
+        this.em = em;
+        this.meterRegistry = meterRegistry;
+        this.maxInList = maxInList;
+        this.rejectScanRows = rejectScanRows;
+        this.maxUnpagedRows = maxUnpagedRows;
+        this.maxPageSize = maxPageSize;
+        this.estimatedRows = DistributionSummary.builder("member.query.guard.estimated.rows")
+                .description("estimated rows scanned per guarded query")
+                .register(meterRegistry);
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "member-query-guard-stats");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::scheduledRefresh, 0, statsRefreshMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param bounded 결과 건수가 페이징/단건 등으로 제한되는 호출인지
+     * @throws QueryCostExceededException 거부된 경우
+     */
+    public Verdict check(String method, @Nullable Predicate predicate, @Nullable Pageable pageable, boolean bounded) {
+        Stats current = stats;
+        CostEstimate estimate = estimator.estimate(predicate, current.tableRows, current.distinctValues);
+        estimatedRows.record(estimate.getEstimatedRows());
+
+        if (estimate.getMaxInListSize() > maxInList) {
+            throw reject(method, "in list of " + estimate.getMaxInListSize() + " values exceeds " + maxInList);
+        }
+        if (estimate.getEstimatedRows() > rejectScanRows) {
+            throw reject(method, "estimated scan of " + estimate.getEstimatedRows() + " rows, add a filter on an indexed path"
+                    + (estimate.isLeadingWildcard() ? " (leading wildcard like cannot use an index)" : "")
+                    + (estimate.getUnindexedPaths().isEmpty() ? "" : " (unindexed: " + estimate.getUnindexedPaths() + ")"));
+        }
+        if (!bounded && estimate.getEstimatedRows() > maxUnpagedRows) {
+            throw reject(method, "unpaged query may return about " + estimate.getEstimatedRows()
+                    + " rows (limit " + maxUnpagedRows + "), pass a Pageable");
+        }
+        if (pageable != null && pageable.isPaged() && pageable.getPageSize() > maxPageSize) {
+            record(method, Decision.DOWNGRADE);
+            log.info("{}: page size {} reduced to {}", method, pageable.getPageSize(), maxPageSize);
+            return new Verdict(Decision.DOWNGRADE, estimate, PageRequest.of(pageable.getPageNumber(), maxPageSize, pageable.getSort()));
+        }
+        record(method, Decision.ALLOW);
+        return new Verdict(Decision.ALLOW, estimate, pageable);
+    }
+
+    private QueryCostExceededException reject(String method, String reason) {
+        record(method, Decision.REJECT);
+        return new QueryCostExceededException("query rejected: " + reason);
+    }
+
+    private void record(String method, Decision decision) {
+        Counter.builder("member.query.guard.decisions")
+                .tag("method", method)
+                .tag("decision", decision.name())
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private void scheduledRefresh() {
+        try {
+            refreshStats();
+        } catch (RuntimeException e) {
+            // 실패하면 이전 스냅샷을 그대로 쓰고 다음 주기에 다시 시도한다
+            log.warn("query guard stats refresh failed", e);
+        }
+    }
+
+    /* member 테이블 건수와 인덱스 경로별 서로 다른 값 수를 새 스냅샷으로 바꾼다. 스케줄러 스레드에서 부른다 (테스트는 직접 부른다) */
+    void refreshStats() {
+        long rows = em.createQuery("select count(m) from Member m", Long.class).getSingleResult();
+        Map<String, Long> distinct = new HashMap<>();
+        for (String path : estimator.getNonUniqueIndexedPaths()) {
+            distinct.put(path, em.createQuery("select count(distinct m." + path + ") from Member m", Long.class).getSingleResult());
+        }
+        stats = new Stats(rows, Map.copyOf(distinct));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    @RequiredArgsConstructor
+    private static class Stats {
+        static final Stats EMPTY = new Stats(0, Map.of());
+
+        private final long tableRows;
+        private final Map<String, Long> distinctValues;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Verdict {
+        private final Decision decision;
+        private final CostEstimate estimate;
+        /* DOWNGRADE면 대신 사용할 페이지 */
+        private final Pageable pageable;
+    }
+}
@@ -0,0 +1,35 @@
+package study.querydsl.repository.guard;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.querydsl.QuerydslPredicateExecutor;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+
+@Configuration
+@ConditionalOnProperty(name = "member.query-guard.enabled", matchIfMissing = true)
+public class QueryCostGuardConfig {
+
+    /* QuerydslPredicateExecutor를 구현한 리포지토리 프록시에 QueryCostGuardInterceptor를 붙인다 */
+    @Bean
+    static BeanPostProcessor queryCostGuardRepositoryPostProcessor(ObjectProvider<QueryCostGuard> guard) {
+        QueryCostGuardInterceptor interceptor = new QueryCostGuardInterceptor(guard);
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+                if (bean instanceof RepositoryFactoryBeanSupport) {
+                    ((RepositoryFactoryBeanSupport<?, ?, ?>) bean).addRepositoryFactoryCustomizer(factory ->
+                            factory.addRepositoryProxyPostProcessor((proxyFactory, information) -> {
+                                if (QuerydslPredicateExecutor.class.isAssignableFrom(information.getRepositoryInterface())) {
+                                    proxyFactory.addAdvice(interceptor);
+                                }
+                            }));
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,48 @@
+package study.querydsl.repository.guard;
+
+import com.querydsl.core.types.Predicate;
+import lombok.RequiredArgsConstructor;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.querydsl.QuerydslPredicateExecutor;
+
+import java.lang.reflect.Method;
+
+/**
+ * 리포지토리 프록시에 붙어서 QuerydslPredicateExecutor 메서드 호출을 QueryCostGuard로 검사한다.
+ * DOWNGRADE 면 Pageable 인자를 줄인 페이지로 바꿔서 실행한다. 거부는 QueryCostExceededException 으로 그대로 던진다.
+ */
+@RequiredArgsConstructor
+public class QueryCostGuardInterceptor implements MethodInterceptor {
+
+    private final ObjectProvider<QueryCostGuard> guard;
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Method method = invocation.getMethod();
+        if (method.getDeclaringClass() != QuerydslPredicateExecutor.class) {
+            return invocation.proceed();
+        }
+
+        Object[] args = invocation.getArguments();
+        Predicate predicate = null;
+        Pageable pageable = null;
+        int pageableIndex = -1;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] instanceof Predicate) predicate = (Predicate) args[i];
+            if (args[i] instanceof Pageable) {
+                pageable = (Pageable) args[i];
+                pageableIndex = i;
+            }
+        }
+        boolean unboundedFindAll = method.getName().equals("findAll") && pageable == null;
+
+        QueryCostGuard.Verdict verdict = guard.getObject().check(method.getName(), predicate, pageable, !unboundedFindAll);
+        if (verdict.getDecision() == QueryCostGuard.Decision.DOWNGRADE && pageableIndex >= 0) {
+            args[pageableIndex] = verdict.getPageable();
+        }
+        return invocation.proceed();
+    }
+}
@@ -0,0 +1,131 @@
+package study.querydsl.repository.sql;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Projections;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.sql.SQLExpressions;
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.SQLQueryFactory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberRankDto;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.UserDto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * JPQL 에는 윈도 함수가 없어서 JPAExpressions 상관 서브쿼리(행마다 다시 계산)로 풀던 순위/팀 비교 쿼리를
+ * querydsl-sql 네이티브 SQL 로 한 번의 스캔에 처리한다. (ROW_NUMBER/RANK/AVG() OVER, WITH 절)
+ *
+ * 엔티티를 거치지 않는 읽기 전용 조회라서 영속성 컨텍스트에 올라가지 않는다.
+ * SpringConnectionProvider 는 트랜잭션에 묶인 커넥션만 쓰므로 클래스 전체가 @Transactional 이다.
+ */
+@Repository
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class MemberWindowRepository {
+
+    private static final SMember m = SMember.member;
+    private static final STeam t = STeam.team;
+
+    /* WITH ranked as (...) 의 컬럼 */
+    private static final PathBuilder<Tuple> ranked = new PathBuilder<>(Tuple.class, "ranked");
+    private static final NumberPath<Long> rankedMemberId = ranked.getNumber("member_id", Long.class);
+    private static final StringPath rankedUsername = ranked.getString("username");
+    private static final NumberPath<Integer> rankedAge = ranked.getNumber("age", Integer.class);
+    private static final NumberPath<Long> rankedTeamId = ranked.getNumber("team_id", Long.class);
+    private static final NumberPath<Long> rankedRowNumber = ranked.getNumber("rn", Long.class);
+    private static final NumberPath<Long> rankedRank = ranked.getNumber("rnk", Long.class);
+    private static final NumberPath<Double> rankedTeamAverage = ranked.getNumber("team_avg", Double.class);
+    private static final NumberPath<Double> rankedAverage = ranked.getNumber("avg_all", Double.class);
+    private static final NumberPath<Integer> rankedMaxAge = ranked.getNumber("max_age", Integer.class);
+
+    private final SQLQueryFactory sqlQueryFactory;
+
+    /* 팀 안에서 나이 많은 순 순위와 팀 평균 나이 (팀 없는 회원은 teamId null 끼리 한 파티션) */
+    public List<MemberRankDto> rankWithinTeam() {
+        return sqlQueryFactory
+                .select(Projections.constructor(MemberRankDto.class,
+                        m.memberId, m.username, m.age, m.teamId, t.name,
+                        SQLExpressions.rowNumber().over().partitionBy(m.teamId).orderBy(m.age.desc(), m.memberId.asc()),
+                        SQLExpressions.rank().over().partitionBy(m.teamId).orderBy(m.age.desc()),
+                        SQLExpressions.avg(m.age.castToNum(Double.class)).over().partitionBy(m.teamId)))
+                .from(m)
+                .leftJoin(t).on(m.teamId.eq(t.memberId))
+                .orderBy(m.teamId.asc(), m.age.desc(), m.memberId.asc())
+                .fetch();
+    }
+
+    /* 팀별 나이 많은 순 상위 n 명 (동점이면 id 순) */
+    public List<MemberRankDto> topPerTeam(int n) {
+        return fromRanked()
+                .where(rankedRowNumber.loe((long) n))
+                .orderBy(rankedTeamId.asc(), rankedRowNumber.asc())
+                .fetch();
+    }
+
+    /* 자기 팀 평균 나이 이상인 회원: age >= (select avg(age) from member where team = m.team) */
+    public List<MemberRankDto> atOrAboveTeamAverage() {
+        return fromRanked()
+                .where(rankedAge.goe(rankedTeamAverage))
+                .orderBy(rankedTeamId.asc(), rankedRowNumber.asc())
+                .fetch();
+    }
+
+    /* 전체 평균 나이 이상인 회원 (subQueryGoe) */
+    public List<MemberRankDto> atOrAboveAverage() {
+        return fromRanked(SQLExpressions.avg(m.age.castToNum(Double.class)).over().as("avg_all"))
+                .where(rankedAge.goe(rankedAverage))
+                .orderBy(rankedTeamId.asc(), rankedRowNumber.asc())
+                .fetch();
+    }
+
+    /* 나이가 가장 많은 회원 (subQuery) */
+    public List<MemberTeamDto> oldestMembers() {
+        return sqlQueryFactory
+                .query()
+                .with(ranked, SQLExpressions.select(m.memberId, m.username, m.age, m.teamId,
+                                SQLExpressions.max(m.age).over().as("max_age"))
+                        .from(m))
+                .select(Projections.constructor(MemberTeamDto.class,
+                        rankedMemberId, rankedUsername, rankedAge, rankedTeamId, t.name))
+                .from(ranked)
+                .leftJoin(t).on(rankedTeamId.eq(t.memberId))
+                .where(rankedAge.eq(rankedMaxAge))
+                .orderBy(rankedMemberId.asc())
+                .fetch();
+    }
+
+    /* 회원 이름과 전체 최대 나이 (findUserDto3 의 select 절 서브쿼리) */
+    public List<UserDto> usernameWithMaxAge() {
+        return sqlQueryFactory
+                .select(Projections.constructor(UserDto.class, m.username, SQLExpressions.max(m.age).over()))
+                .from(m)
+                .orderBy(m.memberId.asc())
+                .fetch();
+    }
+
+    private SQLQuery<MemberRankDto> fromRanked(Expression<?>... extraColumns) {
+        List<Expression<?>> columns = new ArrayList<>(Arrays.asList(
+                m.memberId, m.username, m.age, m.teamId,
+                SQLExpressions.rowNumber().over().partitionBy(m.teamId).orderBy(m.age.desc(), m.memberId.asc()).as("rn"),
+                SQLExpressions.rank().over().partitionBy(m.teamId).orderBy(m.age.desc()).as("rnk"),
+                SQLExpressions.avg(m.age.castToNum(Double.class)).over().partitionBy(m.teamId).as("team_avg")));
+        columns.addAll(Arrays.asList(extraColumns));
+        return sqlQueryFactory
+                .query()
+                .with(ranked, SQLExpressions.select(columns.toArray(new Expression<?>[0])).from(m))
+                .select(Projections.constructor(MemberRankDto.class,
+                        rankedMemberId, rankedUsername, rankedAge, rankedTeamId, t.name,
+                        rankedRowNumber, rankedRank, rankedTeamAverage))
+                .from(ranked)
+                .leftJoin(t).on(rankedTeamId.eq(t.memberId));
+    }
+}
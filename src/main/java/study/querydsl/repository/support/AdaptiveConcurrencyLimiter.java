@@ -0,0 +1,110 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 응답 시간을 보고 동시 실행 한도를 조절한다 (gradient 방식).
+ *
+ * - 느린 기준 RTT(longRtt, 긴 구간 EWMA)와 최근 RTT(shortRtt)를 비교해서 gradient = tolerance * longRtt / shortRtt (0.5~1.0).
+ *   DB가 느려지면 shortRtt가 커져 한도가 줄고, 평소대로면 한도를 sqrt(limit) 만큼씩 늘려본다.
+ * - 실패(타임아웃, 503 등)는 AIMD 처럼 한도를 backoff 비율로 곱해서 바로 줄인다.
+ * - 한도의 절반도 안 쓰고 있을 때는 늘리지 않는다 (부하가 없어서 빠른 것일 수 있으므로).
+ *
+ * 한도를 넘은 요청은 기다리지 않고 바로 거절한다.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double LONG_WINDOW = 500;
+    private static final double SHORT_WINDOW = 10;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final double backoff;
+    private final Counter rejected;
+
+    private volatile double limit;
+    private double longRtt;
+    private double shortRtt;
+
+    public AdaptiveConcurrencyLimiter(String name, Settings settings, MeterRegistry registry) {
+        this.minLimit = settings.minLimit;
+        this.maxLimit = settings.maxLimit;
+        this.tolerance = settings.tolerance;
+        this.smoothing = settings.smoothing;
+        this.backoff = settings.backoff;
+        this.limit = settings.initialLimit;
+        this.rejected = Counter.builder("member.limiter.rejected").tag("endpoint", name).register(registry);
+        Gauge.builder("member.limiter.limit", this, AdaptiveConcurrencyLimiter::getLimit).tag("endpoint", name).register(registry);
+        Gauge.builder("member.limiter.inflight", inFlight, AtomicInteger::get).tag("endpoint", name).register(registry);
+    }
+
+    /* 자리가 있으면 true. true를 받았으면 끝난 뒤 반드시 onComplete 를 호출해야 한다 */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) return true;
+        }
+    }
+
+    public void onComplete(long rttNanos, boolean dropped) {
+        int inFlightAtEnd = inFlight.getAndDecrement();
+        update(rttNanos, dropped, inFlightAtEnd);
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    private synchronized void update(long rttNanos, boolean dropped, int inFlightAtEnd) {
+        double current = limit;
+        if (dropped) {
+            limit = Math.max(minLimit, current * backoff);
+            return;
+        }
+        if (longRtt == 0) {
+            longRtt = rttNanos;
+            shortRtt = rttNanos;
+            return;
+        }
+        shortRtt += (rttNanos - shortRtt) / SHORT_WINDOW;
+        longRtt += (rttNanos - longRtt) / LONG_WINDOW;
+        // 오래 느린 상태가 이어지면 기준선이 따라 올라가서 회복이 늦어지므로 되돌린다
+        if (longRtt / shortRtt > 2) longRtt *= 0.95;
+
+        if (inFlightAtEnd < current / 2) return;
+
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / shortRtt));
+        double target = current * gradient + Math.sqrt(current);
+        double next = current * (1 - smoothing) + target * smoothing;
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+
+    public static final class Settings {
+        final int initialLimit;
+        final int minLimit;
+        final int maxLimit;
+        final double tolerance;
+        final double smoothing;
+        final double backoff;
+
+        public Settings(int initialLimit, int minLimit, int maxLimit, double tolerance, double smoothing, double backoff) {
+            this.initialLimit = initialLimit;
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+            this.tolerance = tolerance;
+            this.smoothing = smoothing;
+            this.backoff = backoff;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.PathMetadata;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.impl.JPADeleteClause;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import org.springframework.lang.Nullable;
+import study.querydsl.repository.change.ChangeEventPublisher;
+import study.querydsl.repository.change.ChangeRecord;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 리포지토리들이 공통으로 쓰는 JPAQueryFactory.
+ * 요청 마감시각(QueryDeadline)을 쿼리 timeout으로 적용하고, 벌크 update/delete는 엔티티 이벤트를 타지 않으므로 execute() 뒤에 변경 레코드를 발행한다.
+ * 변경 레코드에는 set 한 프로퍼티와, where 가 id 조건이면 그 id 들을 담는다 (받는 쪽이 전체가 아니라 해당 행만 무효화할 수 있게).
+ * 쿼리 자체(set, where)는 건드리지 않는다. 파생 컬럼과 version 을 같이 맞추는 벌크 update 는 리포지토리 메서드가 맡는다.
+ */
+public class InstrumentedJPAQueryFactory extends JPAQueryFactory {
+
+    private final EntityManager entityManager;
+    @Nullable
+    private final ChangeEventPublisher changeEventPublisher;
+
+    public InstrumentedJPAQueryFactory(EntityManager entityManager) {
+        this(entityManager, null);
+    }
+
+    public InstrumentedJPAQueryFactory(EntityManager entityManager, @Nullable ChangeEventPublisher changeEventPublisher) {
+        super(entityManager);
+        this.entityManager = entityManager;
+        this.changeEventPublisher = changeEventPublisher;
+    }
+
+    @Override
+    public JPAQuery<?> query() {
+        return new DeadlineJPAQuery<Void>(entityManager);
+    }
+
+    @Override
+    public JPAUpdateClause update(EntityPath<?> path) {
+        if (changeEventPublisher == null) return super.update(path);
+        String entityName = path.getType().getSimpleName();
+        return new JPAUpdateClause(entityManager, path) {
+            private final Set<String> changedProperties = new LinkedHashSet<>();
+            private final List<Predicate> predicates = new ArrayList<>();
+
+            @Override
+            public <T> JPAUpdateClause set(Path<T> path, @Nullable T value) {
+                changedProperties.add(path.getMetadata().getName());
+                return super.set(path, value);
+            }
+
+            @Override
+            public <T> JPAUpdateClause set(Path<T> path, Expression<? extends T> expression) {
+                changedProperties.add(path.getMetadata().getName());
+                return super.set(path, expression);
+            }
+
+            @Override
+            public <T> JPAUpdateClause setNull(Path<T> path) {
+                changedProperties.add(path.getMetadata().getName());
+                return super.setNull(path);
+            }
+
+            @Override
+            public JPAUpdateClause set(List<? extends Path<?>> paths, List<?> values) {
+                paths.forEach(p -> changedProperties.add(p.getMetadata().getName()));
+                return super.set(paths, values);
+            }
+
+            @Override
+            public JPAUpdateClause where(Predicate... o) {
+                predicates.addAll(Arrays.asList(o));
+                return super.where(o);
+            }
+
+            @Override
+            public long execute() {
+                long rows = super.execute();
+                changeEventPublisher.publishAfterCommit(ChangeRecord.bulk(entityName, ChangeRecord.Operation.BULK_UPDATE, rows,
+                        changedProperties.toArray(new String[0]), idsOf(predicates)));
+                return rows;
+            }
+        };
+    }
+
+    @Override
+    public JPADeleteClause delete(EntityPath<?> path) {
+        if (changeEventPublisher == null) return super.delete(path);
+        String entityName = path.getType().getSimpleName();
+        return new JPADeleteClause(entityManager, path) {
+            private final List<Predicate> predicates = new ArrayList<>();
+
+            @Override
+            public JPADeleteClause where(Predicate... o) {
+                predicates.addAll(Arrays.asList(o));
+                return super.where(o);
+            }
+
+            @Override
+            public long execute() {
+                long rows = super.execute();
+                changeEventPublisher.publishAfterCommit(ChangeRecord.bulk(entityName, ChangeRecord.Operation.BULK_DELETE, rows,
+                        null, idsOf(predicates)));
+                return rows;
+            }
+        };
+    }
+
+    /*
+     * where 절에서 id = ? / id in (?) 조건을 찾아 영향받을 수 있는 id 를 돌려준다. and 로 묶인 경우 그중 하나만 있어도 된다.
+     * 못 찾으면 null (변경 레코드를 받는 쪽이 전부 바뀐 것으로 본다)
+     */
+    @Nullable
+    static Collection<?> idsOf(List<Predicate> predicates) {
+        for (Predicate predicate : predicates) {
+            Collection<?> ids = idsOf(predicate);
+            if (ids != null) return ids;
+        }
+        return null;
+    }
+
+    @Nullable
+    private static Collection<?> idsOf(@Nullable Expression<?> expression) {
+        if (expression instanceof BooleanBuilder) expression = ((BooleanBuilder) expression).getValue();
+        if (!(expression instanceof Operation)) return null;
+        Operation<?> operation = (Operation<?>) expression;
+        if (operation.getOperator() == Ops.AND) {
+            for (Expression<?> arg : operation.getArgs()) {
+                Collection<?> ids = idsOf(arg);
+                if (ids != null) return ids;
+            }
+            return null;
+        }
+        if (operation.getArgs().size() != 2 || !isRootId(operation.getArg(0)) || !(operation.getArg(1) instanceof Constant)) return null;
+        Object value = ((Constant<?>) operation.getArg(1)).getConstant();
+        if (operation.getOperator() == Ops.EQ) return List.of(value);
+        if (operation.getOperator() == Ops.IN && value instanceof Collection) return (Collection<?>) value;
+        return null;
+    }
+
+    private static boolean isRootId(Expression<?> expression) {
+        if (!(expression instanceof Path)) return false;
+        PathMetadata metadata = ((Path<?>) expression).getMetadata();
+        return metadata.getParent() != null && metadata.getParent().getMetadata().isRoot() && "id".equals(metadata.getName());
+    }
+}
@@ -0,0 +1,73 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.FactoryExpressionBase;
+import com.querydsl.core.types.Visitor;
+import org.springframework.lang.Nullable;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * QMemberTeamDto, QMemberDto 같은 프로젝션을 감싸서 지정한 문자열 컬럼 값을 쿼리 하나 안에서 같은 인스턴스로 공유시킨다.
+ * 팀 이름처럼 종류가 적은 컬럼은 JDBC 가 행마다 새 String 을 만들기 때문에, 결과가 크면 같은 문자열이 수십만 개 생긴다.
+ *
+ * 사전은 컬럼별로 두고 프로젝션(=쿼리) 하나가 끝나면 같이 버려진다. String.intern() 처럼 전역에 남지 않는다.
+ * 컬럼별 사전이 maxEntries 를 넘으면 그 뒤에 처음 나온 값은 공유하지 않는다 (값 종류가 많은 컬럼이 사전만 키우지 않도록).
+ */
+public class InterningProjection<T> extends FactoryExpressionBase<T> {
+
+    private final FactoryExpression<T> delegate;
+    /* args 위치별 사전, 공유하지 않는 컬럼은 null */
+    private final Map<String, String>[] dictionaries;
+    private final int maxEntries;
+
+    @SuppressWarnings("unchecked")
+    private InterningProjection(FactoryExpression<T> delegate, int maxEntries, List<Expression<?>> interned) {
+        super(delegate.getType());
+        this.delegate = delegate;
+        this.maxEntries = maxEntries;
+        List<Expression<?>> args = delegate.getArgs();
+        this.dictionaries = new Map[args.size()];
+        for (int i = 0; i < args.size(); i++) {
+            if (interned.contains(args.get(i))) dictionaries[i] = new HashMap<>();
+        }
+    }
+
+    /* interned 는 delegate 의 인자 중 공유할 문자열 컬럼 (예: team.name) */
+    public static <T> InterningProjection<T> of(FactoryExpression<T> delegate, int maxEntries, Expression<?>... interned) {
+        return new InterningProjection<>(delegate, maxEntries, Arrays.asList(interned));
+    }
+
+    @Override
+    public List<Expression<?>> getArgs() {
+        return delegate.getArgs();
+    }
+
+    @Nullable
+    @Override
+    public T newInstance(Object... args) {
+        for (int i = 0; i < args.length; i++) {
+            if (dictionaries[i] != null && args[i] instanceof String) {
+                args[i] = intern(dictionaries[i], (String) args[i]);
+            }
+        }
+        return delegate.newInstance(args);
+    }
+
+    private String intern(Map<String, String> dictionary, String value) {
+        String shared = dictionary.get(value);
+        if (shared != null) return shared;
+        if (dictionary.size() < maxEntries) dictionary.put(value, value);
+        return value;
+    }
+
+    @Nullable
+    @Override
+    public <R, C> R accept(Visitor<R, C> v, @Nullable C context) {
+        return v.visit(this, context);
+    }
+}
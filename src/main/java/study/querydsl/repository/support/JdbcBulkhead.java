@@ -0,0 +1,69 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * DB 작업을 동시에 permits 개(기본: 커넥션 풀 크기)까지만 실행시킨다.
+ * 요청 스레드가 많아져도(가상 스레드) 커넥션 대기는 여기서 줄을 서고, max-wait-ms 안에 차례가 안 오면 JdbcBulkheadFullException.
+ */
+@Component
+public class JdbcBulkhead {
+
+    private final Semaphore semaphore;
+    private final boolean enabled;
+    private final long maxWaitMillis;
+    private final Timer queueTime;
+    private final Counter rejected;
+
+    public JdbcBulkhead(MeterRegistry meterRegistry,
+                        @Value("${member.jdbc.bulkhead.enabled:true}") boolean enabled,
+                        @Value("${member.jdbc.bulkhead.permits:${spring.datasource.hikari.maximum-pool-size:10}}") int permits,
+                        @Value("${member.jdbc.bulkhead.max-wait-ms:1000}") long maxWaitMillis) {
+        this.semaphore = new Semaphore(permits, true);
+        this.enabled = enabled;
+        this.maxWaitMillis = maxWaitMillis;
+        this.queueTime = Timer.builder("member.jdbc.bulkhead.queue")
+                .description("time spent waiting for a database permit")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.rejected = meterRegistry.counter("member.jdbc.bulkhead.rejected");
+        Gauge.builder("member.jdbc.bulkhead.in-use", semaphore, s -> permits - s.availablePermits()).register(meterRegistry);
+        Gauge.builder("member.jdbc.bulkhead.waiting", semaphore, Semaphore::getQueueLength).register(meterRegistry);
+    }
+
+    public <T> T call(Supplier<T> work) {
+        if (!enabled) return work.get();
+        acquire();
+        try {
+            return work.get();
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    private void acquire() {
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = semaphore.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        } finally {
+            queueTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (!acquired) {
+            rejected.increment();
+            throw new JdbcBulkheadFullException(maxWaitMillis);
+        }
+    }
+}
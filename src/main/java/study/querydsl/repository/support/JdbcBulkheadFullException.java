@@ -0,0 +1,8 @@
+package study.querydsl.repository.support;
+
+public class JdbcBulkheadFullException extends RuntimeException {
+
+    public JdbcBulkheadFullException(long waitedMillis) {
+        super("no database permit available within " + waitedMillis + " ms");
+    }
+}
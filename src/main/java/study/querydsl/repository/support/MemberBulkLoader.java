@@ -0,0 +1,86 @@
+package study.querydsl.repository.support;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 부하 테스트/벤치마크용으로 team, member 테이블을 JDBC batch insert로 채운다.
+ * id는 직접 넣고, 끝나면 hibernate_sequence를 그 다음 값으로 옮겨서 이후 em.persist와 겹치지 않게 한다.
+ * 엔티티 이벤트를 거치지 않으므로 기동 후에 부르면 username 블룸 필터는 UsernameBloomFilter.rebuild() 로 다시 만들고
+ * findById near-cache 는 MemberNearCache.invalidateAll() 로 비워야 한다.
+ */
+public class MemberBulkLoader {
+
+    private static final int BATCH_SIZE = 10_000;
+    private static final String INSERT_MEMBER = "insert into member (member_id, username, username_lower, age, team_id, team_name, version) values (?, ?, ?, ?, ?, ?, 0)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public MemberBulkLoader(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /* 팀별 인원 분포 */
+    public enum TeamDistribution {
+        /* 모든 팀에 고르게 */
+        UNIFORM,
+        /* 회원의 80%가 앞쪽 3개 팀에 몰린다 */
+        SKEWED
+    }
+
+    public void load(int teamCount, long memberCount) {
+        load(teamCount, memberCount, TeamDistribution.UNIFORM);
+    }
+
+    public void load(int teamCount, long memberCount, TeamDistribution distribution) {
+        clear();
+        long nextId = 1;
+
+        List<Object[]> teams = new ArrayList<>();
+        for (int i = 0; i < teamCount; i++) {
+            teams.add(new Object[]{nextId++, "team" + i});
+        }
+        insert("insert into team (member_id, name) values (?, ?)", teams);
+        long firstTeamId = 1;
+
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        for (long i = 0; i < memberCount; i++) {
+            Long teamIndex = teamCount == 0 ? null : teamIndex(i, teamCount, distribution);
+            Long teamId = teamIndex == null ? null : firstTeamId + teamIndex;
+            String teamName = teamIndex == null ? null : "team" + teamIndex;
+            String username = "member" + i;
+            batch.add(new Object[]{nextId++, username, Member.normalizeUsername(username), (int) (i % 100), teamId, teamName});
+            if (batch.size() == BATCH_SIZE) {
+                insert(INSERT_MEMBER, batch);
+                batch.clear();
+            }
+        }
+        insert(INSERT_MEMBER, batch);
+
+        jdbcTemplate.execute("alter sequence hibernate_sequence restart with " + nextId);
+    }
+
+    private static long teamIndex(long i, int teamCount, TeamDistribution distribution) {
+        int hot = Math.min(3, teamCount);
+        if (distribution == TeamDistribution.UNIFORM || teamCount <= hot) return i % teamCount;
+        return i % 10 < 8 ? i % hot : hot + (i % (teamCount - hot));
+    }
+
+    public void clear() {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("delete from member");
+            jdbcTemplate.update("delete from team");
+        });
+    }
+
+    private void insert(String sql, List<Object[]> rows) {
+        if (rows.isEmpty()) return;
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(sql, rows));
+    }
+}
@@ -1,5 +1,6 @@
 package study.querydsl.repository.support;
 
+import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQuery;
 import org.springframework.data.domain.Page;
@@ -9,9 +10,15 @@ import org.springframework.stereotype.Repository;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
+import study.querydsl.repository.MemberFetchStrategy;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
 import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.*;
 import static study.querydsl.entity.QTeam.team;
@@ -19,8 +26,12 @@ import static study.querydsl.entity.QTeam.team;
 @Repository
 public class MemberTestRepository extends Querydsl4RepositorySupport{
 
-    public MemberTestRepository() {
+    /* team join 또는 member.team_name(비정규화 복사본) */
+    private final TeamNameSource teamNames;
+
+    public MemberTestRepository(TeamNameSource teamNames) {
         super(Member.class);
+        this.teamNames = teamNames;
     }
 
     public List<Member> basicSelect() {
@@ -35,22 +46,60 @@ public class MemberTestRepository extends Querydsl4RepositorySupport{
     }
 
     public Page<Member> searchPageByApplyPage(MemberSearchCondition condition, Pageable pageable) {
-        JPAQuery<Member> query = selectFrom(member)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                );
-        List<Member> content = getQuerydsl().applyPagination(pageable, query).fetch();
-        return PageableExecutionUtils.getPage(content, pageable, query::fetchCount);
+        return searchPageByApplyPage(condition, pageable, MemberFetchStrategy.BATCH);
+    }
+
+    public Page<Member> searchPageByApplyPage(MemberSearchCondition condition, Pageable pageable, MemberFetchStrategy fetchStrategy) {
+        List<Member> content;
+        switch (fetchStrategy) {
+            case FETCH_JOIN:
+                content = getQuerydsl().applyPagination(pageable, selectFrom(member)
+                        .leftJoin(member.team, team).fetchJoin()
+                        .where(searchPredicates(condition))).fetch();
+                break;
+            case ID_PAGE_FETCH_JOIN:
+                content = fetchPageByIds(condition, pageable);
+                break;
+            default:
+                content = getQuerydsl().applyPagination(pageable, teamNames.joinIfFiltered(selectFrom(member), condition.getTeamName())
+                        .where(searchPredicates(condition))).fetch();
+        }
+
+        JPAQuery<Long> countQuery = teamNames.joinIfFiltered(select(member.count()).from(member), condition.getTeamName())
+                .where(searchPredicates(condition));
+        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchOne);
+    }
+
+    /* 1) 좁은 id 목록만 페이징 2) 그 id들만 team과 fetch join 해서 원래 순서대로 돌려준다 */
+    private List<Member> fetchPageByIds(MemberSearchCondition condition, Pageable pageable) {
+        List<Long> ids = getQuerydsl().applyPagination(pageable, teamNames.joinIfFiltered(select(member.id).from(member), condition.getTeamName())
+                .where(searchPredicates(condition))).fetch();
+        if (ids.isEmpty()) return Collections.emptyList();
+
+        Map<Long, Member> membersById = selectFrom(member)
+                .leftJoin(member.team, team).fetchJoin()
+                .where(member.id.in(ids))
+                .fetch().stream()
+                .collect(toMap(Member::getId, Function.identity()));
+        return ids.stream().map(membersById::get).collect(toList());
+    }
+
+    private Predicate[] searchPredicates(MemberSearchCondition condition) {
+        return new Predicate[]{
+                usernameEq(condition.getUsername(), condition.isUsernameIgnoreCase()),
+                teamNameEq(condition.getTeamName()),
+                ageGoe(condition.getAgeGoe()),
+                ageLoe(condition.getAgeLoe())
+        };
     }
 
-    private BooleanExpression usernameEq(String username) {
-        return hasText(username) ? member.username.eq(username) : null;
+    private BooleanExpression usernameEq(String username, boolean ignoreCase) {
+        if (!hasText(username)) return null;
+        return ignoreCase ? member.usernameLower.eq(Member.normalizeUsername(username)) : member.username.eq(username);
     }
 
     private BooleanExpression teamNameEq(String teamName) {
-        return hasText(teamName) ? team.name.eq(teamName) : null;
+        return teamNames.teamNameEq(teamName);
     }
 
     private BooleanExpression ageGoe(Integer ageGoe) {
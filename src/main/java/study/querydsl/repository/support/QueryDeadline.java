@@ -0,0 +1,93 @@
+package study.querydsl.repository.support;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.query.spi.QueryImplementor;
+
+import javax.persistence.Query;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * 요청 단위 마감시각. 컨트롤러 계층에서 start() 하면 이 스레드에서 실행되는 JPAQuery에
+ * 남은 시간이 javax.persistence.query.timeout 으로 걸리고, 마감이 지나면 cancel()로 실행 중인 statement를 취소할 수 있다.
+ *
+ * 취소할 세션은 쿼리에서 꺼낸다. 트랜잭션 밖에서 공유 EntityManager 프록시를 unwrap 하면 쿼리와 상관없는 (바로 닫히는) 세션이 나온다.
+ * DeadlineJPAQuery(= 공용 JPAQueryFactory, Querydsl4RepositorySupport) 를 거치는 쿼리만 적용된다.
+ * Spring Data 파생 쿼리(findByXxx), @Query, QuerydslPredicateExecutor 의 findAll(predicate) 는 마감도 취소도 걸리지 않고
+ * spring.jpa.properties.javax.persistence.query.timeout 같은 전역 timeout 만 받는다.
+ */
+@Slf4j
+public class QueryDeadline {
+
+    public static final String TIMEOUT_HINT = "javax.persistence.query.timeout";
+
+    private static final ThreadLocal<QueryDeadline> CURRENT = new ThreadLocal<>();
+
+    private final long deadlineNanos;
+    private volatile Session session;
+    private volatile boolean cancelled;
+
+    private QueryDeadline(Duration budget) {
+        this.deadlineNanos = System.nanoTime() + budget.toNanos();
+    }
+
+    public static QueryDeadline start(Duration budget) {
+        QueryDeadline deadline = new QueryDeadline(budget);
+        CURRENT.set(deadline);
+        return deadline;
+    }
+
+    public static Optional<QueryDeadline> current() {
+        return Optional.ofNullable(CURRENT.get());
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    public long remainingMillis() {
+        return (deadlineNanos - System.nanoTime()) / 1_000_000;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 남은 시간을 쿼리 timeout으로 건다. hibernate는 ms를 초 단위로 반올림하므로 올림해서 넘긴다.
+     * @throws QueryDeadlineExceededException 이미 마감이 지난 경우
+     */
+    public void apply(Query query) {
+        long remaining = remainingMillis();
+        if (cancelled || remaining <= 0) {
+            throw new QueryDeadlineExceededException("request deadline exceeded before query execution");
+        }
+        long seconds = (remaining + 999) / 1000;
+        query.setHint(TIMEOUT_HINT, seconds * 1000);
+        this.session = sessionOf(query);
+    }
+
+    /* 이 쿼리를 실제로 실행할 세션. 트랜잭션 밖이면 쿼리 하나만을 위해 열린 세션이다 */
+    private static Session sessionOf(Query query) {
+        try {
+            Object producer = query.unwrap(QueryImplementor.class).getProducer();
+            return producer instanceof Session ? (Session) producer : null;
+        } catch (RuntimeException e) {
+            log.debug("cannot resolve session of query, deadline will not cancel it", e);
+            return null;
+        }
+    }
+
+    /* 다른 스레드(watchdog)에서 호출: 이후 쿼리는 거부하고, 실행 중인 statement는 취소 */
+    public void cancel() {
+        cancelled = true;
+        Session current = session;
+        if (current == null) return;
+        try {
+            current.cancelQuery();
+        } catch (RuntimeException e) {
+            log.debug("cancelQuery failed", e);
+        }
+    }
+}
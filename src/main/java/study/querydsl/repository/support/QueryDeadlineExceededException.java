@@ -0,0 +1,8 @@
+package study.querydsl.repository.support;
+
+public class QueryDeadlineExceededException extends RuntimeException {
+
+    public QueryDeadlineExceededException(String message) {
+        super(message);
+    }
+}
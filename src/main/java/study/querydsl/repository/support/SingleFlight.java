@@ -0,0 +1,97 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * 같은 key로 동시에 들어온 호출을 하나의 실행으로 합친다.
+ * 먼저 들어온 호출(leader)만 loader를 실행하고, 나머지는 maxWait까지 leader의 결과를 기다린다.
+ * maxWait을 넘기면 기다리던 호출은 직접 loader를 실행한다.
+ * leader의 실패가 leader 자신의 사정(leaderOnlyFailure, 예: leader 요청의 마감 초과)이면 기다리던 호출에 넘기지 않고 다시 합쳐서 실행한다.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final long maxWaitMillis;
+    private final Predicate<Throwable> leaderOnlyFailure;
+
+    private final Counter executions;
+    private final Counter coalesced;
+    private final Counter timeouts;
+    private final Counter retries;
+
+    public SingleFlight(String name, Duration maxWait, MeterRegistry registry) {
+        this(name, maxWait, registry, e -> false);
+    }
+
+    public SingleFlight(String name, Duration maxWait, MeterRegistry registry, Predicate<Throwable> leaderOnlyFailure) {
+        this.maxWaitMillis = maxWait.toMillis();
+        this.leaderOnlyFailure = leaderOnlyFailure;
+        this.executions = Counter.builder("singleflight.executions").tag("name", name).register(registry);
+        this.coalesced = Counter.builder("singleflight.coalesced").tag("name", name)
+                .description("executions saved by sharing an in-flight result").register(registry);
+        this.timeouts = Counter.builder("singleflight.timeouts").tag("name", name).register(registry);
+        this.retries = Counter.builder("singleflight.retries").tag("name", name)
+                .description("waiting calls re-executed because the leader failed for its own reason").register(registry);
+    }
+
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing == null) {
+            return lead(key, created, loader);
+        }
+        return follow(key, existing, loader);
+    }
+
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private V lead(K key, CompletableFuture<V> future, Supplier<V> loader) {
+        executions.increment();
+        try {
+            V value = loader.get();
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    private V follow(K key, CompletableFuture<V> existing, Supplier<V> loader) {
+        try {
+            V value = existing.get(maxWaitMillis, TimeUnit.MILLISECONDS);
+            coalesced.increment();
+            return value;
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            executions.increment();
+            return loader.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (leaderOnlyFailure.test(cause)) {
+                retries.increment();
+                return execute(key, loader);
+            }
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for in-flight result", e);
+        }
+    }
+}
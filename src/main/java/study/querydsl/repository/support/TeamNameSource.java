@@ -0,0 +1,59 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.QMemberTeamDto;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 회원 검색에서 팀 이름을 어디서 읽을지 한곳에서 정한다 (member.search.denormalized-team-name).
+ * true 면 member.team_name(비정규화 복사본)으로 거르고 보여주며 team join 을 하지 않는다. false 면 team 과 join 한다.
+ * MemberRepositoryImpl, MemberJpaReposiotory, MemberTestRepository 가 같이 쓴다.
+ */
+@Component
+public class TeamNameSource {
+
+    private final boolean denormalized;
+
+    public TeamNameSource(@Value("${member.search.denormalized-team-name:false}") boolean denormalized) {
+        this.denormalized = denormalized;
+    }
+
+    public boolean isDenormalized() {
+        return denormalized;
+    }
+
+    public StringPath teamName() {
+        return denormalized ? member.teamName : team.name;
+    }
+
+    /* member.team.id 는 FK 컬럼(team_id)이라 join 없이 읽힌다 */
+    public NumberPath<Long> teamId() {
+        return denormalized ? member.team.id : team.id;
+    }
+
+    public QMemberTeamDto memberTeamDto() {
+        return new QMemberTeamDto(member.id, member.username, member.age, teamId(), teamName());
+    }
+
+    /* 팀 없는 회원도 나오도록 left join. 비정규화면 join 하지 않는다 */
+    public <T> JPAQuery<T> join(JPAQuery<T> query) {
+        return denormalized ? query : query.leftJoin(member.team, team);
+    }
+
+    /* teamName 조건이 있을 때만 join. team.name = ? 이면 팀 없는 회원은 어차피 빠지므로 inner join 으로 충분하다 (count, id 페이징용) */
+    public <T> JPAQuery<T> joinIfFiltered(JPAQuery<T> query, String teamName) {
+        return hasText(teamName) && !denormalized ? query.join(member.team, team) : query;
+    }
+
+    public BooleanExpression teamNameEq(String teamName) {
+        return hasText(teamName) ? teamName().eq(teamName) : null;
+    }
+}
@@ -0,0 +1,211 @@
+package study.querydsl.repository.writebehind;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 회원 age 증감을 바로 update 하지 않고 회원별 delta로 모아뒀다가 주기적으로 한꺼번에 반영한다 (write-behind).
+ *
+ * - 같은 회원에 대한 증감은 map 안에서 합쳐진다. ConcurrentHashMap 은 bin 단위로 잠그므로 회원이 다르면 서로 안 막힌다.
+ * - flush 는 delta 값이 같은 회원끼리 묶어서 update member set age = age + :delta where member_id in (...) 로 보낸다.
+ * - 반영 지연은 flush-interval-ms 이내. 밀린 회원 수가 max-pending 에 닿으면 flush 스레드를 바로 깨우고,
+ *   새 회원을 넣으려는 호출자는 자리가 날 때까지 backpressure-timeout-ms 만큼 기다렸다가 그래도 차 있으면 WriteBehindFullException (backpressure).
+ *   호출자가 직접 flush 하지 않는다: 호출자가 이미 커넥션을 쥔 채로 REQUIRES_NEW 로 하나 더 잡으면 부하 때 풀이 바닥나 서로 기다리게 된다.
+ * - update 의 where 가 member_id in (...) 이라 변경 레코드에 id 가 담긴다 (받는 쪽은 그 회원만 무효화한다).
+ * - 종료 시(@PreDestroy) 남은 delta를 flush 한다. flush 가 실패하면 꺼낸 delta를 다시 map 에 합쳐서 다음 flush 때 재시도한다.
+ *
+ * 반영 전까지는 DB/영속성 컨텍스트의 age 가 delta 만큼 뒤처져 있다.
+ */
+@Slf4j
+@Component
+public class MemberAgeWriteBehindBuffer {
+
+    private final ConcurrentHashMap<Long, Integer> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    /* flush 가 끝날 때마다 signalAll (backpressure 로 기다리는 호출자를 깨운다) */
+    private final Object drained = new Object();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final ScheduledExecutorService scheduler;
+    private final int maxPending;
+    private final int maxInList;
+    private final long backpressureTimeoutMs;
+
+    private final Counter increments;
+    private final Counter flushedRows;
+    private final Counter statements;
+    private final Counter backpressure;
+    private final Counter rejected;
+    private final Counter failures;
+    private final Timer flushTimer;
+
+    public MemberAgeWriteBehindBuffer(JPAQueryFactory queryFactory,
+                                      PlatformTransactionManager transactionManager,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${member.write-behind.flush-interval-ms:1000}") long flushIntervalMs,
+                                      @Value("${member.write-behind.max-pending:100000}") int maxPending,
+                                      @Value("${member.write-behind.max-in-list:1000}") int maxInList,
+                                      @Value("${member.write-behind.backpressure-timeout-ms:500}") long backpressureTimeoutMs) {
+        this.queryFactory = queryFactory;
+        // 호출한 쪽 트랜잭션에 묶이지 않도록 항상 새 트랜잭션
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.maxPending = maxPending;
+        this.maxInList = maxInList;
+        this.backpressureTimeoutMs = backpressureTimeoutMs;
+
+        this.increments = meterRegistry.counter("member.write-behind.increments");
+        this.flushedRows = meterRegistry.counter("member.write-behind.flushed.rows");
+        this.statements = meterRegistry.counter("member.write-behind.statements");
+        this.backpressure = meterRegistry.counter("member.write-behind.backpressure");
+        this.rejected = meterRegistry.counter("member.write-behind.rejected");
+        this.failures = meterRegistry.counter("member.write-behind.failures");
+        this.flushTimer = meterRegistry.timer("member.write-behind.flush");
+        Gauge.builder("member.write-behind.pending", pending, Map::size).register(meterRegistry);
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "member-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::scheduledFlush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void addAge(Long memberId, int delta) {
+        if (delta == 0) return;
+        // 이미 밀려 있는 회원에 더하는 건 자리를 늘리지 않으므로 막지 않는다
+        if (pending.size() >= maxPending && !pending.containsKey(memberId)) awaitRoom();
+        pending.merge(memberId, delta, Integer::sum);
+        increments.increment();
+        if (pending.size() >= maxPending) requestFlush();
+    }
+
+    private void awaitRoom() {
+        backpressure.increment();
+        requestFlush();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backpressureTimeoutMs);
+        synchronized (drained) {
+            while (pending.size() >= maxPending) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    rejected.increment();
+                    throw new WriteBehindFullException(pending.size(), backpressureTimeoutMs);
+                }
+                try {
+                    drained.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new WriteBehindFullException(pending.size(), backpressureTimeoutMs);
+                }
+            }
+        }
+    }
+
+    /* 다음 주기를 기다리지 않고 flush 스레드에서 바로 flush (이미 요청돼 있으면 합친다) */
+    private void requestFlush() {
+        if (!flushRequested.compareAndSet(false, true)) return;
+        try {
+            scheduler.execute(() -> {
+                flushRequested.set(false);
+                scheduledFlush();
+            });
+        } catch (RejectedExecutionException e) {
+            // 종료 중: shutdown() 이 마지막으로 flush 한다
+            flushRequested.set(false);
+        }
+    }
+
+    public int pendingMembers() {
+        return pending.size();
+    }
+
+    /* 지금까지 모인 delta를 반영하고 update 된 행 수를 돌려준다. 동시에 한 스레드만 flush 한다. */
+    public long flush() {
+        flushLock.lock();
+        Timer.Sample sample = Timer.start();
+        try {
+            return flushPending();
+        } finally {
+            sample.stop(flushTimer);
+            flushLock.unlock();
+            synchronized (drained) {
+                drained.notifyAll();
+            }
+        }
+    }
+
+    private long flushPending() {
+        // remove 로 꺼내야 꺼낸 뒤 들어온 delta가 사라지지 않는다
+        Map<Integer, List<Long>> byDelta = new HashMap<>();
+        for (Long memberId : pending.keySet()) {
+            Integer delta = pending.remove(memberId);
+            if (delta != null && delta != 0) {
+                byDelta.computeIfAbsent(delta, d -> new ArrayList<>()).add(memberId);
+            }
+        }
+        if (byDelta.isEmpty()) return 0;
+
+        try {
+            Long updated = transactionTemplate.execute(status -> {
+                long rows = 0;
+                for (Map.Entry<Integer, List<Long>> entry : byDelta.entrySet()) {
+                    List<Long> ids = entry.getValue();
+                    for (int from = 0; from < ids.size(); from += maxInList) {
+                        rows += queryFactory.update(member)
+                                .set(member.age, member.age.add(entry.getKey()))
+                                .where(member.id.in(ids.subList(from, Math.min(from + maxInList, ids.size()))))
+                                .execute();
+                        statements.increment();
+                    }
+                }
+                return rows;
+            });
+            flushedRows.increment(updated);
+            return updated;
+        } catch (RuntimeException e) {
+            failures.increment();
+            byDelta.forEach((delta, ids) -> ids.forEach(id -> pending.merge(id, delta, Integer::sum)));
+            throw e;
+        }
+    }
+
+    private void scheduledFlush() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("member age write-behind flush failed, {} members pending", pending.size(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        flush();
+    }
+}
@@ -0,0 +1,8 @@
+package study.querydsl.repository.writebehind;
+
+public class WriteBehindFullException extends RuntimeException {
+
+    public WriteBehindFullException(int pendingMembers, long waitedMillis) {
+        super(pendingMembers + " members pending write-behind, not drained within " + waitedMillis + " ms");
+    }
+}
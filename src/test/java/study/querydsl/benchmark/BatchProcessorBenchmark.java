@@ -0,0 +1,44 @@
+package study.querydsl.benchmark;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import study.querydsl.repository.batch.MemberBatchProcessor;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MemberBatchProcessor 로 전체 회원을 훑으며 10% 를 고칠 때 초당 처리 건수와 힙 사용량 최대치.
+ * 테이블 크기가 커져도 heap 최대치가 거의 그대로여야 한다.
+ *
+ * 결과: build/benchmark/batch-processor.csv
+ */
+class BatchProcessorBenchmark extends DatabaseBenchmark {
+
+    @Autowired MemberBatchProcessor batchProcessor;
+
+    @Test
+    void streamAllMembers() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        BenchmarkResult csv = new BenchmarkResult(getClass());
+        for (long rows : BenchmarkSupport.longList("bench.sizes", "100000,1000000")) {
+            loadMembers(100, rows);
+            System.gc();
+            long baseline = memory.getHeapMemoryUsage().getUsed();
+            AtomicLong peak = new AtomicLong(baseline);
+
+            long start = System.nanoTime();
+            MemberBatchProcessor.BatchResult result = batchProcessor.process(m -> {
+                if (m.getId() % 10 != 0) return false;
+                m.setAge(m.getAge() + 1);
+                return true;
+            }, (lastId, processed, updated) -> peak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max));
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            csv.row("%d,%d,%d,%.0f,%.1f", rows, result.processed, result.updated,
+                    result.processed / seconds, (peak.get() - baseline) / 1024.0 / 1024.0);
+        }
+        csv.write("batch-processor.csv", "rows,processed,updated,rowsPerSec,peakHeapAboveBaselineMb");
+    }
+}
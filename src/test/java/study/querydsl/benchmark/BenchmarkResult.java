@@ -0,0 +1,54 @@
+package study.querydsl.benchmark;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 벤치마크 결과 CSV 줄을 모은다. 줄마다 벤치마크 클래스의 로거로도 남기고, 끝나면 build/benchmark 아래에 쓴다.
+ */
+final class BenchmarkResult {
+
+    private static final File DIRECTORY = new File("build/benchmark");
+
+    private final Logger log;
+    private final List<String> lines = new ArrayList<>();
+
+    BenchmarkResult(Class<?> benchmark) {
+        this.log = LoggerFactory.getLogger(benchmark);
+    }
+
+    /* Locale.ROOT 로 포맷한다 (소수점이 쉼표가 되지 않게) */
+    void row(String format, Object... args) {
+        String line = String.format(Locale.ROOT, format, args);
+        lines.add(line);
+        log.info(line);
+    }
+
+    void write(String fileName, String header) {
+        BenchmarkSupport.writeCsv(new File(DIRECTORY, fileName), header, lines);
+    }
+
+    /* 이전 실행의 줄을 지우지 않고 뒤에 붙인다 (실행 조건을 바꿔 가며 비교할 때) */
+    void append(String fileName, String header) {
+        File file = new File(DIRECTORY, fileName);
+        List<String> all = new ArrayList<>();
+        if (file.exists()) {
+            try {
+                List<String> previous = Files.readAllLines(file.toPath());
+                all.addAll(previous.subList(Math.min(1, previous.size()), previous.size()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        all.addAll(lines);
+        BenchmarkSupport.writeCsv(file, header, all);
+    }
+}
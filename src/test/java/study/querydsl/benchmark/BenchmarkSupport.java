@@ -0,0 +1,98 @@
+package study.querydsl.benchmark;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * 벤치마크 테스트들이 같이 쓰는 측정/출력 도구.
+ */
+public final class BenchmarkSupport {
+
+    private static final Logger log = LoggerFactory.getLogger(BenchmarkSupport.class);
+    private static final Pattern SCAN_COUNT = Pattern.compile("scanCount: (\\d+)");
+
+    private BenchmarkSupport() {
+    }
+
+    public static List<Long> longList(String property, String defaultValue) {
+        return Arrays.stream(System.getProperty(property, defaultValue).split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .map(Long::parseLong)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * warmup 후 iterations 번(혹은 maxMillis 예산이 찰 때까지) 실행해서 회당 평균 ms를 돌려준다.
+     * work는 결과 건수를 돌려준다.
+     */
+    public static Measurement measure(int warmup, int iterations, long maxMillis, LongSupplier work) {
+        for (int i = 0; i < warmup; i++) work.getAsLong();
+
+        long resultRows = 0;
+        int runs = 0;
+        long start = System.nanoTime();
+        long deadline = start + maxMillis * 1_000_000;
+        while (runs < iterations) {
+            resultRows = work.getAsLong();
+            runs++;
+            if (System.nanoTime() > deadline) break;
+        }
+        double msPerRun = (System.nanoTime() - start) / 1e6 / runs;
+        return new Measurement(msPerRun, runs, resultRows);
+    }
+
+    /* h2 EXPLAIN ANALYZE 결과의 scanCount 합계 */
+    public static long rowsScanned(JdbcTemplate jdbcTemplate, String sql) {
+        return rowsScanned(jdbcTemplate, sql, List.of());
+    }
+
+    /* 바인딩 값이 있는 SQL (SqlRecorder 로 기록한 문장) */
+    public static long rowsScanned(JdbcTemplate jdbcTemplate, String sql, List<Object> parameters) {
+        String plan = jdbcTemplate.queryForObject("EXPLAIN ANALYZE " + sql, String.class, parameters.toArray());
+        Matcher matcher = SCAN_COUNT.matcher(plan);
+        long scanned = 0;
+        while (matcher.find()) scanned += Long.parseLong(matcher.group(1));
+        return scanned;
+    }
+
+    public static String plan(JdbcTemplate jdbcTemplate, String sql) {
+        return jdbcTemplate.queryForObject("EXPLAIN ANALYZE " + sql, String.class);
+    }
+
+    public static void writeCsv(File file, String header, List<String> lines) {
+        file.getParentFile().mkdirs();
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+            writer.println(header);
+            lines.forEach(writer::println);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.info("benchmark result written to {}", file.getAbsolutePath());
+    }
+
+    public static final class Measurement {
+        public final double msPerRun;
+        public final int runs;
+        public final long resultRows;
+
+        Measurement(double msPerRun, int runs, long resultRows) {
+            this.msPerRun = msPerRun;
+            this.runs = runs;
+            this.resultRows = resultRows;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package study.querydsl.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import study.querydsl.repository.change.ChangeEventPublisher;
+import study.querydsl.repository.change.ChangeRecord;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 변경 레코드 파이프라인(링 버퍼 + 배치 소비자) 처리량. 생산자 수별로 records/sec 와 버려진 건수를 잰다.
+ *
+ * 결과: build/benchmark/change-stream.csv
+ */
+@Tag("benchmark")
+class ChangeStreamBenchmark {
+
+    @Test
+    void throughput() throws Exception {
+        int perProducer = Integer.getInteger("bench.records", 2_000_000);
+        BenchmarkResult csv = new BenchmarkResult(getClass());
+        for (int producers : new int[]{1, 2, 4, 8}) {
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            ChangeEventPublisher publisher = new ChangeEventPublisher(registry, 65536, 256, Duration.ofMillis(100));
+            AtomicLong consumed = new AtomicLong();
+            publisher.subscribe(changes -> consumed.addAndGet(changes.size()));
+            publisher.start();
+
+            ExecutorService executor = Executors.newFixedThreadPool(producers);
+            CountDownLatch done = new CountDownLatch(producers);
+            long start = System.nanoTime();
+            for (int p = 0; p < producers; p++) {
+                executor.execute(() -> {
+                    for (long i = 0; i < perProducer; i++) {
+                        publisher.publish(ChangeRecord.row("Member", ChangeRecord.Operation.UPDATE, i, null));
+                    }
+                    done.countDown();
+                });
+            }
+            done.await();
+            publisher.stop();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            executor.shutdown();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+
+            long dropped = (long) registry.get("member.change.dropped").counter().count();
+            csv.row("%d,%d,%.0f,%d,%d",
+                    producers, (long) producers * perProducer, consumed.get() / seconds, consumed.get(), dropped);
+        }
+        csv.write("change-stream.csv", "producers,published,consumedPerSec,consumed,dropped");
+    }
+}
@@ -0,0 +1,73 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.MemberRepository;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 페이징 count 쿼리: 예전 selectFrom(member).leftJoin(team).fetchCount() 와
+ * join을 뺀 select(member.count()) 의 실행계획/지연시간 비교 (기본 100만 건).
+ *
+ * 결과: build/benchmark/count-query.csv, build/benchmark/count-query-plans.txt
+ */
+class CountQueryBenchmark extends DatabaseBenchmark {
+
+    static final String LEGACY_SQL = "select count(m.member_id) from member m left outer join team t on m.team_id = t.member_id" +
+            " where m.age >= 20 and m.age <= 40";
+    static final String LEAN_SQL = "select count(m.member_id) from member m where m.age >= 20 and m.age <= 40";
+
+    @Autowired JPAQueryFactory queryFactory;
+    @Autowired MemberRepository memberRepository;
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void countQuery() {
+        long rows = Long.getLong("bench.rows", 1_000_000);
+        int iterations = Integer.getInteger("bench.iterations", 20);
+        loadMembers(100, rows);
+
+        BenchmarkSupport.Measurement legacy = BenchmarkSupport.measure(3, iterations, 60_000, () ->
+                queryFactory.selectFrom(member)
+                        .leftJoin(member.team, team)
+                        .where(member.age.goe(20), member.age.loe(40))
+                        .fetchCount());
+        BenchmarkSupport.Measurement lean = BenchmarkSupport.measure(3, iterations, 60_000, () ->
+                queryFactory.select(member.count())
+                        .from(member)
+                        .where(member.age.goe(20), member.age.loe(40))
+                        .fetchOne());
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+        condition.setAgeLoe(40);
+        BenchmarkSupport.Measurement fullPage = BenchmarkSupport.measure(3, iterations, 60_000, () ->
+                memberRepository.searchPageComplex(condition, PageRequest.of(0, 20)).getTotalElements());
+        // 마지막 페이지가 size보다 작으면 count 생략
+        condition.setUsername("member7");
+        BenchmarkSupport.Measurement shortPage = BenchmarkSupport.measure(3, iterations, 60_000, () ->
+                memberRepository.searchPageComplex(condition, PageRequest.of(0, 20)).getTotalElements());
+
+        BenchmarkResult csv = new BenchmarkResult(getClass());
+        String line = "%d,%s,%.3f,%d,%d";
+        csv.row(line, rows, "legacy-fetchCount-leftJoin", legacy.msPerRun, legacy.runs, rowsScanned(LEGACY_SQL));
+        csv.row(line, rows, "select-count-no-join", lean.msPerRun, lean.runs, rowsScanned(LEAN_SQL));
+        csv.row(line, rows, "searchPageComplex-full-page", fullPage.msPerRun, fullPage.runs, -1);
+        csv.row(line, rows, "searchPageComplex-short-page", shortPage.msPerRun, shortPage.runs, -1);
+        csv.write("count-query.csv", "rows,query,msPerQuery,runs,rowsScanned");
+
+        List<String> plans = new ArrayList<>();
+        plans.add("-- legacy\n" + plan(LEGACY_SQL));
+        plans.add("-- lean\n" + plan(LEAN_SQL));
+        BenchmarkSupport.writeCsv(new File("build/benchmark/count-query-plans.txt"), "-- EXPLAIN ANALYZE, rows=" + rows, plans);
+    }
+}
@@ -0,0 +1,41 @@
+package study.querydsl.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.repository.support.MemberBulkLoader;
+import study.querydsl.repository.support.MemberBulkLoader.TeamDistribution;
+
+/**
+ * 메모리 h2(bench 프로필)에 회원을 채워서 재는 벤치마크들의 공통 부분.
+ * 프로퍼티를 바꿔야 하는 벤치마크는 하위 클래스에 @SpringBootTest(properties = ...) 를 다시 단다.
+ */
+@Tag("benchmark")
+@ActiveProfiles("bench")
+@SpringBootTest
+abstract class DatabaseBenchmark {
+
+    @Autowired protected JdbcTemplate jdbcTemplate;
+    @Autowired protected TransactionTemplate transactionTemplate;
+
+    protected void loadMembers(int teams, long members) {
+        loadMembers(teams, members, TeamDistribution.UNIFORM);
+    }
+
+    /* 테이블을 비우고 다시 채운 뒤 ANALYZE (h2 가 새 건수로 실행 계획을 세우게) */
+    protected void loadMembers(int teams, long members, TeamDistribution distribution) {
+        new MemberBulkLoader(jdbcTemplate, transactionTemplate).load(teams, members, distribution);
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    protected long rowsScanned(String sql) {
+        return BenchmarkSupport.rowsScanned(jdbcTemplate, sql);
+    }
+
+    protected String plan(String sql) {
+        return BenchmarkSupport.plan(jdbcTemplate, sql);
+    }
+}
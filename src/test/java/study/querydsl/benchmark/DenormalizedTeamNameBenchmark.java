@@ -0,0 +1,74 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.MemberRepositoryImpl;
+import study.querydsl.repository.support.TeamNameSource;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 검색: left join team 으로 team.name 을 읽는 쿼리와 member.team_name(비정규화, 인덱스) 만 읽는 쿼리 비교.
+ * 같은 MemberRepositoryImpl 을 member.search.denormalized-team-name 값만 바꿔서 두 개 만든다.
+ *
+ * 결과: build/benchmark/denormalized-team-name.csv, build/benchmark/denormalized-team-name-plans.txt
+ */
+class DenormalizedTeamNameBenchmark extends DatabaseBenchmark {
+
+    static final String JOIN_SQL = "select m.member_id, m.username, m.age, t.member_id, t.name from member m" +
+            " left outer join team t on m.team_id = t.member_id where t.name = 'team7'";
+    static final String COLUMN_SQL = "select m.member_id, m.username, m.age, m.team_id, m.team_name from member m" +
+            " where m.team_name = 'team7'";
+    static final String LINE = "%d,%d,%s,%s,%.3f,%d,%d,%d";
+
+    @Autowired JPAQueryFactory queryFactory;
+
+    @Test
+    void joinVersusColumn() {
+        int iterations = Integer.getInteger("bench.iterations", 20);
+        long teams = Long.getLong("bench.teams", 100);
+        MemberRepositoryImpl joined = new MemberRepositoryImpl(queryFactory, 4096, new TeamNameSource(false));
+        MemberRepositoryImpl denormalized = new MemberRepositoryImpl(queryFactory, 4096, new TeamNameSource(true));
+
+        MemberSearchCondition byTeam = new MemberSearchCondition();
+        byTeam.setTeamName("team7");
+        MemberSearchCondition byAge = new MemberSearchCondition();
+        byAge.setAgeGoe(20);
+        byAge.setAgeLoe(40);
+
+        BenchmarkResult csv = new BenchmarkResult(getClass());
+        List<String> plans = new ArrayList<>();
+        for (long rows : BenchmarkSupport.longList("bench.sizes", "100000,1000000")) {
+            loadMembers((int) teams, rows);
+
+            BenchmarkSupport.Measurement joinTeam = BenchmarkSupport.measure(3, iterations, 60_000, () -> joined.search(byTeam).size());
+            BenchmarkSupport.Measurement columnTeam = BenchmarkSupport.measure(3, iterations, 60_000, () -> denormalized.search(byTeam).size());
+            assertThat(columnTeam.resultRows).isEqualTo(joinTeam.resultRows);
+            csv.row(LINE, rows, teams, "search-teamName", "left-join-team",
+                    joinTeam.msPerRun, joinTeam.runs, joinTeam.resultRows, rowsScanned(JOIN_SQL));
+            csv.row(LINE, rows, teams, "search-teamName", "member.team_name",
+                    columnTeam.msPerRun, columnTeam.runs, columnTeam.resultRows, rowsScanned(COLUMN_SQL));
+
+            BenchmarkSupport.Measurement joinPage = BenchmarkSupport.measure(3, iterations, 60_000, () ->
+                    joined.searchPageComplex(byAge, PageRequest.of(0, 100)).getContent().size());
+            BenchmarkSupport.Measurement columnPage = BenchmarkSupport.measure(3, iterations, 60_000, () ->
+                    denormalized.searchPageComplex(byAge, PageRequest.of(0, 100)).getContent().size());
+            csv.row(LINE, rows, teams, "searchPageComplex-age", "left-join-team",
+                    joinPage.msPerRun, joinPage.runs, joinPage.resultRows, -1);
+            csv.row(LINE, rows, teams, "searchPageComplex-age", "member.team_name",
+                    columnPage.msPerRun, columnPage.runs, columnPage.resultRows, -1);
+
+            plans.add("-- rows=" + rows + " left join team\n" + plan(JOIN_SQL));
+            plans.add("-- rows=" + rows + " member.team_name\n" + plan(COLUMN_SQL));
+        }
+        csv.write("denormalized-team-name.csv", "rows,teams,query,method,msPerQuery,runs,resultRows,rowsScanned");
+        BenchmarkSupport.writeCsv(new File("build/benchmark/denormalized-team-name-plans.txt"), "-- EXPLAIN ANALYZE", plans);
+    }
+}
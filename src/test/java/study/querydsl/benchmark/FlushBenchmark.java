@@ -0,0 +1,63 @@
+package study.querydsl.benchmark;
+
+import org.hibernate.engine.spi.SelfDirtinessTracker;
+import org.junit.jupiter.api.Test;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+
+/**
+ * 영속성 컨텍스트에 회원 10만 건을 올려두고 flush 시간과 힙 사용량을 잰다.
+ * ./gradlew benchmark 와 ./gradlew benchmark -Penhance 결과를 비교한다 (enhanced 컬럼).
+ *
+ * 결과: build/benchmark/flush.csv (실행마다 줄이 추가된다)
+ */
+class FlushBenchmark extends DatabaseBenchmark {
+
+    @PersistenceContext EntityManager em;
+
+    @Test
+    void flushManagedMembers() {
+        long rows = Long.getLong("bench.rows", 100_000);
+        int iterations = Integer.getInteger("bench.iterations", 10);
+        loadMembers(100, rows);
+        boolean enhanced = SelfDirtinessTracker.class.isAssignableFrom(Member.class);
+
+        BenchmarkResult csv = new BenchmarkResult(getClass());
+        transactionTemplate.executeWithoutResult(status -> {
+            long heapBefore = usedHeap();
+            List<Member> members = em.createQuery("select m from Member m", Member.class).getResultList();
+            long heapAfter = usedHeap();
+
+            BenchmarkSupport.Measurement clean = BenchmarkSupport.measure(2, iterations, 60_000, () -> {
+                em.flush();
+                return members.size();
+            });
+            // 1% 수정
+            BenchmarkSupport.Measurement dirty = BenchmarkSupport.measure(2, iterations, 60_000, () -> {
+                for (int i = 0; i < members.size(); i += 100) {
+                    Member m = members.get(i);
+                    m.setAge(m.getAge() + 1);
+                }
+                em.flush();
+                return members.size() / 100;
+            });
+
+            double heapMb = (heapAfter - heapBefore) / 1024.0 / 1024.0;
+            csv.row("%s,%d,flush-unchanged,%.3f,%.1f", enhanced, rows, clean.msPerRun, heapMb);
+            csv.row("%s,%d,flush-1pct-changed,%.3f,%.1f", enhanced, rows, dirty.msPerRun, heapMb);
+            status.setRollbackOnly();
+        });
+        csv.append("flush.csv", "enhanced,rows,operation,msPerFlush,persistenceContextHeapMb");
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
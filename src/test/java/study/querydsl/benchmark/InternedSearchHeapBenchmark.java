@@ -0,0 +1,50 @@
+package study.querydsl.benchmark;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+import org.springframework.beans.factory.annotation.Autowired;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberRepository;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * search() 와 searchInterned() 결과 리스트가 붙잡고 있는 힙 크기(JOL 로 객체 그래프 전체를 잰 retained size).
+ * 팀 수가 적을수록(teamName 반복이 많을수록) 차이가 크다.
+ *
+ * 결과: build/benchmark/interned-search-heap.csv
+ */
+class InternedSearchHeapBenchmark extends DatabaseBenchmark {
+
+    @Autowired MemberRepository memberRepository;
+
+    @Test
+    void retainedSize() {
+        long rows = Long.getLong("bench.rows", 1_000_000);
+        BenchmarkResult csv = new BenchmarkResult(getClass());
+        for (long teams : BenchmarkSupport.longList("bench.teams", "2,100")) {
+            loadMembers((int) teams, rows);
+            MemberSearchCondition all = new MemberSearchCondition();
+
+            long plainStart = System.nanoTime();
+            List<MemberTeamDto> plain = memberRepository.search(all);
+            double plainMs = (System.nanoTime() - plainStart) / 1e6;
+            long plainBytes = GraphLayout.parseInstance(plain).totalSize();
+            plain = null;
+
+            long internedStart = System.nanoTime();
+            List<MemberTeamDto> interned = memberRepository.searchInterned(all);
+            double internedMs = (System.nanoTime() - internedStart) / 1e6;
+            long internedBytes = GraphLayout.parseInstance(interned).totalSize();
+
+            assertThat(interned).hasSize((int) rows);
+            assertThat(internedBytes).isLessThan(plainBytes);
+            csv.row("%d,%d,search,%d,%.1f", rows, teams, plainBytes, plainMs);
+            csv.row("%d,%d,searchInterned,%d,%.1f", rows, teams, internedBytes, internedMs);
+        }
+        csv.write("interned-search-heap.csv", "rows,teams,method,retainedBytes,queryMs");
+    }
+}
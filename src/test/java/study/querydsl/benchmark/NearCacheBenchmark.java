@@ -0,0 +1,121 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.cache.MemberNearCache;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 핫 키가 몰리는(zipf) id 단건 조회: near-cache 를 거치는 findDtoById 와 매번 DB 에 가는 같은 쿼리 비교.
+ * miss-ratio 만큼은 없는 id 를 섞는다 (negative 캐시). 캐시 크기는 bench.cacheBytes 로 일부러 작게 잡아 축출이 일어나게 한다.
+ * -Dbench.validateVersion=true 면 캐시 적중마다 version 확인 쿼리가 붙는다.
+ *
+ * 결과: build/benchmark/near-cache.csv
+ */
+@SpringBootTest(properties = {
+        "member.near-cache.enabled=true",
+        "member.near-cache.max-bytes=${bench.cacheBytes:4194304}",
+        "member.near-cache.validate-version=${bench.validateVersion:false}"})
+class NearCacheBenchmark extends DatabaseBenchmark {
+
+    @Autowired JPAQueryFactory queryFactory;
+    @Autowired MemberRepository memberRepository;
+    @Autowired MemberNearCache nearCache;
+    @Autowired MeterRegistry meterRegistry;
+    @Value("${member.near-cache.validate-version}") boolean validateVersion;
+    @Value("${member.near-cache.max-bytes}") long cacheBytes;
+
+    @Test
+    void skewedFindById() {
+        int teams = 100;
+        long rows = Long.getLong("bench.rows", 1_000_000);
+        int lookups = Integer.getInteger("bench.lookups", 50_000);
+        double missRatio = Double.parseDouble(System.getProperty("bench.missRatio", "0.1"));
+        BenchmarkResult csv = new BenchmarkResult(getClass());
+
+        loadMembers(teams, rows);
+        long firstMemberId = teams + 1;
+
+        for (String s : System.getProperty("bench.skews", "0.8,1.0,1.2").split(",")) {
+            double skew = Double.parseDouble(s.trim());
+            long[] ids = zipfIds(firstMemberId, rows, lookups, skew, missRatio);
+
+            BenchmarkSupport.Measurement direct = BenchmarkSupport.measure(1, 3, 120_000, () -> {
+                long found = 0;
+                for (long id : ids) {
+                    if (queryFactory.select(new QMemberTeamDto(member.id, member.username, member.age, team.id, team.name))
+                            .from(member)
+                            .leftJoin(member.team, team)
+                            .where(member.id.eq(id))
+                            .fetchOne() != null) found++;
+                }
+                return found;
+            });
+
+            nearCache.invalidateAll();
+            double hitsBefore = cacheGets("hit");
+            double missesBefore = cacheGets("miss");
+            double evictionsBefore = meterRegistry.get("cache.evictions").tag("cache", "member.near-cache").functionCounter().count();
+            BenchmarkSupport.Measurement cached = BenchmarkSupport.measure(0, 1, 120_000, () -> {
+                long found = 0;
+                for (long id : ids) {
+                    if (memberRepository.findDtoById(id).isPresent()) found++;
+                }
+                return found;
+            });
+            double hits = cacheGets("hit") - hitsBefore;
+            double misses = cacheGets("miss") - missesBefore;
+            double evictions = meterRegistry.get("cache.evictions").tag("cache", "member.near-cache").functionCounter().count() - evictionsBefore;
+
+            assertThat(cached.resultRows).isEqualTo(direct.resultRows);
+            csv.row("%d,%d,%.2f,%.2f,direct-query,%.4f,%d,,,,",
+                    rows, lookups, skew, missRatio, direct.msPerRun / lookups, direct.resultRows);
+            csv.row("%d,%d,%.2f,%.2f,%s,%.4f,%d,%.4f,%.0f,%d,%d",
+                    rows, lookups, skew, missRatio, validateVersion ? "near-cache+version" : "near-cache",
+                    cached.msPerRun / lookups, cached.resultRows, hits / (hits + misses), evictions,
+                    nearCache.estimatedSize(), cacheBytes);
+        }
+        csv.write("near-cache.csv",
+                "rows,lookups,skew,missRatio,method,msPerLookup,found,hitRatio,evictions,cachedEntries,cacheBytes");
+    }
+
+    private double cacheGets(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", "member.near-cache").tag("result", result).functionCounter().count();
+    }
+
+    /* 순위 k 의 id 가 1/k^skew 비율로 나온다. 순위는 id 를 섞어서 정하고, missRatio 만큼은 없는 id */
+    private static long[] zipfIds(long firstId, long rows, int lookups, double skew, double missRatio) {
+        int n = (int) rows;
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1 / Math.pow(k + 1, skew);
+            cdf[k] = sum;
+        }
+        Random random = new Random(42);
+        long[] ids = new long[lookups];
+        for (int i = 0; i < lookups; i++) {
+            if (random.nextDouble() < missRatio) {
+                ids[i] = firstId + rows + random.nextInt(Integer.MAX_VALUE);
+                continue;
+            }
+            int rank = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+            if (rank < 0) rank = Math.min(-rank - 1, n - 1);
+            // 순위 -> id 는 곱셈 해시로 흩는다 (핫 키가 앞쪽 id 에 몰리지 않게)
+            ids[i] = firstId + Math.floorMod(rank * 0x9E3779B97F4A7C15L, rows);
+        }
+        return ids;
+    }
+}
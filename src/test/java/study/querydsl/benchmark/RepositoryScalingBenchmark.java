@@ -0,0 +1,159 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.QMember;
+import study.querydsl.repository.MemberJpaReposiotory;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.support.MemberBulkLoader.TeamDistribution;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 데이터 건수/팀 분포별로 리포지토리 쿼리들의 ms/query, rows scanned를 측정한다.
+ * ./gradlew benchmark --tests '*RepositoryScalingBenchmark' -Dbench.sizes=10000,100000,1000000,10000000
+ *
+ * 결과: build/benchmark/scaling.csv
+ * exponent는 직전 크기 대비 log(ms 비율)/log(건수 비율). 1보다 확실히 크면 super-linear.
+ * rowsScanned 는 shape 가 실제로 실행한 SQL(SqlRecorder)과 바인딩 값으로 EXPLAIN ANALYZE 한 결과다.
+ */
+class RepositoryScalingBenchmark extends DatabaseBenchmark {
+
+    @Autowired JPAQueryFactory queryFactory;
+    @Autowired MemberRepository memberRepository;
+    @Autowired MemberJpaReposiotory memberJpaReposiotory;
+
+    @Test
+    void scaling() {
+        List<Long> sizes = BenchmarkSupport.longList("bench.sizes", "10000,100000,1000000");
+        int teams = Integer.getInteger("bench.teams", 100);
+        int iterations = Integer.getInteger("bench.iterations", 10);
+        long maxMillis = Long.getLong("bench.maxMillisPerShape", 30_000);
+
+        BenchmarkResult csv = new BenchmarkResult(getClass());
+        for (TeamDistribution distribution : TeamDistribution.values()) {
+            Map<String, double[]> previous = new LinkedHashMap<>();
+            for (long size : sizes) {
+                loadMembers(teams, size, distribution);
+
+                for (Shape shape : shapes()) {
+                    BenchmarkSupport.Measurement m = BenchmarkSupport.measure(2, iterations, maxMillis, shape.work);
+                    SqlRecorder.Statement explained = shape.explained(SqlRecorder.record(shape.work::getAsLong));
+                    long scanned = BenchmarkSupport.rowsScanned(jdbcTemplate, explained.sql, explained.parameters);
+
+                    double[] prev = previous.get(shape.name);
+                    String exponent = prev == null ? ""
+                            : String.format(Locale.ROOT, "%.2f", Math.log(m.msPerRun / prev[1]) / Math.log(size / prev[0]));
+                    previous.put(shape.name, new double[]{size, m.msPerRun});
+
+                    csv.row("%s,%d,%s,%.3f,%d,%d,%d,%s",
+                            distribution, size, shape.name, m.msPerRun, m.runs, scanned, m.resultRows, exponent);
+                }
+            }
+        }
+        csv.write("scaling.csv", "distribution,rows,shape,msPerQuery,runs,rowsScanned,resultRows,exponent");
+    }
+
+    private List<Shape> shapes() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("team1");
+        condition.setAgeGoe(20);
+        condition.setAgeLoe(40);
+
+        MemberSearchCondition ageOnly = new MemberSearchCondition();
+        ageOnly.setAgeGoe(20);
+        ageOnly.setAgeLoe(40);
+
+        QMember memberSub = new QMember("memberSub");
+        List<Shape> shapes = new ArrayList<>();
+
+        shapes.add(new Shape("search",
+                () -> memberRepository.search(condition).size()));
+
+        shapes.add(new Shape("searchMember",
+                () -> memberJpaReposiotory.searchMember(condition).size()));
+
+        // 내용 쿼리가 아니라 count 쿼리의 실행 계획을 본다
+        shapes.add(new Shape("searchPageComplex",
+                () -> memberRepository.searchPageComplex(ageOnly, PageRequest.of(0, 20)).getTotalElements(),
+                sql -> sql.contains("count(")));
+
+        shapes.add(new Shape("groupByTeamAvgAge",
+                () -> queryFactory.select(team.name, member.age.avg())
+                        .from(member)
+                        .join(member.team, team)
+                        .groupBy(team.name)
+                        .fetch().size()));
+
+        shapes.add(new Shape("subQuery",
+                () -> queryFactory.selectFrom(member)
+                        .where(member.age.eq(JPAExpressions.select(memberSub.age.max()).from(memberSub)))
+                        .fetch().size()));
+
+        shapes.add(new Shape("subQueryIn",
+                () -> queryFactory.selectFrom(member)
+                        .where(member.age.in(JPAExpressions.select(memberSub.age).from(memberSub).where(memberSub.age.gt(10))))
+                        .fetch().size()));
+
+        shapes.add(new Shape("selectSubQuery",
+                () -> queryFactory.select(member.username, JPAExpressions.select(memberSub.age.avg()).from(memberSub))
+                        .from(member)
+                        .fetch().size()));
+
+        shapes.add(new Shape("count",
+                () -> queryFactory.select(member.count()).from(member).fetchOne()));
+
+        return shapes;
+    }
+
+    /* 실행된 DataSource 의 SQL 을 기록한다 (EXPLAIN ANALYZE 를 hibernate 가 만든 SQL 그대로 돌리려고) */
+    @TestConfiguration
+    static class RecordingDataSource {
+        @Bean
+        static BeanPostProcessor sqlRecordingDataSource() {
+            return SqlRecorder.dataSourceWrapper();
+        }
+    }
+
+    static class Shape {
+        final String name;
+        final LongSupplier work;
+        /* 여러 문장을 실행하는 shape 에서 EXPLAIN ANALYZE 할 문장. 맞는 것 중 마지막 */
+        final Predicate<String> explain;
+
+        Shape(String name, LongSupplier work) {
+            this(name, work, sql -> true);
+        }
+
+        Shape(String name, LongSupplier work, Predicate<String> explain) {
+            this.name = name;
+            this.work = work;
+            this.explain = explain;
+        }
+
+        SqlRecorder.Statement explained(List<SqlRecorder.Statement> executed) {
+            SqlRecorder.Statement match = null;
+            for (SqlRecorder.Statement statement : executed) {
+                if (explain.test(statement.sql)) match = statement;
+            }
+            if (match == null) throw new IllegalStateException(name + " executed no matching statement: " + executed);
+            return match;
+        }
+    }
+}
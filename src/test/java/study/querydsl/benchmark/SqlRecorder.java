@@ -0,0 +1,102 @@
+package study.querydsl.benchmark;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * JDBC 로 실제 실행된 PreparedStatement 의 SQL 과 바인딩 값을 기록한다.
+ * 벤치마크의 EXPLAIN ANALYZE 를 손으로 쓴 SQL 이 아니라 애플리케이션(hibernate)이 만든 SQL 그대로 돌리려고 쓴다.
+ *
+ * 테스트 컨텍스트에 dataSourceWrapper() 를 빈으로 등록하고, record(work) 동안 같은 스레드에서 실행된 문장만 모은다.
+ */
+public final class SqlRecorder {
+
+    private static final ThreadLocal<List<Statement>> RECORDING = new ThreadLocal<>();
+
+    private SqlRecorder() {
+    }
+
+    public static BeanPostProcessor dataSourceWrapper() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource ? wrap((DataSource) bean) : bean;
+            }
+        };
+    }
+
+    public static List<Statement> record(Runnable work) {
+        List<Statement> executed = new ArrayList<>();
+        RECORDING.set(executed);
+        try {
+            work.run();
+        } finally {
+            RECORDING.remove();
+        }
+        return executed;
+    }
+
+    static DataSource wrap(DataSource dataSource) {
+        return proxy(DataSource.class, dataSource, (method, args, result) ->
+                result instanceof Connection ? proxy(Connection.class, (Connection) result, SqlRecorder::wrapStatement) : result);
+    }
+
+    private static Object wrapStatement(Method method, Object[] args, Object result) {
+        if (!(result instanceof PreparedStatement) || !method.getName().equals("prepareStatement")) return result;
+        String sql = (String) args[0];
+        TreeMap<Integer, Object> parameters = new TreeMap<>();
+        return proxy(PreparedStatement.class, (PreparedStatement) result, (m, a, r) -> {
+            String name = m.getName();
+            if (name.startsWith("set") && a != null && a.length >= 2 && a[0] instanceof Integer) {
+                parameters.put((Integer) a[0], name.equals("setNull") ? null : a[1]);
+            } else if (name.equals("clearParameters")) {
+                parameters.clear();
+            } else if (name.startsWith("execute") && (a == null || a.length == 0) && RECORDING.get() != null) {
+                RECORDING.get().add(new Statement(sql, new ArrayList<>(parameters.values())));
+            }
+            return r;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, AfterCall afterCall) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            try {
+                return afterCall.apply(method, args, method.invoke(target, args));
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        };
+        return (T) Proxy.newProxyInstance(SqlRecorder.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private interface AfterCall {
+        Object apply(Method method, Object[] args, Object result) throws Exception;
+    }
+
+    /* 실행된 SQL 과 인덱스 순서대로의 바인딩 값 */
+    public static final class Statement {
+        public final String sql;
+        public final List<Object> parameters;
+
+        Statement(String sql, List<Object> parameters) {
+            this.sql = sql;
+            this.parameters = parameters;
+        }
+
+        @Override
+        public String toString() {
+            return sql + " " + parameters;
+        }
+    }
+}
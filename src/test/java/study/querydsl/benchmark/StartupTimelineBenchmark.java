@@ -0,0 +1,62 @@
+package study.querydsl.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.querydsl.QuerydslApplication;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 기본 기동과 faststart 프로필 기동의 단계별 소요 시간 (/actuator/startup 과 같은 타임라인).
+ * 단계 이름별로 합산해서 회귀를 비교할 수 있게 CSV로 남긴다.
+ *
+ * 결과: build/benchmark/startup.csv
+ */
+@Tag("benchmark")
+class StartupTimelineBenchmark {
+
+    @Test
+    void startupTimeline() {
+        int runs = Integer.getInteger("bench.iterations", 3);
+        BenchmarkResult csv = new BenchmarkResult(getClass());
+        for (String profiles : new String[]{"bench", "bench,faststart"}) {
+            for (int run = 0; run < runs; run++) {
+                BufferingApplicationStartup startup = new BufferingApplicationStartup(4096);
+                long start = System.nanoTime();
+                ConfigurableApplicationContext context = new SpringApplicationBuilder(QuerydslApplication.class)
+                        .applicationStartup(startup)
+                        .profiles(profiles.split(","))
+                        .properties("server.port=0")
+                        .run();
+                double readyMs = (System.nanoTime() - start) / 1e6;
+                context.close();
+
+                String mode = profiles.replace(',', '+');
+                csv.row("%s,%d,total,1,%.1f", mode, run, readyMs);
+                stepTotals(startup.getBufferedTimeline()).forEach((step, ms) ->
+                        csv.row("%s,%d,%s,%d,%.1f", mode, run, step, ms.count, ms.millis));
+            }
+        }
+        csv.write("startup.csv", "mode,run,step,count,totalMs");
+    }
+
+    private static Map<String, StepTotal> stepTotals(StartupTimeline timeline) {
+        Map<String, StepTotal> totals = new TreeMap<>();
+        for (StartupTimeline.TimelineEvent event : timeline.getEvents()) {
+            StepTotal total = totals.computeIfAbsent(event.getStartupStep().getName(), name -> new StepTotal());
+            total.count++;
+            total.millis += event.getDuration().toNanos() / 1e6;
+        }
+        return totals;
+    }
+
+    private static final class StepTotal {
+        int count;
+        double millis;
+    }
+}
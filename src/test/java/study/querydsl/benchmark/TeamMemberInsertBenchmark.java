@@ -0,0 +1,61 @@
+package study.querydsl.benchmark;
+
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.Test;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 회원이 아주 많은 팀에 회원을 추가할 때의 insert 처리량.
+ * 기존 동작(Team.members 전체 로딩)과 로딩 없이 주인 쪽만 쓰는 현재 동작을 비교한다.
+ *
+ * 결과: build/benchmark/team-member-insert.csv
+ */
+class TeamMemberInsertBenchmark extends DatabaseBenchmark {
+
+    @PersistenceContext EntityManager em;
+
+    @Test
+    void insertIntoLargeTeam() {
+        List<Long> teamSizes = BenchmarkSupport.longList("bench.teamSizes", "10000,100000,500000");
+        int inserts = Integer.getInteger("bench.inserts", 1_000);
+
+        BenchmarkResult csv = new BenchmarkResult(getClass());
+        for (long teamSize : teamSizes) {
+            for (boolean loadCollection : new boolean[]{true, false}) {
+                loadMembers(1, teamSize);
+                Long teamId = jdbcTemplate.queryForObject("select min(member_id) from team", Long.class);
+
+                System.gc();
+                long heapBefore = usedHeap();
+                long start = System.nanoTime();
+                long heapAfter = transactionTemplate.execute(status -> {
+                    Team team = em.find(Team.class, teamId);
+                    // 예전 changeTeam은 team.getMembers().add()로 컬렉션 전체를 초기화했다
+                    if (loadCollection) Hibernate.initialize(team.getMembers());
+                    for (int i = 0; i < inserts; i++) em.persist(new Member("new" + i, i % 100, team));
+                    em.flush();
+                    assertThat(Hibernate.isInitialized(team.getMembers())).isEqualTo(loadCollection);
+                    return usedHeap();
+                });
+                double seconds = (System.nanoTime() - start) / 1e9;
+
+                csv.row("%d,%s,%d,%.1f,%d",
+                        teamSize, loadCollection ? "initialize-collection" : "owning-side-only",
+                        inserts, inserts / seconds, (heapAfter - heapBefore) / (1024 * 1024));
+            }
+        }
+        csv.write("team-member-insert.csv", "teamSize,mode,inserts,insertsPerSec,heapDeltaMb");
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
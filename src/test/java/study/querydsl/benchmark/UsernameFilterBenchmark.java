@@ -0,0 +1,86 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.filter.CountingBloomFilter;
+import study.querydsl.repository.filter.UsernameBloomFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 대부분 없는 username 을 찾는 조회(중복 확인, 로그인): 블룸 필터 pre-check 가 있는 findByUsername 과 바로 쿼리하는 것 비교.
+ * 오탐률(필터를 통과했지만 DB 에 없던 비율)과 DB 에 안 간 조회 수도 같이 남긴다.
+ *
+ * 결과: build/benchmark/username-filter.csv
+ */
+@SpringBootTest(properties = "member.username-filter.enabled=true")
+class UsernameFilterBenchmark extends DatabaseBenchmark {
+
+    @Autowired JPAQueryFactory queryFactory;
+    @Autowired MemberRepository memberRepository;
+    @Autowired UsernameBloomFilter usernameFilter;
+
+    @Test
+    void missHeavyLookups() {
+        long rows = Long.getLong("bench.rows", 1_000_000);
+        int lookups = Integer.getInteger("bench.lookups", 20_000);
+        BenchmarkResult csv = new BenchmarkResult(getClass());
+
+        loadMembers(100, rows);
+        long rebuildStart = System.nanoTime();
+        usernameFilter.rebuild(); // JDBC 로 넣은 데이터라 다시 만든다
+        double rebuildMs = (System.nanoTime() - rebuildStart) / 1e6;
+        CountingBloomFilter snapshot = usernameFilter.snapshot();
+
+        for (String ratio : System.getProperty("bench.missRatios", "0.5,0.9,0.99").split(",")) {
+            double missRatio = Double.parseDouble(ratio.trim());
+            List<String> usernames = usernames(rows, lookups, missRatio);
+
+            BenchmarkSupport.Measurement direct = BenchmarkSupport.measure(1, 3, 120_000, () -> {
+                long found = 0;
+                for (String username : usernames) found += queryFactory.selectFrom(member).where(member.username.eq(username)).fetch().size();
+                return found;
+            });
+
+            long missesBefore = usernameFilter.definiteMisses();
+            long falsePositivesBefore = usernameFilter.falsePositives();
+            BenchmarkSupport.Measurement filtered = BenchmarkSupport.measure(0, 1, 120_000, () -> {
+                long found = 0;
+                for (String username : usernames) found += memberRepository.findByUsername(username).size();
+                return found;
+            });
+            long avoided = usernameFilter.definiteMisses() - missesBefore;
+            long falsePositives = usernameFilter.falsePositives() - falsePositivesBefore;
+            double observedFpp = avoided + falsePositives == 0 ? 0 : (double) falsePositives / (avoided + falsePositives);
+
+            assertThat(filtered.resultRows).isEqualTo(direct.resultRows);
+            csv.row("%d,%d,%.2f,direct-query,%.4f,%d,0,%d,,,,",
+                    rows, lookups, missRatio, direct.msPerRun / lookups, lookups, direct.resultRows);
+            csv.row("%d,%d,%.2f,bloom-filter,%.4f,%d,%d,%d,%.5f,%.5f,%d,%.1f",
+                    rows, lookups, missRatio, filtered.msPerRun / lookups, lookups - avoided, avoided, filtered.resultRows,
+                    observedFpp, snapshot.expectedFpp(), snapshot.memoryBytes(), rebuildMs);
+        }
+        csv.write("username-filter.csv",
+                "rows,lookups,missRatio,method,msPerLookup,dbQueries,dbQueriesAvoided,found,observedFpp,expectedFpp,filterBytes,rebuildMs");
+    }
+
+    /* missRatio 만큼은 없는 이름, 나머지는 있는 이름 */
+    private static List<String> usernames(long rows, int lookups, double missRatio) {
+        Random random = new Random(42);
+        List<String> usernames = new ArrayList<>(lookups);
+        for (int i = 0; i < lookups; i++) {
+            usernames.add(random.nextDouble() < missRatio
+                    ? "nobody" + random.nextInt(Integer.MAX_VALUE)
+                    : "member" + (long) (random.nextDouble() * rows));
+        }
+        return usernames;
+    }
+}
@@ -0,0 +1,56 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import study.querydsl.entity.Member;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 대소문자 무시 username 조회: lower(username) = ? 와 인덱스가 있는 username_lower = ? 비교 (기본 100만 건).
+ *
+ * 결과: build/benchmark/username-ignore-case.csv, build/benchmark/username-ignore-case-plans.txt
+ */
+class UsernameIgnoreCaseBenchmark extends DatabaseBenchmark {
+
+    static final String FUNCTION_SQL = "select m.member_id from member m where lower(m.username) = 'member77777'";
+    static final String COLUMN_SQL = "select m.member_id from member m where m.username_lower = 'member77777'";
+
+    @Autowired JPAQueryFactory queryFactory;
+
+    @Test
+    void ignoreCaseLookup() {
+        long rows = Long.getLong("bench.rows", 1_000_000);
+        int iterations = Integer.getInteger("bench.iterations", 50);
+        loadMembers(100, rows);
+        String username = "MEMBER" + (rows / 2);
+
+        BenchmarkSupport.Measurement function = BenchmarkSupport.measure(3, iterations, 60_000, () ->
+                queryFactory.selectFrom(member)
+                        .where(Expressions.stringTemplate("function('lower', {0})", member.username)
+                                .eq(username.toLowerCase(Locale.ROOT)))
+                        .fetch().size());
+        BenchmarkSupport.Measurement column = BenchmarkSupport.measure(3, iterations, 60_000, () ->
+                queryFactory.selectFrom(member)
+                        .where(member.usernameLower.eq(Member.normalizeUsername(username)))
+                        .fetch().size());
+
+        BenchmarkResult csv = new BenchmarkResult(getClass());
+        String line = "%d,%s,%.3f,%d,%d";
+        csv.row(line, rows, "function-lower", function.msPerRun, function.runs, rowsScanned(FUNCTION_SQL));
+        csv.row(line, rows, "username_lower-index", column.msPerRun, column.runs, rowsScanned(COLUMN_SQL));
+        csv.write("username-ignore-case.csv", "rows,query,msPerQuery,runs,rowsScanned");
+
+        List<String> plans = new ArrayList<>();
+        plans.add("-- lower(username)\n" + plan(FUNCTION_SQL));
+        plans.add("-- username_lower\n" + plan(COLUMN_SQL));
+        BenchmarkSupport.writeCsv(new File("build/benchmark/username-ignore-case-plans.txt"), "-- EXPLAIN ANALYZE, rows=" + rows, plans);
+    }
+}
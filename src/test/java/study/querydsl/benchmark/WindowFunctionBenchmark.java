@@ -0,0 +1,82 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.entity.QMember;
+import study.querydsl.repository.sql.MemberWindowRepository;
+
+import java.util.function.LongSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * JPAExpressions 상관 서브쿼리(QuerydslBasicTest 의 subQuery, subQueryGoe, findUserDto3 형태)와
+ * querydsl-sql 윈도 함수/CTE(MemberWindowRepository) 비교. 두 쪽 결과 건수가 같은지도 확인한다.
+ *
+ * 결과: build/benchmark/window-function.csv
+ */
+class WindowFunctionBenchmark extends DatabaseBenchmark {
+
+    @Autowired JPAQueryFactory queryFactory;
+    @Autowired MemberWindowRepository windowRepository;
+
+    QMember memberSub = new QMember("memberSub");
+
+    @Test
+    void subqueryVersusWindow() {
+        int iterations = Integer.getInteger("bench.iterations", 10);
+        long teams = Long.getLong("bench.teams", 100);
+        BenchmarkResult csv = new BenchmarkResult(getClass());
+        for (long rows : BenchmarkSupport.longList("bench.sizes", "10000,100000")) {
+            loadMembers((int) teams, rows);
+
+            compare(csv, rows, teams, "oldest", iterations,
+                    () -> queryFactory.select(dto()).from(member).leftJoin(member.team, team)
+                            .where(member.age.eq(JPAExpressions.select(memberSub.age.max()).from(memberSub)))
+                            .fetch().size(),
+                    () -> windowRepository.oldestMembers().size());
+
+            compare(csv, rows, teams, "at-or-above-team-average", iterations,
+                    () -> queryFactory.select(dto()).from(member).join(member.team, team)
+                            .where(member.age.goe(JPAExpressions.select(memberSub.age.avg()).from(memberSub)
+                                    .where(memberSub.team.eq(member.team))))
+                            .fetch().size(),
+                    () -> windowRepository.atOrAboveTeamAverage().stream().filter(dto -> dto.getTeamId() != null).count());
+
+            // 팀별 상위 3명: 나보다 앞 순위인 팀원 수 < 3 (동점이면 id 순)
+            compare(csv, rows, teams, "top3-per-team", iterations,
+                    () -> queryFactory.select(dto()).from(member).join(member.team, team)
+                            .where(JPAExpressions.select(memberSub.count()).from(memberSub)
+                                    .where(memberSub.team.eq(member.team),
+                                            memberSub.age.gt(member.age)
+                                                    .or(memberSub.age.eq(member.age).and(memberSub.id.lt(member.id))))
+                                    .lt(3L))
+                            .fetch().size(),
+                    () -> windowRepository.topPerTeam(3).stream().filter(dto -> dto.getTeamId() != null).count());
+
+            compare(csv, rows, teams, "username-with-max-age", iterations,
+                    () -> queryFactory.select(member.username, JPAExpressions.select(memberSub.age.max()).from(memberSub))
+                            .from(member).fetch().size(),
+                    () -> windowRepository.usernameWithMaxAge().size());
+        }
+        csv.write("window-function.csv", "rows,teams,query,method,msPerQuery,runs,resultRows");
+    }
+
+    private void compare(BenchmarkResult csv, long rows, long teams, String query, int iterations,
+                         LongSupplier subquery, LongSupplier window) {
+        BenchmarkSupport.Measurement jpa = BenchmarkSupport.measure(1, iterations, 60_000, subquery);
+        BenchmarkSupport.Measurement sql = BenchmarkSupport.measure(1, iterations, 60_000, window);
+        assertThat(sql.resultRows).as(query).isEqualTo(jpa.resultRows);
+        csv.row("%d,%d,%s,jpa-subquery,%.3f,%d,%d", rows, teams, query, jpa.msPerRun, jpa.runs, jpa.resultRows);
+        csv.row("%d,%d,%s,sql-window,%.3f,%d,%d", rows, teams, query, sql.msPerRun, sql.runs, sql.resultRows);
+    }
+
+    private static QMemberTeamDto dto() {
+        return new QMemberTeamDto(member.id, member.username, member.age, team.id, team.name);
+    }
+}
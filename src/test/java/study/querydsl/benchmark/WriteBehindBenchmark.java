@@ -0,0 +1,77 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import study.querydsl.repository.writebehind.MemberAgeWriteBehindBuffer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 회원 age +1 을 요청마다 update 하는 경우와 write-behind 로 모아서 반영하는 경우의 초당 처리 건수.
+ * hot-members 가 작을수록 같은 행에 몰린다(행 락 경합).
+ *
+ * 결과: build/benchmark/write-behind.csv
+ */
+class WriteBehindBenchmark extends DatabaseBenchmark {
+
+    @Autowired JPAQueryFactory queryFactory;
+    @Autowired MemberAgeWriteBehindBuffer buffer;
+    @Autowired MeterRegistry meterRegistry;
+
+    @Test
+    void updatesPerSecond() throws Exception {
+        int members = Integer.getInteger("bench.members", 10_000);
+        int threads = Integer.getInteger("bench.threads", 8);
+        long seconds = Long.getLong("bench.seconds", 10);
+        loadMembers(10, members);
+        long firstId = jdbcTemplate.queryForObject("select min(member_id) from member", Long.class);
+
+        BenchmarkResult csv = new BenchmarkResult(getClass());
+        for (long hot : BenchmarkSupport.longList("bench.hotMembers", "10,1000," + members)) {
+            long direct = run(threads, seconds, hot, firstId, id -> transactionTemplate.executeWithoutResult(status ->
+                    queryFactory.update(member).set(member.age, member.age.add(1)).where(member.id.eq(id)).execute()));
+            row(csv, "direct", threads, hot, direct, seconds, direct);
+
+            long statementsBefore = statements();
+            long buffered = run(threads, seconds, hot, firstId, id -> buffer.addAge(id, 1));
+            buffer.flush();
+            row(csv, "write-behind", threads, hot, buffered, seconds, statements() - statementsBefore);
+        }
+        csv.write("write-behind.csv", "mode,threads,hotMembers,updates,updatesPerSec,statements");
+    }
+
+    private long run(int threads, long seconds, long hot, long firstId, LongConsumer update) throws InterruptedException {
+        LongAdder done = new LongAdder();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    update.accept(firstId + random.nextLong(hot));
+                    done.increment();
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(seconds + 60, TimeUnit.SECONDS);
+        return done.sum();
+    }
+
+    private long statements() {
+        return (long) meterRegistry.get("member.write-behind.statements").counter().count();
+    }
+
+    private static void row(BenchmarkResult csv, String mode, int threads, long hot, long updates, long seconds, long statements) {
+        csv.row("%s,%d,%d,%d,%.0f,%d", mode, threads, hot, updates, (double) updates / seconds, statements);
+    }
+}
@@ -0,0 +1,38 @@
+package study.querydsl.entity;
+
+import org.hibernate.engine.spi.SelfDirtinessTracker;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * -Penhance 로 빌드했을 때 lombok 접근자와 querydsl Q타입이 향상된 엔티티와 같이 동작하는지 확인한다.
+ * 향상 없이 빌드하면 건너뛴다.
+ */
+class MemberEnhancementTest {
+
+    @Test
+    void lombokSettersAreDirtyTracked() {
+        Member member = new Member("member1", 10);
+        assumeTrue(member instanceof SelfDirtinessTracker, "built without -Penhance");
+
+        SelfDirtinessTracker tracker = (SelfDirtinessTracker) member;
+        tracker.$$_hibernate_clearDirtyAttributes();
+        member.setAge(11);
+        assertThat(tracker.$$_hibernate_getDirtyAttributes()).containsExactly("age");
+
+        Team team = new Team("teamA");
+        member.changeTeam(team);
+        assertThat(tracker.$$_hibernate_getDirtyAttributes()).containsExactlyInAnyOrder("age", "team");
+        assertThat(member.getTeam()).isSameAs(team);
+        assertThat(team.getMembers()).containsExactly(member);
+    }
+
+    @Test
+    void querydslMetamodelIsUnaffected() {
+        assumeTrue(SelfDirtinessTracker.class.isAssignableFrom(Member.class), "built without -Penhance");
+        assertThat(QMember.member.username.getMetadata().getName()).isEqualTo("username");
+        assertThat(QMember.member.team.getType()).isEqualTo(Team.class);
+    }
+}
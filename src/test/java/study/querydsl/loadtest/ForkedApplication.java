@@ -0,0 +1,161 @@
+package study.querydsl.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import study.querydsl.QuerydslApplication;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 앱을 테스트와 같은 클래스패스로 새 JVM 에서 loadtest 프로필로 띄우고 HTTP 부하를 건다.
+ * 같은 JVM 에서 변형을 차례로 띄우면 뒤 변형이 앞 변형의 JIT/클래스 로딩을 물려받으므로, 기동 직후나 실행 방식 비교는 이걸 쓴다.
+ * 앱 로그는 logDir/<name>.log 에 남는다.
+ */
+final class ForkedApplication implements AutoCloseable {
+
+    final int port;
+    private final long startedNanos;
+    private final Process process;
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+    private ForkedApplication(int port, Process process, long startedNanos) {
+        this.port = port;
+        this.process = process;
+        this.startedNanos = startedNanos;
+    }
+
+    /* args 는 --key=value 형태의 스프링 프로퍼티. db 는 변형마다 따로 메모리 db 를 쓴다 */
+    static ForkedApplication start(String name, File logDir, String... args) throws IOException {
+        int port = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(QuerydslApplication.class.getName());
+        command.add("--spring.profiles.active=loadtest");
+        command.add("--server.port=" + port);
+        command.add("--spring.datasource.url=jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        command.add("--loadtest.seed.members=" + Long.getLong("loadtest.seed.members", 100_000));
+        command.addAll(List.of(args));
+        logDir.mkdirs();
+        long started = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(new File(logDir, name + ".log"))
+                .start();
+        return new ForkedApplication(port, process, started);
+    }
+
+    /* readiness 가 UP 이 될 때까지 기다리고, 프로세스 시작부터 걸린 ms 를 돌려준다 */
+    long awaitReady() throws InterruptedException {
+        HttpRequest readiness = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/actuator/health/readiness"))
+                .timeout(Duration.ofSeconds(5)).GET().build();
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) throw new IllegalStateException("application exited with " + process.exitValue());
+            try {
+                if (client.send(readiness, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return (System.nanoTime() - startedNanos) / 1_000_000;
+                }
+            } catch (IOException e) {
+                // 아직 포트를 안 열었다
+            }
+            Thread.sleep(50);
+        }
+        throw new IllegalStateException("application on port " + port + " did not become ready");
+    }
+
+    /* concurrency 개의 클라이언트 스레드가 seconds 초 동안 mix 를 요청한다. 200 응답만 지연에 넣고 나머지는 errors */
+    Load drive(List<MemberSearchLoadTest.Target> mix, int concurrency, int seconds) throws InterruptedException {
+        Load load = new Load(seconds);
+        int totalWeight = mix.stream().mapToInt(t -> t.weight).sum();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            workers.execute(() -> {
+                while (System.nanoTime() < end) {
+                    MemberSearchLoadTest.Target target = pick(mix, totalWeight);
+                    HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + target.path))
+                            .timeout(Duration.ofSeconds(30)).GET().build();
+                    long sent = System.nanoTime();
+                    try {
+                        if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() != 200) {
+                            load.errors.increment();
+                            continue;
+                        }
+                        long micros = (System.nanoTime() - sent) / 1_000;
+                        load.perSecond[(int) Math.min(seconds - 1, (sent - start) / 1_000_000_000L)].recordValue(micros);
+                    } catch (IOException e) {
+                        load.errors.increment();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(seconds + 60, TimeUnit.SECONDS);
+        load.elapsedNanos = System.nanoTime() - start;
+        return load;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(30, TimeUnit.SECONDS)) process.destroyForcibly();
+    }
+
+    private static MemberSearchLoadTest.Target pick(List<MemberSearchLoadTest.Target> mix, int totalWeight) {
+        int r = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (MemberSearchLoadTest.Target target : mix) {
+            r -= target.weight;
+            if (r < 0) return target;
+        }
+        return mix.get(mix.size() - 1);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /* 초 단위 지연 히스토그램(마이크로초)과 실패 수 */
+    static final class Load {
+        final ConcurrentHistogram[] perSecond;
+        final LongAdder errors = new LongAdder();
+        long elapsedNanos;
+
+        Load(int seconds) {
+            perSecond = new ConcurrentHistogram[seconds];
+            for (int i = 0; i < seconds; i++) perSecond[i] = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3);
+        }
+
+        Histogram total(int fromSecond, int toSecond) {
+            Histogram total = new Histogram(3);
+            for (int i = fromSecond; i < Math.min(toSecond, perSecond.length); i++) total.add(perSecond[i]);
+            return total;
+        }
+
+        double throughputPerSec() {
+            return total(0, perSecond.length).getTotalCount() * 1e9 / elapsedNanos;
+        }
+    }
+}
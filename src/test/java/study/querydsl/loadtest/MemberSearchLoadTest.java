@@ -0,0 +1,210 @@
+package study.querydsl.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 회원 검색 API 부하 테스트. 기본 test 태스크에서는 빠지고 ./gradlew loadTest 로 실행한다.
+ *
+ * -Dloadtest.concurrency=16 -Dloadtest.durationSeconds=30 -Dloadtest.warmupSeconds=5
+ * -Dloadtest.seed.members=1000000 -Dloadtest.mix="/v2/members?size=20:3,/v3/members?teamName=team1:1"
+ * -Dloadtest.output=build/loadtest/result.json
+ * -Ploadtest.jdk=21 -Dapp.execution.virtual-threads=true 로 같은 부하를 가상 스레드에서 돌린다.
+ * 플랫폼/가상 스레드를 한 번에 비교하려면 VirtualThreadComparisonLoadTest.
+ * -Dmember.jdbc.bulkhead.enabled=false 로 bulkhead 없이 비교할 수 있다.
+ *
+ * report 의 timeline 에 측정 시작부터 초 단위 p50/p99 가 남는다.
+ * 검색 워밍업 유무의 배포 직후(첫 1분) 지연 비교는 앱을 새 JVM 으로 띄우는 WarmupFirstMinuteLoadTest 로 한다.
+ */
+@Tag("loadtest")
+@ActiveProfiles("loadtest")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class MemberSearchLoadTest {
+
+    static final String DEFAULT_MIX = String.join(",",
+            "/v1/members?teamName=team1&ageGoe=30&ageLoe=40:1",
+            "/v2/members?ageGoe=20&page=0&size=20:2",
+            "/v2/members?username=member77&page=0&size=20:1",
+            "/v3/members?teamName=team7&page=3&size=20:2",
+            "/v3/members?ageGoe=10&ageLoe=60&page=50&size=20:1");
+
+    @LocalServerPort int port;
+
+    @Test
+    void searchEndpoints() throws Exception {
+        int concurrency = Integer.getInteger("loadtest.concurrency", 16);
+        Duration warmup = Duration.ofSeconds(Long.getLong("loadtest.warmupSeconds", 5));
+        Duration duration = Duration.ofSeconds(Long.getLong("loadtest.durationSeconds", 30));
+        List<Target> mix = parseMix(System.getProperty("loadtest.mix", DEFAULT_MIX));
+        File output = new File(System.getProperty("loadtest.output", "build/loadtest/result.json"));
+
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newFixedThreadPool(concurrency))
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        run(client, mix, concurrency, warmup, null);
+        mix.forEach(Target::reset);
+        ConcurrentHistogram[] timeline = new ConcurrentHistogram[(int) duration.getSeconds() + 1];
+        for (int i = 0; i < timeline.length; i++) timeline[i] = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3);
+        long elapsedNanos = run(client, mix, concurrency, duration, timeline);
+
+        Map<String, Object> report = report(mix, concurrency, elapsedNanos);
+        report.put("timeline", timeline(timeline));
+        output.getParentFile().mkdirs();
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(output, report);
+        System.out.println("load test report written to " + output.getAbsolutePath());
+
+        assertThat(mix.stream().mapToLong(t -> t.histogram.getTotalCount()).sum()).isPositive();
+    }
+
+    /* timeline 이 null 이면 기록하지 않는 워밍업 */
+    private long run(HttpClient client, List<Target> mix, int concurrency, Duration duration, ConcurrentHistogram[] timeline) throws InterruptedException {
+        boolean record = timeline != null;
+        int totalWeight = mix.stream().mapToInt(t -> t.weight).sum();
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            workers.execute(() -> {
+                while (System.nanoTime() < end) {
+                    Target target = pick(mix, totalWeight);
+                    HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + target.path))
+                            .timeout(Duration.ofSeconds(30)).GET().build();
+                    long sent = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        long micros = (System.nanoTime() - sent) / 1_000;
+                        if (!record) continue;
+                        if (response.statusCode() == 200) {
+                            target.histogram.recordValue(micros);
+                            timeline[(int) Math.min(timeline.length - 1, (sent - start) / 1_000_000_000L)].recordValue(micros);
+                        } else {
+                            target.errors.increment();
+                        }
+                    } catch (Exception e) {
+                        if (record) target.errors.increment();
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(duration.getSeconds() + 60, TimeUnit.SECONDS);
+        return System.nanoTime() - start;
+    }
+
+    private Map<String, Object> report(List<Target> mix, int concurrency, long elapsedNanos) {
+        Histogram all = new Histogram(3);
+        List<Map<String, Object>> endpoints = new ArrayList<>();
+        for (Target target : mix) {
+            all.add(target.histogram);
+            Map<String, Object> endpoint = summary(target.histogram, elapsedNanos);
+            endpoint.put("path", target.path);
+            endpoint.put("weight", target.weight);
+            endpoint.put("errors", target.errors.sum());
+            endpoints.add(endpoint);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("timestamp", Instant.now().toString());
+        report.put("concurrency", concurrency);
+        report.put("virtualThreads", Boolean.getBoolean("app.execution.virtual-threads"));
+        report.put("searchWarmup", Boolean.parseBoolean(System.getProperty("loadtest.warmup", "true")));
+        report.put("bulkhead", Boolean.parseBoolean(System.getProperty("member.jdbc.bulkhead.enabled", "true")));
+        report.put("seedMembers", Long.getLong("loadtest.seed.members", 100_000));
+        report.put("total", summary(all, elapsedNanos));
+        report.put("endpoints", endpoints);
+        return report;
+    }
+
+    private static List<Map<String, Object>> timeline(ConcurrentHistogram[] seconds) {
+        List<Map<String, Object>> timeline = new ArrayList<>();
+        for (int i = 0; i < seconds.length; i++) {
+            Map<String, Object> second = new LinkedHashMap<>();
+            second.put("second", i);
+            second.put("requests", seconds[i].getTotalCount());
+            second.put("p50Micros", seconds[i].getValueAtPercentile(50));
+            second.put("p99Micros", seconds[i].getValueAtPercentile(99));
+            timeline.add(second);
+        }
+        return timeline;
+    }
+
+    private static Map<String, Object> summary(Histogram histogram, long elapsedNanos) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("requests", histogram.getTotalCount());
+        summary.put("throughputPerSec", histogram.getTotalCount() * 1e9 / elapsedNanos);
+        summary.put("p50Micros", histogram.getValueAtPercentile(50));
+        summary.put("p99Micros", histogram.getValueAtPercentile(99));
+        summary.put("p999Micros", histogram.getValueAtPercentile(99.9));
+        summary.put("maxMicros", histogram.getMaxValue());
+        return summary;
+    }
+
+    private static Target pick(List<Target> mix, int totalWeight) {
+        int r = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Target target : mix) {
+            r -= target.weight;
+            if (r < 0) return target;
+        }
+        return mix.get(mix.size() - 1);
+    }
+
+    /* "path:weight,path:weight" */
+    static List<Target> parseMix(String mix) {
+        List<Target> targets = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) continue;
+            int colon = trimmed.lastIndexOf(':');
+            targets.add(colon < 0
+                    ? new Target(trimmed, 1)
+                    : new Target(trimmed.substring(0, colon), Integer.parseInt(trimmed.substring(colon + 1))));
+        }
+        return targets;
+    }
+
+    static class Target {
+        final String path;
+        final int weight;
+        ConcurrentHistogram histogram = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3);
+        LongAdder errors = new LongAdder();
+
+        Target(String path, int weight) {
+            this.path = path;
+            this.weight = weight;
+        }
+
+        void reset() {
+            histogram = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3);
+            errors = new LongAdder();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package study.querydsl.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import study.querydsl.repository.MemberJpaReposiotory;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.capture.CapturedSearch;
+import study.querydsl.repository.capture.SearchCaptureCodec;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * SearchCaptureLog 로 캡처한 검색을 시드된 로컬 DB(loadtest 프로필)에 다시 실행하고 쿼리 모양(shape)별 지연 분포를 남긴다.
+ * 빌드끼리 result.json 을 비교해서 회귀를 찾는다.
+ *
+ * ./gradlew loadTest --tests '*SearchWorkloadReplayTest' -Dreplay.file=capture/member-search.bin
+ * -Dreplay.speed=1 (캡처 당시 간격 그대로, 2 면 두 배 빠르게, 0 이면 간격 없이) -Dreplay.concurrency=16
+ * -Dreplay.output=build/replay/result.json
+ *
+ * 지연은 예정된 시작 시각부터 잰다 (밀려서 늦게 시작한 시간도 포함).
+ */
+@Tag("loadtest")
+@ActiveProfiles("loadtest")
+@SpringBootTest
+class SearchWorkloadReplayTest {
+
+    @Autowired MemberRepository memberRepository;
+    @Autowired MemberJpaReposiotory memberJpaReposiotory;
+
+    @Test
+    void replay() throws Exception {
+        String path = System.getProperty("replay.file");
+        assumeTrue(path != null, "-Dreplay.file 이 없으면 건너뜀");
+        double speed = Double.parseDouble(System.getProperty("replay.speed", "1"));
+        int concurrency = Integer.getInteger("replay.concurrency", 16);
+        File output = new File(System.getProperty("replay.output", "build/replay/result.json"));
+
+        List<CapturedSearch> workload = read(new File(path));
+        assertThat(workload).isNotEmpty();
+
+        Map<String, Shape> shapes = new ConcurrentHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        long firstTimestamp = workload.get(0).getTimestampMillis();
+        long start = System.nanoTime();
+        for (CapturedSearch search : workload) {
+            long due = start + (speed <= 0 ? 0 : (long) ((search.getTimestampMillis() - firstTimestamp) * 1_000_000 / speed));
+            long wait = due - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+            Shape shape = shapes.computeIfAbsent(search.shape(), name -> new Shape());
+            shape.captured.recordValue(Math.max(1, search.getDurationMicros()));
+            long scheduled = Math.max(due, start);
+            executor.execute(() -> {
+                try {
+                    execute(search);
+                    shape.replayed.recordValue(Math.max(1, (System.nanoTime() - scheduled) / 1_000));
+                } catch (RuntimeException e) {
+                    shape.errors.increment();
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.MINUTES);
+        long elapsedNanos = System.nanoTime() - start;
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("timestamp", Instant.now().toString());
+        report.put("file", path);
+        report.put("requests", workload.size());
+        report.put("speed", speed);
+        report.put("concurrency", concurrency);
+        report.put("elapsedMillis", elapsedNanos / 1_000_000);
+        Map<String, Object> byShape = new TreeMap<>();
+        shapes.forEach((name, shape) -> byShape.put(name, shape.summary()));
+        report.put("shapes", byShape);
+
+        output.getParentFile().mkdirs();
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(output, report);
+        System.out.println("replay report written to " + output.getAbsolutePath());
+    }
+
+    private void execute(CapturedSearch search) {
+        switch (search.getOperation()) {
+            case "searchJpa":
+                memberJpaReposiotory.search(search.getCondition());
+                break;
+            case "search":
+                memberRepository.search(search.getCondition());
+                break;
+            case "searchPageSimple":
+                memberRepository.searchPageSimple(search.getCondition(), search.getPageable());
+                break;
+            case "searchPageComplex":
+                memberRepository.searchPageComplex(search.getCondition(), search.getPageable());
+                break;
+            case "searchPageDeferred":
+                memberRepository.searchPageDeferred(search.getCondition(), search.getPageable());
+                break;
+            case "searchInterned":
+                memberRepository.searchInterned(search.getCondition());
+                break;
+            default:
+                throw new IllegalArgumentException(search.getOperation());
+        }
+    }
+
+    private static List<CapturedSearch> read(File file) throws IOException {
+        List<CapturedSearch> workload = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            short version = SearchCaptureCodec.readHeader(in);
+            CapturedSearch search;
+            while ((search = SearchCaptureCodec.read(in, version)) != null) workload.add(search);
+        }
+        // writer 스레드는 끝난 순서로 쓰므로 시작 시각 순으로 정렬
+        workload.sort((a, b) -> Long.compare(a.getTimestampMillis(), b.getTimestampMillis()));
+        return workload;
+    }
+
+    static class Shape {
+        final ConcurrentHistogram captured = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(10), 3);
+        final ConcurrentHistogram replayed = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(10), 3);
+        final LongAdder errors = new LongAdder();
+
+        Map<String, Object> summary() {
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("requests", replayed.getTotalCount());
+            summary.put("errors", errors.sum());
+            summary.put("replayed", percentiles(replayed));
+            summary.put("captured", percentiles(captured));
+            return summary;
+        }
+
+        private static Map<String, Object> percentiles(Histogram histogram) {
+            Map<String, Object> percentiles = new LinkedHashMap<>();
+            percentiles.put("p50Micros", histogram.getValueAtPercentile(50));
+            percentiles.put("p99Micros", histogram.getValueAtPercentile(99));
+            percentiles.put("p999Micros", histogram.getValueAtPercentile(99.9));
+            percentiles.put("maxMicros", histogram.getMaxValue());
+            return percentiles;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package study.querydsl.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 톰캣 요청 처리를 플랫폼 스레드 풀과 가상 스레드(app.execution.virtual-threads)로 각각 띄워서 같은 부하를 건다.
+ * 가상 스레드는 JDK 21 이상이 필요하다: ./gradlew loadTest -Ploadtest.jdk=21 --tests '*VirtualThreadComparison*'
+ * (Gradle 은 지금 JDK 로 돌고 테스트 JVM 만 toolchain 의 JDK 21 로 뜬다)
+ *
+ * 동시 접속 수(loadtest.concurrencies)마다 loadtest.warmupSeconds 만큼 버린 뒤 loadtest.durationSeconds 동안 잰다.
+ * 결과: build/loadtest/virtual-threads.csv
+ */
+@Tag("loadtest")
+class VirtualThreadComparisonLoadTest {
+
+    @Test
+    void platformVersusVirtualThreads() throws Exception {
+        assumeTrue(Runtime.version().feature() >= 21, "virtual threads need JDK 21, run with -Ploadtest.jdk=21");
+        int warmupSeconds = Integer.getInteger("loadtest.warmupSeconds", 10);
+        int seconds = Integer.getInteger("loadtest.durationSeconds", 30);
+        String[] concurrencies = System.getProperty("loadtest.concurrencies", "16,64,256").split(",");
+        List<MemberSearchLoadTest.Target> mix = MemberSearchLoadTest.parseMix(
+                System.getProperty("loadtest.mix", MemberSearchLoadTest.DEFAULT_MIX));
+        File output = new File(System.getProperty("loadtest.output", "build/loadtest/virtual-threads.csv"));
+
+        List<String> lines = new ArrayList<>();
+        lines.add("threads,concurrency,requests,errors,throughputPerSec,p50Micros,p99Micros,p999Micros,maxMicros");
+        for (boolean virtual : new boolean[]{false, true}) {
+            String threads = virtual ? "virtual" : "platform";
+            try (ForkedApplication app = ForkedApplication.start("threads-" + threads, output.getParentFile(),
+                    "--app.execution.virtual-threads=" + virtual)) {
+                app.awaitReady();
+                for (String c : concurrencies) {
+                    int concurrency = Integer.parseInt(c.trim());
+                    app.drive(mix, concurrency, warmupSeconds);
+                    ForkedApplication.Load load = app.drive(mix, concurrency, seconds);
+                    Histogram total = load.total(0, seconds);
+                    assertThat(total.getTotalCount()).as("%s threads at concurrency %d", threads, concurrency).isPositive();
+                    lines.add(String.format(Locale.ROOT, "%s,%d,%d,%d,%.1f,%d,%d,%d,%d", threads, concurrency,
+                            total.getTotalCount(), load.errors.sum(), load.throughputPerSec(),
+                            total.getValueAtPercentile(50), total.getValueAtPercentile(99),
+                            total.getValueAtPercentile(99.9), total.getMaxValue()));
+                }
+            }
+        }
+        Files.write(output.toPath(), lines);
+        lines.forEach(System.out::println);
+        System.out.println("thread comparison written to " + output.getAbsolutePath());
+    }
+}
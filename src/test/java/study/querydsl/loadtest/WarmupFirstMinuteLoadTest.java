@@ -0,0 +1,59 @@
+package study.querydsl.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 검색 워밍업(member.warmup.enabled) 유무에 따른 배포 직후 첫 1분 지연 비교. ./gradlew loadTest --tests '*WarmupFirstMinute*'
+ *
+ * JIT, 플랜 캐시, 커넥션 풀이 비어 있는 상태를 재려고 변형마다 새 JVM 으로 앱을 띄운다 (ForkedApplication).
+ * readiness 가 UP 이 된 순간부터 loadtest.firstMinute.seconds 동안 MemberSearchLoadTest 와 같은 mix 로 부하를 건다.
+ *
+ * 결과: build/loadtest/first-minute.csv (변형별 초 단위 p50/p99, readiness 까지 걸린 시간)
+ */
+@Tag("loadtest")
+class WarmupFirstMinuteLoadTest {
+
+    @Test
+    void firstMinuteWithAndWithoutWarmup() throws Exception {
+        int seconds = Integer.getInteger("loadtest.firstMinute.seconds", 60);
+        int concurrency = Integer.getInteger("loadtest.concurrency", 16);
+        List<MemberSearchLoadTest.Target> mix = MemberSearchLoadTest.parseMix(
+                System.getProperty("loadtest.mix", MemberSearchLoadTest.DEFAULT_MIX));
+        File output = new File(System.getProperty("loadtest.output", "build/loadtest/first-minute.csv"));
+
+        List<String> lines = new ArrayList<>();
+        lines.add("warmup,readyMillis,second,requests,p50Micros,p99Micros");
+        List<String> summary = new ArrayList<>();
+        for (boolean warmup : new boolean[]{false, true}) {
+            try (ForkedApplication app = ForkedApplication.start("first-minute-warmup-" + warmup, output.getParentFile(),
+                    "--member.warmup.enabled=" + warmup)) {
+                long readyMillis = app.awaitReady();
+                ForkedApplication.Load load = app.drive(mix, concurrency, seconds);
+
+                for (int i = 0; i < seconds; i++) {
+                    lines.add(String.format(Locale.ROOT, "%s,%d,%d,%d,%d,%d", warmup, readyMillis, i, load.perSecond[i].getTotalCount(),
+                            load.perSecond[i].getValueAtPercentile(50), load.perSecond[i].getValueAtPercentile(99)));
+                }
+                Histogram first10 = load.total(0, 10);
+                Histogram all = load.total(0, seconds);
+                assertThat(all.getTotalCount()).as("requests with warmup=%s", warmup).isPositive();
+                summary.add(String.format(Locale.ROOT, "warmup=%s ready=%dms first10s p99=%dus first%ds p50=%dus p99=%dus errors=%d",
+                        warmup, readyMillis, first10.getValueAtPercentile(99), seconds,
+                        all.getValueAtPercentile(50), all.getValueAtPercentile(99), load.errors.sum()));
+            }
+        }
+        Files.write(output.toPath(), lines);
+        summary.forEach(System.out::println);
+        System.out.println("first-minute comparison written to " + output.getAbsolutePath());
+    }
+}
@@ -0,0 +1,108 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.capture.SearchCaptureLog;
+import study.querydsl.repository.support.JdbcBulkhead;
+import study.querydsl.repository.support.QueryDeadline;
+import study.querydsl.repository.support.QueryDeadlineExceededException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CoalescingMemberSearchTest {
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    MemberRepository memberRepository = mock(MemberRepository.class);
+    CoalescingMemberSearch memberSearch = new CoalescingMemberSearch(memberRepository, mock(MemberJpaReposiotory.class),
+            new JdbcBulkhead(registry, true, 10, 1000), mock(SearchCaptureLog.class), registry, true, 5000);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /* 짧은 예산의 리더가 마감으로 실패해도, 긴 예산으로 붙은 요청은 그 실패를 받지 않고 자기 예산으로 다시 실행한다 */
+    @Test
+    void followerWithLongerBudgetSurvivesLeaderDeadline() throws Exception {
+        MemberTeamDto found = new MemberTeamDto(1L, "member1", 10, 1L, "teamA");
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch followerWaiting = new CountDownLatch(1);
+        // DeadlineJPAQuery 처럼 실행하는 스레드의 마감을 본다: 리더(50ms)는 팔로워가 붙을 때까지 버티다 마감으로 실패한다
+        when(memberRepository.search(any())).thenAnswer(invocation -> {
+            executions.incrementAndGet();
+            QueryDeadline deadline = QueryDeadline.current().orElseThrow();
+            if (deadline.remainingMillis() < 1000) {
+                leaderStarted.countDown();
+                followerWaiting.await(5, TimeUnit.SECONDS);
+                Thread.sleep(Math.max(0, deadline.remainingMillis()) + 100);
+                throw new QueryDeadlineExceededException("request deadline exceeded before query execution");
+            }
+            return List.of(found);
+        });
+
+        Future<List<MemberTeamDto>> leader = executor.submit(() -> searchWithin(Duration.ofMillis(50)));
+        assertThat(leaderStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        Future<List<MemberTeamDto>> follower = executor.submit(() -> {
+            followerWaiting.countDown();
+            return searchWithin(Duration.ofSeconds(3));
+        });
+
+        assertThat(follower.get(5, TimeUnit.SECONDS)).containsExactly(found);
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(QueryDeadlineExceededException.class);
+        assertThat(executions.get()).isEqualTo(2);
+        assertThat(registry.get("singleflight.retries").counter().count()).isEqualTo(1);
+    }
+
+    /* 마감과 상관없는 실패는 그대로 합쳐진 요청들이 같이 받는다 */
+    @Test
+    void otherLeaderFailuresAreShared() throws Exception {
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch followerWaiting = new CountDownLatch(1);
+        when(memberRepository.search(any())).thenAnswer(invocation -> {
+            leaderStarted.countDown();
+            followerWaiting.await(5, TimeUnit.SECONDS);
+            Thread.sleep(100);
+            throw new IllegalStateException("boom");
+        });
+
+        Future<List<MemberTeamDto>> leader = executor.submit(() -> searchWithin(Duration.ofMillis(3000)));
+        assertThat(leaderStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        Future<List<MemberTeamDto>> follower = executor.submit(() -> {
+            followerWaiting.countDown();
+            return searchWithin(Duration.ofSeconds(3));
+        });
+
+        assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(registry.get("singleflight.retries").counter().count()).isZero();
+    }
+
+    private List<MemberTeamDto> searchWithin(Duration budget) {
+        QueryDeadline.start(budget);
+        try {
+            MemberSearchCondition condition = new MemberSearchCondition();
+            condition.setTeamName("teamA");
+            return memberSearch.search(condition);
+        } finally {
+            QueryDeadline.clear();
+        }
+    }
+}
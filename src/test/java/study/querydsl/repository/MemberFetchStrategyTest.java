@@ -0,0 +1,111 @@
+package study.querydsl.repository;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.MemberTestRepository;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Transactional
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "member.fetch.batch-size=100"
+})
+class MemberFetchStrategyTest {
+
+    @Autowired EntityManager em;
+    @Autowired MemberJpaReposiotory memberJpaReposiotory;
+    @Autowired MemberTestRepository memberTestRepository;
+
+    Statistics statistics;
+
+    @BeforeEach
+    void before() {
+        for (int t = 0; t < 3; t++) {
+            Team team = new Team("team" + t);
+            em.persist(team);
+            for (int i = 0; i < 2; i++) em.persist(new Member("member" + t + i, 10 * t + i, team));
+        }
+        em.flush();
+        em.clear();
+
+        statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void searchMember_batch() {
+        List<Member> result = memberJpaReposiotory.searchMember(allAges(), MemberFetchStrategy.BATCH);
+        touchTeams(result);
+        // member 1번 + team 3개를 IN 으로 1번
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    void searchMember_fetchJoin() {
+        List<Member> result = memberJpaReposiotory.searchMember(allAges(), MemberFetchStrategy.FETCH_JOIN);
+        touchTeams(result);
+        assertThat(result).hasSize(6);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void searchPage_batch() {
+        Page<Member> page = memberTestRepository.searchPageByApplyPage(new MemberSearchCondition(), PageRequest.of(0, 10), MemberFetchStrategy.BATCH);
+        touchTeams(page.getContent());
+        // 첫 페이지가 size보다 작으면 count 쿼리는 생략된다
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    void searchPage_fetchJoin() {
+        Page<Member> page = memberTestRepository.searchPageByApplyPage(new MemberSearchCondition(), PageRequest.of(0, 10), MemberFetchStrategy.FETCH_JOIN);
+        touchTeams(page.getContent());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void searchPage_idPageFetchJoin() {
+        PageRequest pageRequest = PageRequest.of(0, 4, Sort.by(Sort.Direction.DESC, "age"));
+        Page<Member> page = memberTestRepository.searchPageByApplyPage(new MemberSearchCondition(), pageRequest, MemberFetchStrategy.ID_PAGE_FETCH_JOIN);
+        touchTeams(page.getContent());
+
+        // id 페이징 + id IN fetch join + count
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+        assertThat(page.getTotalElements()).isEqualTo(6);
+        assertThat(page.getContent()).extracting(Member::getAge).containsExactly(21, 20, 11, 10);
+    }
+
+    @Test
+    void searchPage_filtersOnTeamName() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("team1");
+        Page<Member> page = memberTestRepository.searchPageByApplyPage(condition, PageRequest.of(0, 10));
+        assertThat(page.getContent()).extracting(Member::getUsername).containsExactlyInAnyOrder("member10", "member11");
+    }
+
+    private MemberSearchCondition allAges() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(0);
+        condition.setAgeLoe(100);
+        return condition;
+    }
+
+    private void touchTeams(List<Member> members) {
+        for (Member member : members) member.getTeam().getName();
+    }
+}
@@ -6,6 +6,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
@@ -17,6 +18,7 @@ import javax.persistence.EntityManager;
 import java.util.List;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
 
 @Transactional
 @SpringBootTest
@@ -96,6 +98,82 @@ class MemberRepositoryTest {
         for (MemberTeamDto memberTeamDto : content) System.out.println("memberTeamDto = " + memberTeamDto);
     }
 
+    @Test
+    public void searchPageComplexCountTest(){
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 10, teamB));
+        em.persist(new Member("member4", 20, teamB));
+        em.persist(new Member("member5", 55, teamB));
+        em.persist(new Member("member6", 30));
+
+        // team 조건이 없으면 join 없이 센다 -> 팀 없는 회원도 포함
+        MemberSearchCondition condition = new MemberSearchCondition();
+        Page<MemberTeamDto> all = memberRepository.searchPageComplex(condition, PageRequest.of(0, 2));
+        assertThat(all.getTotalElements()).isEqualTo(6);
+
+        condition.setTeamName("teamB");
+        Page<MemberTeamDto> teamB2 = memberRepository.searchPageSimple(condition, PageRequest.of(0, 2));
+        assertThat(teamB2.getTotalElements()).isEqualTo(3);
+        assertThat(teamB2.getContent().size()).isEqualTo(2);
+    }
+
+    @Test
+    public void searchPageDeferredTest(){
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.persist(new Member("member5", 55, teamB));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        PageRequest pageRequest = PageRequest.of(1, 2, Sort.by(Sort.Direction.DESC, "age"));
+        Page<MemberTeamDto> result = memberRepository.searchPageDeferred(condition, pageRequest);
+
+        assertThat(result.getTotalElements()).isEqualTo(5);
+        assertThat(result.getContent().get(0).getUsername()).isEqualTo("member3");
+        assertThat(result.getContent().get(0).getTeamName()).isEqualTo("teamB");
+        assertThat(result.getContent().get(1).getUsername()).isEqualTo("member2");
+
+        // 인덱스가 없는 정렬 키는 거부
+        assertThatThrownBy(() -> memberRepository.searchPageDeferred(condition, PageRequest.of(0, 2, Sort.by("team.name"))))
+                .isInstanceOf(UnsupportedSortException.class);
+    }
+
+    @Test
+    void usernameIgnoreCase() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        Member member1 = new Member("MemberA", 10, teamA);
+        em.persist(member1);
+        em.persist(new Member("memberB", 20, teamA));
+        em.flush();
+        em.clear();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("MEMBERA");
+        Assertions.assertThat(memberRepository.search(condition)).isEmpty();
+
+        condition.setUsernameIgnoreCase(true);
+        Assertions.assertThat(memberRepository.search(condition)).extracting("username").containsExactly("MemberA");
+        Assertions.assertThat(memberRepository.findByUsernameIgnoreCase("membera")).extracting("id").containsExactly(member1.getId());
+
+        // bulkUpdateUsername 으로 바꾼 username 도 username_lower 에 반영된다
+        memberRepository.bulkUpdateUsername(QMember.member.id.eq(member1.getId()), "RENAMED");
+        em.clear();
+        Assertions.assertThat(em.find(Member.class, member1.getId()).getUsernameLower()).isEqualTo("renamed");
+    }
+
     @Test
     void querydslPredicateExecute() {
 
@@ -0,0 +1,117 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.JPAExpressions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/* member.team_name 비정규화: 검색은 team join 없이 member.team_name 을 읽는다 */
+@Transactional
+@SpringBootTest(properties = "member.search.denormalized-team-name=true")
+class TeamRepositoryTest {
+
+    @Autowired EntityManager em;
+    @Autowired TeamRepository teamRepository;
+    @Autowired MemberRepository memberRepository;
+    @Autowired MemberJpaReposiotory memberJpaReposiotory;
+
+    Team teamA;
+    Team teamB;
+    Member member1;
+
+    @BeforeEach
+    void before() {
+        em.createQuery("delete from Member").executeUpdate();
+        teamA = new Team("teamA");
+        teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        member1 = new Member("member1", 10, teamA);
+        em.persist(member1);
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40));
+        em.flush();
+    }
+
+    @Test
+    void changeTeamCopiesName() {
+        member1.changeTeam(teamB);
+        em.flush();
+        em.clear();
+
+        assertThat(em.find(Member.class, member1.getId()).getTeamName()).isEqualTo("teamB");
+        assertThat(memberRepository.search(teamName("teamB"))).extracting(MemberTeamDto::getUsername)
+                .containsExactlyInAnyOrder("member1", "member3");
+    }
+
+    @Test
+    void renamePropagatesAsBulkUpdate() {
+        long updated = teamRepository.rename(teamA.getId(), "teamC");
+
+        assertThat(updated).isEqualTo(2);
+        // 영속성 컨텍스트에 있던 회원도 맞춰져서 flush 때 예전 이름으로 덮어쓰지 않는다
+        assertThat(member1.getTeamName()).isEqualTo("teamC");
+        em.flush();
+        em.clear();
+
+        assertThat(memberRepository.search(teamName("teamA"))).isEmpty();
+        assertThat(memberRepository.search(teamName("teamC")))
+                .extracting(MemberTeamDto::getUsername, MemberTeamDto::getTeamName, MemberTeamDto::getTeamId)
+                .containsExactlyInAnyOrder(
+                        tuple("member1", "teamC", teamA.getId()),
+                        tuple("member2", "teamC", teamA.getId()));
+        assertThat(memberJpaReposiotory.search(teamName("teamC"))).hasSize(2);
+        assertThat(memberRepository.searchPageDeferred(teamName("teamC"), PageRequest.of(0, 10)).getTotalElements()).isEqualTo(2);
+    }
+
+    /* moveMembers 로 팀을 식(subquery)으로 바꿔도 team_name 이 따라온다 */
+    @Test
+    void bulkTeamExpressionCopiesName() {
+        long updated = teamRepository.moveMembers(member.username.in("member1", "member4"),
+                JPAExpressions.selectFrom(team).where(team.name.eq("teamB")));
+        em.clear();
+
+        assertThat(updated).isEqualTo(2);
+        assertThat(memberRepository.search(teamName("teamB"))).extracting(MemberTeamDto::getUsername)
+                .containsExactlyInAnyOrder("member1", "member3", "member4");
+    }
+
+    @Test
+    void backfill() {
+        em.createNativeQuery("update member set team_name = null").executeUpdate();
+
+        long updated = teamRepository.backfillMemberTeamNames();
+        em.clear();
+
+        assertThat(updated).isEqualTo(3);
+        assertThat(memberRepository.search(teamName("teamA"))).hasSize(2);
+        // 팀 없는 회원은 teamId, teamName 모두 null
+        assertThat(memberRepository.search(new MemberSearchCondition()))
+                .filteredOn(dto -> dto.getUsername().equals("member4"))
+                .allSatisfy(dto -> {
+                    assertThat(dto.getTeamId()).isNull();
+                    assertThat(dto.getTeamName()).isNull();
+                });
+    }
+
+    private static MemberSearchCondition teamName(String teamName) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName(teamName);
+        return condition;
+    }
+}
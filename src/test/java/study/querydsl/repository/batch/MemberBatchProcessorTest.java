@@ -0,0 +1,121 @@
+package study.querydsl.repository.batch;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/* 공유 DB 라 이 테스트가 만든 회원(username 접두사)만 만들고 훑고 지운다 */
+@SpringBootTest(properties = "member.batch.chunk-size=10")
+class MemberBatchProcessorTest {
+
+    static final String PREFIX = "batchtest-";
+    /* 배치가 username 을 대문자로 바꿔도 username_lower 로 찾는다 */
+    static final BooleanExpression CREATED = member.usernameLower.startsWith(PREFIX);
+
+    @PersistenceContext EntityManager em;
+    @Autowired TransactionTemplate transactionTemplate;
+    @Autowired JPAQueryFactory queryFactory;
+    @Autowired MemberBatchProcessor batchProcessor;
+    @Autowired JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    @AfterEach
+    void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            queryFactory.delete(member).where(CREATED).execute();
+            queryFactory.delete(team).where(team.name.startsWith(PREFIX)).execute();
+        });
+    }
+
+    @Test
+    void updatesInChunksAndRestartsFromCheckpoint() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Team teamA = new Team(PREFIX + "teamA");
+            em.persist(teamA);
+            for (int i = 0; i < 25; i++) em.persist(new Member(PREFIX + "member" + i, i, teamA));
+        });
+
+        // 첫 chunk 커밋 후 중단된 것처럼
+        List<Long> checkpoints = new ArrayList<>();
+        RuntimeException crash = new RuntimeException("crash");
+        try {
+            batchProcessor.process(0L, CREATED, m -> {
+                m.setAge(m.getAge() + 100);
+                return true;
+            }, (lastId, processed, updated) -> {
+                checkpoints.add(lastId);
+                throw crash;
+            });
+        } catch (RuntimeException e) {
+            assertThat(e).isSameAs(crash);
+        }
+        assertThat(checkpoints).hasSize(1);
+        assertThat(ages()).filteredOn(age -> age >= 100).hasSize(10);
+
+        // checkpoint 부터 다시: 팀 이름이 보이는지(fetch join)도 확인하고 짝수 나이만 고친다
+        List<Long> resumed = new ArrayList<>();
+        MemberBatchProcessor.BatchResult result = batchProcessor.process(checkpoints.get(0), CREATED, m -> {
+            assertThat(m.getTeam().getName()).isEqualTo(PREFIX + "teamA");
+            if (m.getAge() % 2 != 0) return false;
+            m.setAge(m.getAge() + 100);
+            m.setUsername(m.getUsername().toUpperCase());
+            return true;
+        }, (lastId, processed, updated) -> resumed.add(lastId));
+
+        assertThat(result.processed).isEqualTo(15);
+        assertThat(result.updated).isEqualTo(8);
+        assertThat(resumed).hasSize(2).last().isEqualTo(result.lastId);
+        assertThat(ages()).filteredOn(age -> age >= 100).hasSize(18);
+        assertThat(queryFactory.selectFrom(member).where(member.usernameLower.eq(PREFIX + "member10")).fetch()).hasSize(1);
+    }
+
+    /* 커서로 읽은 뒤 다른 곳에서 고친 회원은 덮어쓰지 않고 최신 값에 callback 을 다시 적용한다 */
+    @Test
+    void concurrentUpdateIsRetriedNotLost() {
+        Long id = transactionTemplate.execute(status -> {
+            Member m = new Member(PREFIX + "member0", 10);
+            em.persist(m);
+            return m.getId();
+        });
+
+        AtomicBoolean first = new AtomicBoolean(true);
+        MemberBatchProcessor.BatchResult result = batchProcessor.process(0L, CREATED, m -> {
+            if (first.getAndSet(false)) {
+                // 읽은 뒤 쓰기 전에 다른 트랜잭션이 이름과 나이를 바꾼다
+                jdbcTemplate.update("update member set username = ?, username_lower = ?, age = 50, version = version + 1 where member_id = ?",
+                        PREFIX + "renamed", PREFIX + "renamed", id);
+            }
+            m.setAge(m.getAge() + 100);
+            return true;
+        }, MemberBatchProcessor.Checkpoint.NONE);
+
+        assertThat(result.updated).isEqualTo(1);
+        assertThat(result.conflicts).isZero();
+        Member stored = queryFactory.selectFrom(member).where(member.id.eq(id)).fetchOne();
+        assertThat(stored.getUsername()).isEqualTo(PREFIX + "renamed");
+        assertThat(stored.getAge()).isEqualTo(150);
+        assertThat(stored.getVersion()).isEqualTo(2L);
+    }
+
+    private List<Integer> ages() {
+        return queryFactory.select(member.age).from(member).where(CREATED).fetch();
+    }
+}
@@ -0,0 +1,139 @@
+package study.querydsl.repository.cache;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.change.ChangeEventPublisher;
+import study.querydsl.repository.change.ChangeRecord;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+/* validate-version 을 끈 기본 설정에서 벌크 변경이 캐시 전체를 버리지 않는지 */
+@SpringBootTest(properties = "member.near-cache.enabled=true")
+class MemberNearCacheBulkTest {
+
+    @PersistenceContext EntityManager em;
+    @Autowired TransactionTemplate transactionTemplate;
+    @Autowired JPAQueryFactory queryFactory;
+    @Autowired MemberNearCache nearCache;
+    @Autowired MemberRepository memberRepository;
+    @Autowired MeterRegistry meterRegistry;
+    @Autowired ChangeEventPublisher publisher;
+
+    /* near-cache 보다 늦게 구독하므로 여기서 받았으면 near-cache 도 처리한 뒤다 */
+    LinkedBlockingQueue<ChangeRecord> received = new LinkedBlockingQueue<>();
+
+    @BeforeEach
+    void subscribe() {
+        publisher.subscribe(changes -> received.addAll(changes));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        transactionTemplate.executeWithoutResult(status ->
+                em.createQuery("delete from Member m where m.username like 'bulk-cache-%'").executeUpdate());
+        nearCache.invalidateAll();
+    }
+
+    /* where 가 id 조건이면 그 id 만 지운다 */
+    @Test
+    void bulkUpdateByIdInvalidatesOnlyThatId() {
+        Long changed = persist("bulk-cache-a", 10);
+        Long other = persist("bulk-cache-b", 20);
+        memberRepository.findDtoById(changed);
+        memberRepository.findDtoById(other);
+        double hitsBefore = gets("hit");
+
+        transactionTemplate.executeWithoutResult(status -> queryFactory.update(member)
+                .set(member.age, 11)
+                .where(member.id.eq(changed))
+                .execute());
+        await(r -> r.getOperation() == ChangeRecord.Operation.BULK_UPDATE);
+
+        assertThat(memberRepository.findDtoById(other)).map(MemberTeamDto::getAge).contains(20);
+        assertThat(gets("hit")).isEqualTo(hitsBefore + 1);
+        assertThat(memberRepository.findDtoById(changed)).map(MemberTeamDto::getAge).contains(11);
+    }
+
+    /* id 를 모르는 version 벌크 update 뒤에는 version 을 확인해서 안 바뀐 항목은 그대로 쓰고 바뀐 항목만 다시 읽는다 */
+    @Test
+    void bulkUpdateWithoutIdsRevalidatesByVersion() {
+        Long changed = persist("bulk-cache-c", 30);
+        Long other = persist("bulk-cache-d", 40);
+        memberRepository.findDtoById(changed);
+        memberRepository.findDtoById(other);
+        double staleBefore = lookups("stale");
+
+        memberRepository.bulkUpdateAge(member.username.eq("bulk-cache-c"), 31);
+        await(r -> r.getOperation() == ChangeRecord.Operation.BULK_UPDATE);
+
+        assertThat(memberRepository.findDtoById(other)).map(MemberTeamDto::getAge).contains(40);
+        assertThat(memberRepository.findDtoById(changed)).map(MemberTeamDto::getAge).contains(31);
+        assertThat(lookups("stale")).isEqualTo(staleBefore + 1);
+        assertThat(nearCache.estimatedSize()).isGreaterThanOrEqualTo(2);
+    }
+
+    /* version 을 안 올리는 벌크 update 는 version 으로 알아챌 수 없으므로 전부 지운다 */
+    @Test
+    void unversionedBulkUpdateWithoutIdsInvalidatesAll() {
+        Long changed = persist("bulk-cache-e", 50);
+        Long other = persist("bulk-cache-f", 60);
+        memberRepository.findDtoById(changed);
+        memberRepository.findDtoById(other);
+
+        transactionTemplate.executeWithoutResult(status -> queryFactory.update(member)
+                .set(member.age, 51)
+                .where(member.username.eq("bulk-cache-e"))
+                .execute());
+        await(r -> r.getOperation() == ChangeRecord.Operation.BULK_UPDATE);
+
+        assertThat(nearCache.estimatedSize()).isZero();
+        assertThat(memberRepository.findDtoById(changed)).map(MemberTeamDto::getAge).contains(51);
+    }
+
+    private Long persist(String username, int age) {
+        Long id = transactionTemplate.execute(status -> {
+            Member m = new Member(username, age);
+            em.persist(m);
+            return m.getId();
+        });
+        await(r -> r.getOperation() == ChangeRecord.Operation.INSERT && id.equals(r.getId()));
+        return id;
+    }
+
+    private void await(Predicate<ChangeRecord> match) {
+        try {
+            while (true) {
+                ChangeRecord record = received.poll(5, TimeUnit.SECONDS);
+                assertThat(record).as("change record").isNotNull();
+                if ("Member".equals(record.getEntityName()) && match.test(record)) return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", "member.near-cache").tag("result", result).functionCounter().count();
+    }
+
+    private double lookups(String result) {
+        return meterRegistry.get("member.near-cache.lookups").tag("result", result).counter().count();
+    }
+}
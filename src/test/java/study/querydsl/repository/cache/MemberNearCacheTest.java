@@ -0,0 +1,199 @@
+package study.querydsl.repository.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaReposiotory;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.change.ChangeEventPublisher;
+import study.querydsl.repository.change.ChangeRecord;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Optional;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+@SpringBootTest(properties = {"member.near-cache.enabled=true", "member.near-cache.validate-version=true"})
+class MemberNearCacheTest {
+
+    @PersistenceContext EntityManager em;
+    @Autowired TransactionTemplate transactionTemplate;
+    @Autowired JdbcTemplate jdbcTemplate;
+    @Autowired MemberNearCache nearCache;
+    @Autowired MemberRepository memberRepository;
+    @Autowired MemberJpaReposiotory memberJpaReposiotory;
+    @Autowired MeterRegistry meterRegistry;
+    @Autowired ChangeEventPublisher publisher;
+
+    /* near-cache 보다 늦게 구독하므로 여기서 받았으면 near-cache 도 처리한 뒤다 */
+    LinkedBlockingQueue<ChangeRecord> received = new LinkedBlockingQueue<>();
+
+    @BeforeEach
+    void subscribe() {
+        publisher.subscribe(changes -> received.addAll(changes));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.username like 'cache-%'").executeUpdate();
+            em.createQuery("delete from Team t where t.name like 'cache-%'").executeUpdate();
+        });
+        nearCache.invalidateAll();
+    }
+
+    @Test
+    void repeatedLookupIsServedFromCache() {
+        Long id = persist("cache-hot", 10);
+        double hitsBefore = gets("hit");
+
+        assertThat(memberRepository.findDtoById(id)).map(MemberTeamDto::getUsername).contains("cache-hot");
+        assertThat(memberJpaReposiotory.findDtoById(id)).map(MemberTeamDto::getTeamName).contains("cache-team");
+        assertThat(memberRepository.findDtoById(id)).map(MemberTeamDto::getAge).contains(10);
+
+        assertThat(gets("hit")).isEqualTo(hitsBefore + 2);
+        // 돌려준 dto 를 고쳐도 캐시된 값은 그대로
+        memberRepository.findDtoById(id).get().setAge(99);
+        assertThat(memberRepository.findDtoById(id)).map(MemberTeamDto::getAge).contains(10);
+    }
+
+    @Test
+    void missingIdIsCachedUntilInserted() {
+        Long missing = nextId() + 10_000;
+        double negativeBefore = lookups("negative-hit");
+
+        assertThat(memberRepository.findDtoById(missing)).isEmpty();
+        assertThat(memberRepository.findDtoById(missing)).isEmpty();
+        assertThat(memberRepository.findDtoById(missing)).isEmpty();
+        // 처음 한 번만 DB 에 간다
+        assertThat(lookups("negative-hit")).isEqualTo(negativeBefore + 2);
+
+        // 변경 레코드 없이 들어온 행도 version 확인으로 보인다
+        jdbcTemplate.update("insert into member (member_id, username, username_lower, age, version) values (?, 'cache-new', 'cache-new', 20, 0)", missing);
+        assertThat(memberRepository.findDtoById(missing)).map(MemberTeamDto::getUsername).contains("cache-new");
+    }
+
+    /* 엔티티 변경은 version 이 올라가서 변경 레코드가 오기 전에도 바로 새 값을 읽는다 */
+    @Test
+    void entityUpdateIsVisibleImmediately() {
+        Long id = persist("cache-update", 30);
+        assertThat(memberRepository.findDtoById(id)).map(MemberTeamDto::getAge).contains(30);
+
+        transactionTemplate.executeWithoutResult(status -> em.find(Member.class, id).setAge(31));
+
+        assertThat(memberRepository.findDtoById(id)).map(MemberTeamDto::getAge).contains(31);
+    }
+
+    /* MemberBulkRepository 의 벌크 update 는 version 을 올린다 */
+    @Test
+    void bulkUpdateBumpsVersion() {
+        Long id = persist("cache-bulk", 40);
+        assertThat(memberRepository.findDtoById(id)).map(MemberTeamDto::getAge).contains(40);
+        double staleBefore = lookups("stale");
+
+        memberRepository.bulkUpdateAge(member.id.eq(id), 41);
+
+        assertThat(memberRepository.findDtoById(id)).map(MemberTeamDto::getAge).contains(41);
+        assertThat(lookups("stale")).isEqualTo(staleBefore + 1);
+        assertThat(em.find(Member.class, id).getVersion()).isEqualTo(1L);
+    }
+
+    /* 같은 값을 다시 set 한 행은 version 이 그대로라 캐시가 버려지지 않는다 */
+    @Test
+    void sameValueBulkUpdateKeepsVersion() {
+        Long id = persist("cache-same", 45);
+        assertThat(memberRepository.findDtoById(id)).map(MemberTeamDto::getAge).contains(45);
+        double staleBefore = lookups("stale");
+
+        memberRepository.bulkUpdateAge(member.id.eq(id), 45);
+
+        assertThat(memberRepository.findDtoById(id)).map(MemberTeamDto::getAge).contains(45);
+        assertThat(lookups("stale")).isEqualTo(staleBefore);
+        assertThat(em.find(Member.class, id).getVersion()).isEqualTo(0L);
+    }
+
+    /* 변경 레코드가 없는 JDBC 삭제도 version 확인으로 걸러진다 */
+    @Test
+    void deleteOutsideJpaIsDetectedByVersionCheck() {
+        Long id = persist("cache-jdbc", 50);
+        assertThat(memberRepository.findDtoById(id)).isPresent();
+
+        jdbcTemplate.update("delete from member where member_id = ?", id);
+
+        assertThat(memberRepository.findDtoById(id)).isEmpty();
+    }
+
+    /* 트랜잭션 안에서는 캐시를 거치지 않는다: 자기 변경이 보이고, 롤백된 값은 캐시에 남지 않는다 */
+    @Test
+    void bypassesCacheInsideTransaction() {
+        Long id = persist("cache-tx", 60);
+        assertThat(memberRepository.findDtoById(id)).map(MemberTeamDto::getAge).contains(60);
+
+        Optional<MemberTeamDto> inside = inRollback(() -> {
+            em.find(Member.class, id).setAge(61);
+            return memberRepository.findDtoById(id);
+        });
+
+        assertThat(inside).map(MemberTeamDto::getAge).contains(61);
+        assertThat(memberRepository.findDtoById(id)).map(MemberTeamDto::getAge).contains(60);
+    }
+
+    /* insert 변경 레코드까지 처리된 뒤에 돌려준다 (나중에 온 무효화가 적중 수를 흔들지 않게) */
+    private Long persist(String username, int age) {
+        Long id = transactionTemplate.execute(status -> {
+            Team team = new Team("cache-team");
+            em.persist(team);
+            Member m = new Member(username, age, team);
+            em.persist(m);
+            return m.getId();
+        });
+        awaitInsert(id);
+        return id;
+    }
+
+    private void awaitInsert(Long id) {
+        try {
+            while (true) {
+                ChangeRecord record = received.poll(5, TimeUnit.SECONDS);
+                assertThat(record).as("insert record for member %d", id).isNotNull();
+                if ("Member".equals(record.getEntityName()) && record.getOperation() == ChangeRecord.Operation.INSERT
+                        && id.equals(record.getId())) return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Long nextId() {
+        return jdbcTemplate.queryForObject("select coalesce(max(member_id), 0) + 1 from member", Long.class);
+    }
+
+    private <T> T inRollback(Supplier<T> work) {
+        return transactionTemplate.execute(status -> {
+            status.setRollbackOnly();
+            return work.get();
+        });
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", "member.near-cache").tag("result", result).functionCounter().count();
+    }
+
+    private double lookups(String result) {
+        return meterRegistry.get("member.near-cache.lookups").tag("result", result).counter().count();
+    }
+}
@@ -0,0 +1,97 @@
+package study.querydsl.repository.capture;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import study.querydsl.dto.MemberSearchCondition;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SearchCaptureCodecTest {
+
+    @Test
+    void roundTrip() throws IOException {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        condition.setAgeGoe(20);
+        CapturedSearch paged = new CapturedSearch(1000L, "searchPageDeferred", condition,
+                PageRequest.of(3, 20, Sort.by(Sort.Order.desc("age"), Sort.Order.asc("id"))), 1234, false);
+        CapturedSearch unpaged = new CapturedSearch(1001L, "search", new MemberSearchCondition(), Pageable.unpaged(), 56, true);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        SearchCaptureCodec.writeHeader(out);
+        SearchCaptureCodec.write(out, paged);
+        SearchCaptureCodec.write(out, unpaged);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        SearchCaptureCodec.readHeader(in);
+        CapturedSearch first = SearchCaptureCodec.read(in);
+        CapturedSearch second = SearchCaptureCodec.read(in);
+        assertThat(SearchCaptureCodec.read(in)).isNull();
+
+        assertThat(first.getTimestampMillis()).isEqualTo(1000L);
+        assertThat(first.getCondition()).isEqualTo(condition);
+        assertThat(first.getPageable()).isEqualTo(paged.getPageable());
+        assertThat(first.getDurationMicros()).isEqualTo(1234);
+        assertThat(first.shape()).isEqualTo("searchPageDeferred[teamName,ageGoe] size=20 sort=age: DESC,id: ASC");
+
+        assertThat(second.getPageable().isPaged()).isFalse();
+        assertThat(second.isFailed()).isTrue();
+        assertThat(second.shape()).isEqualTo("search[]");
+    }
+
+    /* writeUTF 는 64KB 를 넘으면 던졌다 */
+    @Test
+    void longStringsRoundTrip() throws IOException {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("가".repeat(40_000));
+        CapturedSearch search = new CapturedSearch(1L, "search", condition, Pageable.unpaged(), 1, false);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SearchCaptureCodec.write(new DataOutputStream(bytes), search);
+        CapturedSearch read = SearchCaptureCodec.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertThat(read.getCondition().getUsername()).isEqualTo(condition.getUsername());
+    }
+
+    /* 예전(VERSION 1, writeUTF) 파일도 읽는다 */
+    @Test
+    void readsVersion1() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(SearchCaptureCodec.MAGIC);
+        out.writeShort(1);
+        out.writeLong(5L);
+        out.writeByte(0); // search
+        out.writeByte(1 << 1); // teamName
+        out.writeUTF("teamA");
+        out.writeInt(-1);
+        out.writeInt(0);
+        out.writeByte(0);
+        out.writeInt(7);
+        out.writeBoolean(false);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        short version = SearchCaptureCodec.readHeader(in);
+        CapturedSearch read = SearchCaptureCodec.read(in, version);
+
+        assertThat(version).isEqualTo((short) 1);
+        assertThat(read.getCondition().getTeamName()).isEqualTo("teamA");
+        assertThat(read.getDurationMicros()).isEqualTo(7);
+    }
+
+    @Test
+    void rejectsForeignFile() {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6}));
+        assertThatThrownBy(() -> SearchCaptureCodec.readHeader(in)).isInstanceOf(IOException.class);
+    }
+}
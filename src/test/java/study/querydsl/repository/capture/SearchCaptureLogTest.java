@@ -0,0 +1,72 @@
+package study.querydsl.repository.capture;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.MemberSearchCondition;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SearchCaptureLogTest {
+
+    @TempDir File dir;
+
+    /* 인코딩할 수 없는 레코드는 건너뛰고 writer 는 다음 레코드를 계속 쓴다. username 은 해시로 남는다 */
+    @Test
+    void skipsBadRecordAndHashesUsernames() throws Exception {
+        File file = new File(dir, "capture.bin");
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        SearchCaptureLog log = new SearchCaptureLog(registry, true, 1.0, file.getPath(), 1 << 20, 64, "hash", "salt");
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("alice");
+
+        log.start();
+        log.record("unknownOperation", condition, null, 1_000, false);
+        log.record("searchPageSimple", condition, PageRequest.of(0, 20), 2_000, false);
+        log.stop();
+
+        List<CapturedSearch> records = read(file);
+        assertThat(records).hasSize(1);
+        assertThat(records.get(0).getOperation()).isEqualTo("searchPageSimple");
+        assertThat(records.get(0).getCondition().getUsername()).isEqualTo(log.hashUsername("alice")).startsWith("sha256:");
+        assertThat(registry.counter("member.capture.failed").count()).isEqualTo(1);
+    }
+
+    /* 예전 형식 파일에는 이어 쓰지 않고 옆으로 옮긴다 */
+    @Test
+    void movesAsideOldFormatFile() throws Exception {
+        File file = new File(dir, "capture.bin");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeInt(SearchCaptureCodec.MAGIC);
+            out.writeShort(1);
+        }
+        SearchCaptureLog log = new SearchCaptureLog(new SimpleMeterRegistry(), true, 1.0, file.getPath(), 1 << 20, 64, "raw", "");
+
+        log.start();
+        log.record("search", new MemberSearchCondition(), null, 1_000, false);
+        log.stop();
+
+        assertThat(new File(dir, "capture.bin.v1")).exists();
+        assertThat(read(file)).hasSize(1);
+    }
+
+    private static List<CapturedSearch> read(File file) throws IOException {
+        List<CapturedSearch> records = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            short version = SearchCaptureCodec.readHeader(in);
+            CapturedSearch search;
+            while ((search = SearchCaptureCodec.read(in, version)) != null) records.add(search);
+        }
+        return records;
+    }
+}
@@ -0,0 +1,103 @@
+package study.querydsl.repository.change;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+@SpringBootTest
+class ChangeEventPublisherTest {
+
+    @PersistenceContext EntityManager em;
+    @Autowired TransactionTemplate transactionTemplate;
+    @Autowired JPAQueryFactory queryFactory;
+    @Autowired ChangeEventPublisher publisher;
+
+    LinkedBlockingQueue<ChangeRecord> received = new LinkedBlockingQueue<>();
+
+    @BeforeEach
+    void subscribe() {
+        publisher.subscribe(changes -> received.addAll(changes));
+    }
+
+    @Test
+    void publishesAfterCommit() throws Exception {
+        Long memberId = transactionTemplate.execute(status -> {
+            Team team = new Team("cdcTeam");
+            em.persist(team);
+            Member m = new Member("cdcMember", 10, team);
+            em.persist(m);
+            return m.getId();
+        });
+        assertThat(next("Member").getOperation()).isEqualTo(ChangeRecord.Operation.INSERT);
+
+        transactionTemplate.executeWithoutResult(status -> em.find(Member.class, memberId).setAge(11));
+        ChangeRecord update = next("Member");
+        assertThat(update.getOperation()).isEqualTo(ChangeRecord.Operation.UPDATE);
+        assertThat(update.getId()).isEqualTo(memberId);
+        assertThat(update.getChangedProperties()).containsExactly("age");
+
+        transactionTemplate.executeWithoutResult(status ->
+                queryFactory.update(member).set(member.age, member.age.add(1)).where(member.id.eq(memberId)).execute());
+        ChangeRecord bulk = next("Member");
+        assertThat(bulk.getOperation()).isEqualTo(ChangeRecord.Operation.BULK_UPDATE);
+        assertThat(bulk.getAffectedRows()).isEqualTo(1);
+        // where 가 id 조건이면 영향받은 id 와 set 한 프로퍼티를 담는다
+        assertThat(bulk.getIds()).containsExactly(memberId);
+        assertThat(bulk.getChangedProperties()).contains("age");
+
+        transactionTemplate.executeWithoutResult(status ->
+                queryFactory.update(member).set(member.age, member.age.add(1)).where(member.username.eq("cdcMember")).execute());
+        assertThat(next("Member").hasIds()).isFalse();
+    }
+
+    /* 쉬고 있는 소비자는 idle-park 를 다 기다리지 않고 publish 가 깨운다 */
+    @Test
+    void idleConsumerIsWokenByPublish() throws Exception {
+        ChangeEventPublisher idlePublisher = new ChangeEventPublisher(new SimpleMeterRegistry(), 1024, 16, Duration.ofMinutes(10));
+        LinkedBlockingQueue<ChangeRecord> delivered = new LinkedBlockingQueue<>();
+        idlePublisher.subscribe(delivered::addAll);
+        idlePublisher.start();
+        try {
+            Thread.sleep(200);
+            idlePublisher.publish(ChangeRecord.row("Member", ChangeRecord.Operation.INSERT, 1L, null));
+            assertThat(delivered.poll(5, TimeUnit.SECONDS)).isNotNull();
+        } finally {
+            idlePublisher.stop();
+        }
+    }
+
+    @Test
+    void rolledBackChangesAreNotPublished() throws Exception {
+        transactionTemplate.executeWithoutResult(status -> {
+            em.persist(new Member("rolledBack", 10));
+            queryFactory.update(member).set(member.age, 1).where(member.username.eq("rolledBack")).execute();
+            em.flush();
+            status.setRollbackOnly();
+        });
+        assertThat(received.poll(300, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    private ChangeRecord next(String entityName) throws InterruptedException {
+        while (true) {
+            ChangeRecord record = received.poll(5, TimeUnit.SECONDS);
+            assertThat(record).isNotNull();
+            if (record.getEntityName().equals(entityName)) return record;
+        }
+    }
+}
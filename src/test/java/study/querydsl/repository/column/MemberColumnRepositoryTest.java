@@ -0,0 +1,75 @@
+package study.querydsl.repository.column;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Transactional
+@SpringBootTest
+class MemberColumnRepositoryTest {
+
+    @Autowired EntityManager em;
+    @Autowired MemberColumnRepository columnRepository;
+
+    Member member1;
+
+    @BeforeEach
+    void before() {
+        em.createQuery("delete from Member").executeUpdate();
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        member1 = new Member("member1", 10, teamA);
+        em.persist(member1);
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.flush();
+    }
+
+    @Test
+    void fetchIntoColumns() {
+        MemberIdAgeColumns columns = columnRepository.fetchIdAndAge(20, null);
+
+        assertThat(columns.size()).isEqualTo(3);
+        assertThat(columns.getAges().toArray()).containsExactlyInAnyOrder(20, 30, 40);
+        assertThat(columns.getAges().sum()).isEqualTo(90);
+        assertThat(columns.getIds().toArray()).doesNotContain(member1.getId());
+    }
+
+    @Test
+    void consumer() {
+        List<Integer> ages = new ArrayList<>();
+        columnRepository.forEachIdAndAge(null, 30, (id, age) -> ages.add(age));
+        assertThat(ages).containsExactlyInAnyOrder(10, 20, 30);
+    }
+
+    @Test
+    void groupByTeam() {
+        TeamAgeStats stats = columnRepository.averageAgeByTeam();
+
+        assertThat(stats.getTeamNames()).containsExactly("teamA", "teamB");
+        assertThat(stats.getMemberCounts().toArray()).containsExactly(2L, 2L);
+        assertThat(stats.getAverageAges().toArray()).containsExactly(15.0, 35.0);
+    }
+
+    @Test
+    void growsPastInitialCapacity() {
+        LongColumn column = new LongColumn(16);
+        for (long i = 0; i < 1000; i++) column.add(i);
+        assertThat(column.size()).isEqualTo(1000);
+        assertThat(column.get(999)).isEqualTo(999);
+        assertThat(column.sum()).isEqualTo(999 * 1000 / 2);
+    }
+}
@@ -0,0 +1,59 @@
+package study.querydsl.repository.filter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CountingBloomFilterTest {
+
+    @Test
+    void noFalseNegatives() {
+        CountingBloomFilter filter = new CountingBloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) filter.add("member" + i);
+
+        for (int i = 0; i < 10_000; i++) assertThat(filter.mightContain("member" + i)).isTrue();
+        assertThat(filter.entries()).isEqualTo(10_000);
+    }
+
+    @Test
+    void falsePositiveRateNearTarget() {
+        CountingBloomFilter filter = new CountingBloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) filter.add("member" + i);
+
+        int falsePositives = 0;
+        for (int i = 10_000; i < 110_000; i++) if (filter.mightContain("member" + i)) falsePositives++;
+        assertThat(falsePositives / 100_000.0).isLessThan(0.02);
+        assertThat(filter.expectedFpp()).isBetween(0.005, 0.02);
+    }
+
+    @Test
+    void removeKeepsOtherKeys() {
+        CountingBloomFilter filter = new CountingBloomFilter(1_000, 0.01);
+        for (int i = 0; i < 1_000; i++) filter.add("member" + i);
+        filter.add("member7");
+
+        for (int i = 0; i < 500; i++) filter.remove("member" + i);
+
+        for (int i = 500; i < 1_000; i++) assertThat(filter.mightContain("member" + i)).isTrue();
+        // 두 번 넣은 건 한 번 빼도 남는다
+        assertThat(filter.mightContain("member7")).isTrue();
+        filter.remove("member7");
+        assertThat(filter.entries()).isEqualTo(500);
+    }
+
+    @Test
+    void emptyFilterContainsNothing() {
+        CountingBloomFilter filter = new CountingBloomFilter(1_000, 0.01);
+        assertThat(filter.mightContain("member1")).isFalse();
+        filter.add("member1");
+        filter.remove("member1");
+        assertThat(filter.mightContain("member1")).isFalse();
+    }
+
+    @Test
+    void rejectsInvalidSizing() {
+        assertThatThrownBy(() -> new CountingBloomFilter(0, 0.01)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new CountingBloomFilter(1_000, 1.5)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,149 @@
+package study.querydsl.repository.filter;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberJpaReposiotory;
+import study.querydsl.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+@SpringBootTest(properties = "member.username-filter.enabled=true")
+class UsernameBloomFilterTest {
+
+    @PersistenceContext EntityManager em;
+    @Autowired TransactionTemplate transactionTemplate;
+    @Autowired JdbcTemplate jdbcTemplate;
+    @Autowired JPAQueryFactory queryFactory;
+    @Autowired UsernameBloomFilter usernameFilter;
+    @Autowired MemberRepository memberRepository;
+    @Autowired MemberJpaReposiotory memberJpaReposiotory;
+    @Autowired MeterRegistry meterRegistry;
+
+    /* JPQL 로 지운다: 공용 JPAQueryFactory 의 벌크 delete 는 변경 레코드 -> 백그라운드 재생성을 일으켜 다음 테스트와 겹친다 */
+    @AfterEach
+    void cleanUp() {
+        transactionTemplate.executeWithoutResult(status ->
+                em.createQuery("delete from Member m where m.username like 'filter-%'").executeUpdate());
+    }
+
+    @Test
+    void definiteMissSkipsQuery() {
+        Long id = persist("filter-alice");
+        long missesBefore = usernameFilter.definiteMisses();
+
+        assertThat(memberRepository.findByUsername("filter-nobody")).isEmpty();
+        assertThat(memberJpaReposiotory.findByUsername_Querydsl("filter-nobody")).isEmpty();
+        assertThat(usernameFilter.definiteMisses()).isEqualTo(missesBefore + 2);
+
+        assertThat(memberRepository.findByUsername("filter-alice")).extracting(Member::getId).containsExactly(id);
+        assertThat(memberJpaReposiotory.findByUsername("filter-alice")).extracting(Member::getId).containsExactly(id);
+    }
+
+    /* flush 전인 persist 도 같은 트랜잭션의 조회에서 보인다 */
+    @Test
+    void readsOwnUnflushedWrites() {
+        List<Member> result = transactionTemplate.execute(status -> {
+            em.persist(new Member("filter-unflushed", 10));
+            return memberRepository.findByUsername("filter-unflushed");
+        });
+        assertThat(result).hasSize(1);
+    }
+
+    @Test
+    void renameAndDeleteAfterCommit() {
+        Long id = persist("filter-before");
+        transactionTemplate.executeWithoutResult(status -> em.find(Member.class, id).setUsername("filter-after"));
+
+        assertThat(usernameFilter.mightContain("filter-after")).isTrue();
+        assertThat(usernameFilter.mightContain("filter-before")).isFalse();
+
+        transactionTemplate.executeWithoutResult(status -> em.remove(em.find(Member.class, id)));
+        assertThat(usernameFilter.mightContain("filter-after")).isFalse();
+    }
+
+    @Test
+    void rolledBackDeleteKeepsUsername() {
+        Long id = persist("filter-kept");
+        transactionTemplate.executeWithoutResult(status -> {
+            em.remove(em.find(Member.class, id));
+            em.flush();
+            status.setRollbackOnly();
+        });
+        assertThat(memberRepository.findByUsername("filter-kept")).hasSize(1);
+    }
+
+    /* 값으로 바꾸는 벌크 rename 은 커밋 전에 필터에 들어간다 */
+    @Test
+    void bulkRenameIsVisible() {
+        Long id = persist("filter-bulk-value");
+        memberRepository.bulkUpdateUsername(member.id.eq(id), "filter-bulk-value-renamed");
+
+        assertThat(usernameFilter.mightContain("filter-bulk-value-renamed")).isTrue();
+        assertThat(memberRepository.findByUsername("filter-bulk-value-renamed")).extracting(Member::getId).containsExactly(id);
+    }
+
+    /* 식으로 바꾸는 벌크 rename 은 값을 모르므로 필터를 다시 만들 때까지 DB 로 간다 */
+    @Test
+    void bulkExpressionUpdateRebuilds() throws InterruptedException {
+        Long id = persist("filter-bulk");
+        memberRepository.bulkUpdateUsername(member.id.eq(id), member.username.concat("-renamed"));
+
+        assertThat(memberRepository.findByUsername("filter-bulk-renamed")).hasSize(1);
+        for (int i = 0; i < 100 && !usernameFilter.isTrusted(); i++) Thread.sleep(50);
+        assertThat(usernameFilter.isTrusted()).isTrue();
+        assertThat(usernameFilter.mightContain("filter-bulk-renamed")).isTrue();
+    }
+
+    /* username 과 상관없는 벌크 update 는 필터를 다시 만들지 않는다 (방금 만든 뒤라 정리 재생성도 cleanup-interval 뒤로 미뤄진다) */
+    @Test
+    void bulkAgeUpdateDoesNotRebuild() throws InterruptedException {
+        Long id = persist("filter-age");
+        Timer rebuilds = meterRegistry.timer("member.username-filter.rebuild");
+        long before = rebuilds.count();
+
+        for (int i = 0; i < 5; i++) {
+            int age = 20 + i;
+            transactionTemplate.executeWithoutResult(status -> queryFactory.update(member)
+                    .set(member.age, age)
+                    .where(member.id.eq(id))
+                    .execute());
+        }
+        Thread.sleep(300);
+
+        assertThat(rebuilds.count()).isEqualTo(before);
+    }
+
+    /* 필터 조회는 트랜잭션의 변경을 flush 하지 않는다 */
+    @Test
+    void lookupDoesNotFlush() {
+        Long[] counts = transactionTemplate.execute(status -> {
+            em.persist(new Member("filter-pending", 10));
+            boolean found = !memberRepository.findByUsername("filter-nobody").isEmpty();
+            Long beforeQuery = jdbcTemplate.queryForObject("select count(*) from member where username = 'filter-pending'", Long.class);
+            int matched = memberRepository.findByUsername("filter-pending").size();
+            return new Long[]{found ? 1L : 0L, beforeQuery, (long) matched};
+        });
+        assertThat(counts).containsExactly(0L, 0L, 1L);
+    }
+
+    private Long persist(String username) {
+        return transactionTemplate.execute(status -> {
+            Member m = new Member(username, 10);
+            em.persist(m);
+            return m.getId();
+        });
+    }
+}
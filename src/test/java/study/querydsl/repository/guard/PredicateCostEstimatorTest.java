@@ -0,0 +1,78 @@
+package study.querydsl.repository.guard;
+
+import com.querydsl.core.BooleanBuilder;
+import org.junit.jupiter.api.Test;
+import study.querydsl.entity.Member;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+class PredicateCostEstimatorTest {
+
+    static final long ROWS = 1_000_000;
+
+    PredicateCostEstimator estimator = PredicateCostEstimator.forEntity(Member.class);
+
+    @Test
+    void indexedEqualityIsSelective() {
+        CostEstimate estimate = estimator.estimate(member.username.eq("member1"), ROWS);
+        assertThat(estimate.getEstimatedRows()).isEqualTo(10_000);
+        assertThat(estimate.getUnindexedPaths()).isEmpty();
+    }
+
+    /* 서로 다른 값 수를 알면 = 는 건수/값 수, 유일 경로는 1건 */
+    @Test
+    void equalityUsesDistinctValuesAndUniqueness() {
+        assertThat(estimator.estimate(member.username.eq("member1"), ROWS, Map.of("username", ROWS)).getEstimatedRows()).isEqualTo(1);
+        assertThat(estimator.estimate(member.age.eq(10), ROWS, Map.of("age", 100L)).getEstimatedRows()).isEqualTo(10_000);
+        assertThat(estimator.estimate(member.id.eq(1L), ROWS).getEstimatedRows()).isEqualTo(1);
+        assertThat(estimator.getNonUniqueIndexedPaths()).contains("username", "age", "team.id").doesNotContain("id");
+    }
+
+    @Test
+    void foreignKeyIsIndexed() {
+        CostEstimate estimate = estimator.estimate(member.team.id.eq(1L), ROWS);
+        assertThat(estimate.isFullScan()).isFalse();
+    }
+
+    @Test
+    void unindexedPathIsFullScan() {
+        CostEstimate estimate = estimator.estimate(member.team.name.eq("teamA"), ROWS);
+        assertThat(estimate.isFullScan()).isTrue();
+        assertThat(estimate.getUnindexedPaths()).containsExactly("team.name");
+    }
+
+    @Test
+    void leadingWildcardIsFullScan() {
+        assertThat(estimator.estimate(member.username.like("%ber1"), ROWS).isLeadingWildcard()).isTrue();
+        assertThat(estimator.estimate(member.username.contains("ber"), ROWS).isFullScan()).isTrue();
+        assertThat(estimator.estimate(member.username.startsWith("mem"), ROWS).isFullScan()).isFalse();
+    }
+
+    @Test
+    void andTakesNarrowestOrAddsUp() {
+        CostEstimate and = estimator.estimate(member.username.eq("member1").and(member.team.name.eq("teamA")), ROWS);
+        assertThat(and.getEstimatedRows()).isEqualTo(10_000);
+
+        CostEstimate or = estimator.estimate(member.username.eq("member1").or(member.team.name.eq("teamA")), ROWS);
+        assertThat(or.isFullScan()).isTrue();
+    }
+
+    @Test
+    void inListSizeIsReported() {
+        List<Long> ids = LongStream.range(0, 5000).boxed().collect(Collectors.toList());
+        CostEstimate estimate = estimator.estimate(member.id.in(ids), ROWS);
+        assertThat(estimate.getMaxInListSize()).isEqualTo(5000);
+    }
+
+    @Test
+    void emptyPredicateIsFullScan() {
+        assertThat(estimator.estimate(null, ROWS).isFullScan()).isTrue();
+        assertThat(estimator.estimate(new BooleanBuilder(), ROWS).isFullScan()).isTrue();
+    }
+}
@@ -0,0 +1,79 @@
+package study.querydsl.repository.guard;
+
+import com.querydsl.core.types.Predicate;
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.querydsl.QuerydslPredicateExecutor;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static study.querydsl.entity.QMember.member;
+
+class QueryCostGuardInterceptorTest {
+
+    QueryCostGuard guard = mock(QueryCostGuard.class);
+    QueryCostGuardInterceptor interceptor = new QueryCostGuardInterceptor(provider(guard));
+
+    @Test
+    void downgradeReplacesPageableArgument() throws Throwable {
+        Pageable requested = PageRequest.of(2, 5000);
+        Pageable reduced = PageRequest.of(2, 1000);
+        when(guard.check(eq("findAll"), any(), eq(requested), eq(true))).thenReturn(verdict(QueryCostGuard.Decision.DOWNGRADE, reduced));
+        Object[] args = {member.age.goe(0), requested};
+        MethodInvocation invocation = invocation("findAll", new Class<?>[]{Predicate.class, Pageable.class}, args);
+
+        interceptor.invoke(invocation);
+
+        assertThat(args[1]).isEqualTo(reduced);
+        verify(invocation).proceed();
+    }
+
+    @Test
+    void unpagedFindAllIsCheckedAsUnbounded() throws Throwable {
+        when(guard.check(anyString(), any(), any(), eq(false))).thenReturn(verdict(QueryCostGuard.Decision.ALLOW, null));
+        MethodInvocation invocation = invocation("findAll", new Class<?>[]{Predicate.class}, new Object[]{member.age.goe(0)});
+
+        interceptor.invoke(invocation);
+
+        verify(guard).check("findAll", member.age.goe(0), null, false);
+    }
+
+    @Test
+    void rejectionIsNotExecuted() throws Throwable {
+        when(guard.check(anyString(), any(), any(), eq(true))).thenThrow(new QueryCostExceededException("query rejected"));
+        MethodInvocation invocation = invocation("count", new Class<?>[]{Predicate.class}, new Object[]{member.username.contains("x")});
+
+        assertThatThrownBy(() -> interceptor.invoke(invocation)).isInstanceOf(QueryCostExceededException.class);
+        verify(invocation, never()).proceed();
+    }
+
+    private static MethodInvocation invocation(String name, Class<?>[] parameterTypes, Object[] args) throws Throwable {
+        MethodInvocation invocation = mock(MethodInvocation.class);
+        when(invocation.getMethod()).thenReturn(QuerydslPredicateExecutor.class.getMethod(name, parameterTypes));
+        when(invocation.getArguments()).thenReturn(args);
+        return invocation;
+    }
+
+    private static QueryCostGuard.Verdict verdict(QueryCostGuard.Decision decision, Pageable pageable) {
+        return new QueryCostGuard.Verdict(decision, new CostEstimate(1, 1, 0, false, Set.of()), pageable);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ObjectProvider<QueryCostGuard> provider(QueryCostGuard guard) {
+        ObjectProvider<QueryCostGuard> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(guard);
+        return provider;
+    }
+}
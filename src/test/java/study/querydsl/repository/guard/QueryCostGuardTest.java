@@ -0,0 +1,76 @@
+package study.querydsl.repository.guard;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+
+/* 회원 100명을 "큰 테이블"로 보도록 한도를 낮춰서 가드 결정과 리포지토리 호출 결과를 확인한다 */
+@Transactional
+@SpringBootTest(properties = {
+        "member.query-guard.reject-scan-rows=50",
+        "member.query-guard.max-unpaged-rows=5",
+        "member.query-guard.max-page-size=10"})
+class QueryCostGuardTest {
+
+    @Autowired EntityManager em;
+    @Autowired QueryCostGuard guard;
+    @Autowired MemberRepository memberRepository;
+
+    @BeforeEach
+    void before() {
+        em.createQuery("delete from Member").executeUpdate();
+        for (int i = 0; i < 100; i++) {
+            em.persist(new Member("guard" + i, i));
+        }
+        em.flush();
+        // 백그라운드 갱신은 커밋 안 된 이 트랜잭션의 행을 못 보므로 같은 트랜잭션에서 스냅샷을 바꾼다
+        guard.refreshStats();
+    }
+
+    /* username 은 값마다 한 건이라 인덱스 = 조건은 1건으로 추정된다 */
+    @Test
+    void indexedEqualityIsAllowedUnpaged() {
+        assertThat(guard.check("findAll", member.username.eq("guard1"), null, false).getDecision())
+                .isEqualTo(QueryCostGuard.Decision.ALLOW);
+        assertThat(memberRepository.findAll(member.username.eq("guard1"))).hasSize(1);
+    }
+
+    @Test
+    void leadingWildcardOnBigTableIsRejected() {
+        assertThatThrownBy(() -> memberRepository.findAll(member.username.contains("uard"), PageRequest.of(0, 10)))
+                .isInstanceOf(QueryCostExceededException.class)
+                .hasMessageContaining("leading wildcard");
+    }
+
+    /* 페이징 없는 findAll 은 잘라서 돌려주지 않고 거부한다 */
+    @Test
+    void largeUnpagedFindAllIsRejected() {
+        assertThatThrownBy(() -> memberRepository.findAll(member.age.goe(0)))
+                .isInstanceOf(QueryCostExceededException.class)
+                .hasMessageContaining("pass a Pageable");
+        assertThat(memberRepository.findAll(member.age.goe(0), PageRequest.of(0, 5)).getTotalElements()).isEqualTo(100);
+    }
+
+    /* 너무 큰 페이지는 max-page-size 로 줄여서 실행하고, 줄었다는 것이 Page 에 드러난다 */
+    @Test
+    void oversizedPageIsDowngraded() {
+        Page<Member> page = memberRepository.findAll(member.age.goe(0), PageRequest.of(1, 1000));
+
+        assertThat(page.getSize()).isEqualTo(10);
+        assertThat(page.getNumber()).isEqualTo(1);
+        assertThat(page.getContent()).hasSize(10);
+        assertThat(page.getTotalElements()).isEqualTo(100);
+    }
+}
@@ -0,0 +1,116 @@
+package study.querydsl.repository.sql;
+
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberRankDto;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.UserDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static study.querydsl.entity.QMember.member;
+
+@Transactional
+@SpringBootTest
+class MemberWindowRepositoryTest {
+
+    @Autowired EntityManager em;
+    @Autowired JPAQueryFactory queryFactory;
+    @Autowired MemberWindowRepository windowRepository;
+
+    QMember memberSub = new QMember("memberSub");
+
+    @BeforeEach
+    void before() {
+        em.createQuery("delete from Member").executeUpdate();
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.persist(new Member("member5", 40, teamB));
+        em.persist(new Member("member6", 25));
+        em.flush();
+    }
+
+    @Test
+    void rankWithinTeam() {
+        List<MemberRankDto> result = windowRepository.rankWithinTeam();
+
+        assertThat(result).hasSize(6);
+        assertThat(result).filteredOn(dto -> "teamB".equals(dto.getTeamName()))
+                .extracting(MemberRankDto::getUsername, MemberRankDto::getRowNumber, MemberRankDto::getRank)
+                .containsExactly(tuple("member4", 1L, 1L), tuple("member5", 2L, 1L), tuple("member3", 3L, 3L));
+        assertThat(result).filteredOn(dto -> "teamA".equals(dto.getTeamName()))
+                .allSatisfy(dto -> assertThat(dto.getTeamAverageAge()).isEqualTo(15.0));
+    }
+
+    @Test
+    void topPerTeam() {
+        List<MemberRankDto> result = windowRepository.topPerTeam(1);
+
+        assertThat(result).extracting(MemberRankDto::getUsername)
+                .containsExactlyInAnyOrder("member2", "member4", "member6");
+    }
+
+    /* 상관 서브쿼리와 같은 결과 */
+    @Test
+    void atOrAboveTeamAverage() {
+        List<String> expected = queryFactory.select(member.username).from(member)
+                .where(member.age.goe(JPAExpressions.select(memberSub.age.avg()).from(memberSub)
+                        .where(memberSub.team.eq(member.team))))
+                .fetch();
+
+        List<String> result = windowRepository.atOrAboveTeamAverage().stream()
+                .filter(dto -> dto.getTeamId() != null)
+                .map(MemberRankDto::getUsername)
+                .collect(toList());
+
+        assertThat(result).containsExactlyInAnyOrderElementsOf(expected).containsExactlyInAnyOrder("member2", "member4", "member5");
+    }
+
+    @Test
+    void atOrAboveAverage() {
+        List<String> expected = queryFactory.select(member.username).from(member)
+                .where(member.age.goe(JPAExpressions.select(memberSub.age.avg()).from(memberSub)))
+                .fetch();
+
+        assertThat(windowRepository.atOrAboveAverage()).extracting(MemberRankDto::getUsername)
+                .containsExactlyInAnyOrderElementsOf(expected);
+    }
+
+    @Test
+    void oldestMembers() {
+        List<String> expected = queryFactory.select(member.username).from(member)
+                .where(member.age.eq(JPAExpressions.select(memberSub.age.max()).from(memberSub)))
+                .fetch();
+
+        List<MemberTeamDto> result = windowRepository.oldestMembers();
+
+        assertThat(result).extracting(MemberTeamDto::getUsername).containsExactlyInAnyOrderElementsOf(expected);
+        assertThat(result).extracting(MemberTeamDto::getTeamName).containsOnly("teamB");
+    }
+
+    @Test
+    void usernameWithMaxAge() {
+        List<UserDto> result = windowRepository.usernameWithMaxAge();
+
+        assertThat(result).hasSize(6);
+        assertThat(result).extracting(UserDto::getAge).containsOnly(40);
+    }
+}
@@ -0,0 +1,65 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("/v1/members",
+            new AdaptiveConcurrencyLimiter.Settings(10, 2, 100, 1.5, 0.2, 0.9), registry);
+
+    @Test
+    void rejectsBeyondLimit() {
+        for (int i = 0; i < 10; i++) assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isFalse();
+        assertThat(registry.get("member.limiter.rejected").tag("endpoint", "/v1/members").counter().count()).isEqualTo(1);
+
+        limiter.onComplete(millis(10), false);
+        assertThat(limiter.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void growsWhileLatencyIsStableAndShrinksWhenItRises() {
+        for (int i = 0; i < 200; i++) saturatedRound(10);
+        int grown = limiter.getLimit();
+        assertThat(grown).isGreaterThan(10);
+
+        for (int i = 0; i < 50; i++) saturatedRound(100);
+        assertThat(limiter.getLimit()).isLessThan(grown);
+    }
+
+    @Test
+    void backsOffOnFailures() {
+        for (int i = 0; i < 10; i++) {
+            assertThat(limiter.tryAcquire()).isTrue();
+            limiter.onComplete(millis(10), true);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(3);
+        assertThat(registry.get("member.limiter.limit").gauge().value()).isEqualTo(3);
+    }
+
+    @Test
+    void doesNotGrowWhenMostlyIdle() {
+        for (int i = 0; i < 200; i++) {
+            assertThat(limiter.tryAcquire()).isTrue();
+            limiter.onComplete(millis(10), false);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(10);
+    }
+
+    /* 한도만큼 채운 뒤 모두 완료 */
+    private void saturatedRound(long rttMillis) {
+        int acquired = 0;
+        while (limiter.tryAcquire()) acquired++;
+        for (int i = 0; i < acquired; i++) limiter.onComplete(millis(rttMillis), false);
+    }
+
+    private static long millis(long ms) {
+        return TimeUnit.MILLISECONDS.toNanos(ms);
+    }
+}
@@ -0,0 +1,41 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+class InterningProjectionTest {
+
+    @Test
+    void sharesRepeatedValuesOfSelectedColumnsOnly() {
+        InterningProjection<MemberTeamDto> projection = InterningProjection.of(
+                new QMemberTeamDto(member.id, member.username, member.age, team.id, team.name), 2, team.name);
+
+        MemberTeamDto first = projection.newInstance(1L, new String("member"), 10, 1L, new String("teamA"));
+        MemberTeamDto second = projection.newInstance(2L, new String("member"), 20, 1L, new String("teamA"));
+
+        assertThat(second.getTeamName()).isSameAs(first.getTeamName());
+        assertThat(second.getUsername()).isEqualTo(first.getUsername()).isNotSameAs(first.getUsername());
+        assertThat(projection.getArgs()).hasSize(5);
+    }
+
+    @Test
+    void stopsGrowingDictionaryAtMaxEntries() {
+        InterningProjection<MemberTeamDto> projection = InterningProjection.of(
+                new QMemberTeamDto(member.id, member.username, member.age, team.id, team.name), 2, team.name);
+        projection.newInstance(1L, "m1", 1, 1L, new String("teamA"));
+        projection.newInstance(2L, "m2", 1, 2L, new String("teamB"));
+
+        MemberTeamDto c1 = projection.newInstance(3L, "m3", 1, 3L, new String("teamC"));
+        MemberTeamDto c2 = projection.newInstance(4L, "m4", 1, 3L, new String("teamC"));
+        assertThat(c2.getTeamName()).isNotSameAs(c1.getTeamName());
+
+        MemberTeamDto a = projection.newInstance(5L, "m5", 1, 1L, new String("teamA"));
+        MemberTeamDto a2 = projection.newInstance(6L, "m6", 1, 1L, new String("teamA"));
+        assertThat(a2.getTeamName()).isSameAs(a.getTeamName());
+    }
+}
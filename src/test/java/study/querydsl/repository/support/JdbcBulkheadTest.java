@@ -0,0 +1,46 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JdbcBulkheadTest {
+
+    @Test
+    void rejectsWhenNoPermitWithinMaxWait() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        JdbcBulkhead bulkhead = new JdbcBulkhead(registry, true, 1, 50);
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> holder = CompletableFuture.supplyAsync(() -> bulkhead.call(() -> {
+            holding.countDown();
+            await(release);
+            return "done";
+        }));
+        holding.await();
+
+        assertThatThrownBy(() -> bulkhead.call(() -> "second")).isInstanceOf(JdbcBulkheadFullException.class);
+        assertThat(registry.get("member.jdbc.bulkhead.rejected").counter().count()).isEqualTo(1);
+        assertThat(registry.get("member.jdbc.bulkhead.in-use").gauge().value()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(holder.get(1, TimeUnit.SECONDS)).isEqualTo("done");
+        assertThat(bulkhead.call(() -> "third")).isEqualTo("third");
+        assertThat(registry.get("member.jdbc.bulkhead.queue").timer().count()).isEqualTo(3);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.entity.QMember;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/* 트랜잭션 밖(공유 EntityManager)에서 실행 중인 느린 쿼리를 마감 취소가 실제로 끊는지 */
+@SpringBootTest
+class QueryDeadlineCancelTest {
+
+    @Autowired JPAQueryFactory queryFactory;
+    @Autowired JdbcTemplate jdbcTemplate;
+
+    ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor();
+
+    @BeforeEach
+    void insertMembers() {
+        long firstId = jdbcTemplate.queryForObject("select coalesce(max(member_id), 0) + 1 from member", Long.class);
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            rows.add(new Object[]{firstId + i, "deadline-" + i, "deadline-" + i, i});
+        }
+        jdbcTemplate.batchUpdate("insert into member (member_id, username, username_lower, age, version) values (?, ?, ?, ?, 0)", rows);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        watchdog.shutdownNow();
+        QueryDeadline.clear();
+        jdbcTemplate.update("delete from member where username like 'deadline-%'");
+    }
+
+    @Test
+    void cancelStopsRunningQuery() {
+        // statement timeout(30초)보다 한참 먼저 끝나야 취소로 끊긴 것이다
+        QueryDeadline deadline = QueryDeadline.start(Duration.ofSeconds(30));
+        watchdog.schedule(deadline::cancel, 300, TimeUnit.MILLISECONDS);
+        QMember m1 = new QMember("m1");
+        QMember m2 = new QMember("m2");
+        QMember m3 = new QMember("m3");
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> queryFactory
+                .select(m1.count())
+                .from(m1, m2, m3)
+                .where(m1.age.add(m2.age).add(m3.age).lt(0))
+                .fetchOne())
+                .isInstanceOf(RuntimeException.class);
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(10));
+        assertThat(deadline.isCancelled()).isTrue();
+    }
+}
@@ -0,0 +1,59 @@
+package study.querydsl.repository.support;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.query.spi.QueryImplementor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.Query;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class QueryDeadlineTest {
+
+    @AfterEach
+    void clear() {
+        QueryDeadline.clear();
+    }
+
+    @Test
+    void remainingBudgetIsRoundedUpToSeconds() {
+        Query query = mock(Query.class);
+
+        QueryDeadline.start(Duration.ofMillis(1500)).apply(query);
+
+        verify(query).setHint(QueryDeadline.TIMEOUT_HINT, 2000L);
+        assertThat(QueryDeadline.current()).isPresent();
+    }
+
+    @Test
+    void expiredDeadlineRejectsQuery() {
+        QueryDeadline deadline = QueryDeadline.start(Duration.ZERO);
+        assertThatThrownBy(() -> deadline.apply(mock(Query.class)))
+                .isInstanceOf(QueryDeadlineExceededException.class);
+    }
+
+    /* 취소 대상은 EntityManager 가 아니라 쿼리를 실행하는 세션이다 */
+    @Test
+    @SuppressWarnings("unchecked")
+    void cancelCancelsSessionOfQuery() {
+        SessionImplementor session = mock(SessionImplementor.class);
+        QueryImplementor<Object> hibernateQuery = mock(QueryImplementor.class);
+        when(hibernateQuery.getProducer()).thenReturn(session);
+        Query query = mock(Query.class);
+        when(query.unwrap(QueryImplementor.class)).thenReturn(hibernateQuery);
+
+        QueryDeadline deadline = QueryDeadline.start(Duration.ofSeconds(5));
+        deadline.apply(query);
+        deadline.cancel();
+
+        verify(session).cancelQuery();
+        assertThatThrownBy(() -> deadline.apply(query))
+                .isInstanceOf(QueryDeadlineExceededException.class);
+    }
+}
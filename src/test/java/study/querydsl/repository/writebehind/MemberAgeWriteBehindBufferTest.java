@@ -0,0 +1,120 @@
+package study.querydsl.repository.writebehind;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+
+@SpringBootTest(properties = "member.write-behind.flush-interval-ms=60000")
+class MemberAgeWriteBehindBufferTest {
+
+    @PersistenceContext EntityManager em;
+    @Autowired TransactionTemplate transactionTemplate;
+    @Autowired JPAQueryFactory queryFactory;
+    @Autowired MemberAgeWriteBehindBuffer buffer;
+    @Autowired PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void cleanUp() {
+        transactionTemplate.executeWithoutResult(status ->
+                queryFactory.delete(member).where(member.username.startsWith("writeBehind")).execute());
+    }
+
+    @Test
+    void concurrentIncrementsAreMergedAndFlushed() throws Exception {
+        List<Long> ids = transactionTemplate.execute(status -> {
+            List<Long> result = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                Member m = new Member("writeBehind" + i, 0);
+                em.persist(m);
+                result.add(m.getId());
+            }
+            return result;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            executor.execute(() -> {
+                for (int n = 0; n < 1000; n++) {
+                    for (Long id : ids) buffer.addAge(id, 1);
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        // 아직 반영 전
+        assertThat(ages()).containsOnly(0);
+        assertThat(buffer.pendingMembers()).isEqualTo(10);
+
+        assertThat(buffer.flush()).isEqualTo(10);
+        assertThat(ages()).hasSize(10).containsOnly(4000);
+        assertThat(buffer.pendingMembers()).isZero();
+        assertThat(buffer.flush()).isZero();
+    }
+
+    /* 가득 차면 호출자가 직접 flush 하지 않고 flush 스레드가 비울 때까지 기다린다 (호출자 트랜잭션 안에서도 커넥션을 하나 더 잡지 않는다) */
+    @Test
+    void fullBufferIsDrainedByFlusherThread() throws Exception {
+        List<Long> ids = persistMembers(3);
+        MemberAgeWriteBehindBuffer small = new MemberAgeWriteBehindBuffer(queryFactory, transactionManager,
+                new SimpleMeterRegistry(), 60_000, 2, 1000, 5_000);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (Long id : ids) small.addAge(id, 1);
+            });
+            assertThat(small.pendingMembers()).isLessThanOrEqualTo(2);
+            small.flush();
+            assertThat(ages()).containsOnly(1);
+        } finally {
+            small.shutdown();
+        }
+    }
+
+    @Test
+    void rejectsWhenNotDrainedInTime() throws Exception {
+        List<Long> ids = persistMembers(3);
+        MemberAgeWriteBehindBuffer small = new MemberAgeWriteBehindBuffer(queryFactory, transactionManager,
+                new SimpleMeterRegistry(), 60_000, 2, 1000, 100);
+        small.shutdown(); // flush 스레드가 없으니 아무도 비우지 않는다
+
+        small.addAge(ids.get(0), 1);
+        small.addAge(ids.get(1), 1);
+        small.addAge(ids.get(1), 1); // 이미 있는 회원은 막지 않는다
+        assertThatThrownBy(() -> small.addAge(ids.get(2), 1)).isInstanceOf(WriteBehindFullException.class);
+        assertThat(small.flush()).isEqualTo(2);
+    }
+
+    private List<Long> persistMembers(int count) {
+        return transactionTemplate.execute(status -> {
+            List<Long> result = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                Member m = new Member("writeBehind" + i, 0);
+                em.persist(m);
+                result.add(m.getId());
+            }
+            return result;
+        });
+    }
+
+    private List<Integer> ages() {
+        return queryFactory.select(member.age).from(member).where(member.username.startsWith("writeBehind")).fetch();
+    }
+}